@@ -3,14 +3,18 @@ package com.laklu.pos.controllers;
 import com.laklu.pos.auth.JwtGuard;
 import com.laklu.pos.auth.policies.AttachmentPolicy;
 import com.laklu.pos.dataObjects.ApiResponseEntity;
+import com.laklu.pos.dataObjects.FileUpload;
 import com.laklu.pos.dataObjects.response.AttachmentResponse;
 import com.laklu.pos.entities.Attachment;
 import com.laklu.pos.exceptions.httpExceptions.ForbiddenException;
+import com.laklu.pos.enums.ImageSize;
+import com.laklu.pos.services.AttachmentFileServer;
 import com.laklu.pos.services.AttachmentService;
+import com.laklu.pos.services.ImageDerivativeService;
 import com.laklu.pos.uiltis.Ultis;
 import io.swagger.v3.oas.annotations.Operation;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
@@ -32,6 +36,8 @@ public class AttachmentController {
 
     AttachmentService attachmentService;
     AttachmentPolicy attachmentPolicy;
+    ImageDerivativeService imageDerivativeService;
+    AttachmentFileServer attachmentFileServer;
 
     @Operation(summary = "Lưu file", description = "API này dùng để lưu file")
     @PostMapping(value = "", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
@@ -39,7 +45,44 @@ public class AttachmentController {
         Ultis.throwUnless(attachmentPolicy.canCreate(JwtGuard.userPrincipal()), new ForbiddenException());
         Attachment attachment = attachmentService.saveFile(file);
 
-        AttachmentResponse attachmentResponse = AttachmentResponse.builder()
+        return ApiResponseEntity.success(toAttachmentResponse(attachment));
+    }
+
+    @Operation(summary = "Lưu file (tải lên dạng luồng)", description = "Gửi nội dung file trực tiếp trong body với Content-Type của file, tên file ở tham số name. File được kiểm tra loại và dung lượng trong lúc đọc và ghi thẳng xuống đĩa, không qua bộ đệm multipart")
+    @PostMapping(value = "/stream")
+    public ApiResponseEntity storeStream(@RequestParam("name") String name, HttpServletRequest request) throws Exception {
+        Ultis.throwUnless(attachmentPolicy.canCreate(JwtGuard.userPrincipal()), new ForbiddenException());
+        Attachment attachment = attachmentService.saveFile(FileUpload.of(request, name));
+
+        return ApiResponseEntity.success(toAttachmentResponse(attachment));
+    }
+
+    @Operation(summary = "Xem file", description = "API này dùng để xem file. Với ảnh có thể truyền size=thumb hoặc size=medium để lấy ảnh thu nhỏ (JPEG), ảnh thu nhỏ chưa được tạo thì trả về ảnh gốc")
+    @GetMapping(value = "/{filename}", produces = {MediaType.IMAGE_JPEG_VALUE, MediaType.IMAGE_PNG_VALUE, MediaType.IMAGE_GIF_VALUE})
+    public void show(@PathVariable String filename, @RequestParam(required = false) String size,
+                     HttpServletRequest request, HttpServletResponse response) throws Exception{
+        // Chỉ phục vụ file nằm ngay trong thư mục upload
+        if (filename.contains("/") || filename.contains("\\") || filename.contains("..")) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        filename = attachmentService.resolveStoredFileName(filename);
+        ImageSize imageSize = ImageSize.fromParam(size);
+        if (imageSize != ImageSize.ORIGINAL) {
+            Path derivative = imageDerivativeService.find(filename, imageSize);
+            if (derivative != null) {
+                attachmentFileServer.serve(derivative, true, imageSize == ImageSize.THUMBNAIL, request, response);
+                return;
+            }
+            // Ảnh tải lên trước khi có ảnh thu nhỏ: tạo ở nền, trả tạm ảnh gốc và không cho cache lâu dài
+            imageDerivativeService.generateAsync(filename);
+        }
+        Path filePath = Paths.get(AttachmentService.UPLOAD_DIRECTORY).resolve(filename);
+        attachmentFileServer.serve(filePath, imageSize == ImageSize.ORIGINAL, false, request, response);
+    }
+
+    private AttachmentResponse toAttachmentResponse(Attachment attachment) {
+        return AttachmentResponse.builder()
                 .id(attachment.getId())
                 .mimeType(attachment.getMimeType())
                 .originalName(attachment.getOriginalName())
@@ -48,15 +91,5 @@ public class AttachmentController {
                 .path(attachment.getPath())
                 .url(attachmentService.getImageUrl(attachment))
                 .build();
-
-        return ApiResponseEntity.success(attachmentResponse);
-    }
-
-    @Operation(summary = "Xem file", description = "API này dùng để xem file")
-    @GetMapping(value = "/{filename}", produces = {MediaType.IMAGE_JPEG_VALUE, MediaType.IMAGE_PNG_VALUE, MediaType.IMAGE_GIF_VALUE})
-    public Resource show(@PathVariable String filename) throws Exception{
-        Path filePath = Paths.get(AttachmentService.UPLOAD_DIRECTORY).resolve(filename);
-        return new UrlResource(filePath.toUri());
     }
-
 }
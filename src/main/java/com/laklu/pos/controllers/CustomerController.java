@@ -0,0 +1,44 @@
+package com.laklu.pos.controllers;
+
+import com.laklu.pos.auth.JwtGuard;
+import com.laklu.pos.auth.policies.ReservationPolicy;
+import com.laklu.pos.dataObjects.ApiResponseEntity;
+import com.laklu.pos.dataObjects.response.CustomerResponse;
+import com.laklu.pos.exceptions.httpExceptions.ForbiddenException;
+import com.laklu.pos.exceptions.httpExceptions.NotFoundException;
+import com.laklu.pos.services.CustomerService;
+import com.laklu.pos.uiltis.Ultis;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("api/v1/customers")
+@RequiredArgsConstructor
+@Tag(name = "Customer Controller", description = "Tra cứu khách hàng đặt bàn")
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class CustomerController {
+    CustomerService customerService;
+    ReservationPolicy reservationPolicy;
+
+    @Operation(summary = "Tra cứu khách hàng theo số điện thoại", description = "API này dùng để tra cứu khách quen theo số điện thoại (chấp nhận cả dạng +84)")
+    @GetMapping("/lookup")
+    public ApiResponseEntity lookup(@RequestParam String phone) throws Exception {
+        Ultis.throwUnless(reservationPolicy.canList(JwtGuard.userPrincipal()), new ForbiddenException());
+
+        return ApiResponseEntity.success(customerService.findByPhone(phone)
+                .map(CustomerResponse::fromEntity)
+                .orElseThrow(NotFoundException::new));
+    }
+
+    @Operation(summary = "Lấy thông tin khách hàng", description = "API này dùng để lấy thông tin và bộ đếm lượt ghé của khách hàng")
+    @GetMapping("/{id}")
+    public ApiResponseEntity show(@PathVariable Integer id) throws Exception {
+        Ultis.throwUnless(reservationPolicy.canList(JwtGuard.userPrincipal()), new ForbiddenException());
+
+        return ApiResponseEntity.success(CustomerResponse.fromEntity(customerService.findOrFail(id)));
+    }
+}
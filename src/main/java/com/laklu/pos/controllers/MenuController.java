@@ -20,6 +20,7 @@ import com.laklu.pos.repositories.MenuRepository;
 import com.laklu.pos.services.AttachmentService;
 import com.laklu.pos.services.MenuService;
 import com.laklu.pos.services.CategoryService;
+import com.laklu.pos.services.MenuCatalogCache;
 import com.laklu.pos.services.MenuItemService;
 import com.laklu.pos.uiltis.Ultis;
 import com.laklu.pos.validator.MenuNameMustBeUnique;
@@ -32,6 +33,7 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
@@ -50,6 +52,7 @@ public class MenuController {
     private final AttachmentService attachmentService;
     private final CategoryService categoryService;
     private final MenuItemService menuItemService;
+    private final MenuCatalogCache menuCatalogCache;
 
     @Operation(summary = "Lấy thông tin tất cả thực đơn", description = "API này dùng để lấy danh sách tất cả thực đơn")
     @GetMapping("/")
@@ -65,9 +68,14 @@ public class MenuController {
 
     @Operation(summary = "Lấy thông tin tất cả thực đơn có trạng thái ENABLE", description = "API này dùng để lấy danh sách tất cả thực đơn có trạng thái ENABLE")
     @GetMapping("/enabled")
-    public ApiResponseEntity getAllEnabledMenus() throws Exception {
+    public ApiResponseEntity getAllEnabledMenus(WebRequest webRequest) throws Exception {
         Ultis.throwUnless(menuPolicy.canList(JwtGuard.userPrincipal()), new ForbiddenException());
 
+        // Thực đơn đang bật chưa đổi kể từ lần tải trước thì trả về 304
+        if (webRequest.checkNotModified(menuCatalogCache.getCatalogEtag())) {
+            return null;
+        }
+
         List<MenuResponse> menus = menuService.getAllByStatus(Menu.MenuStatus.ENABLE).stream()
                 .map(MenuResponse::fromEntity)
                 .collect(Collectors.toList());
@@ -105,7 +113,9 @@ public class MenuController {
 
         MenuResponse menuResponse = MenuResponse.fromEntity(menu);
 
-        menuResponse.setMenuItems(menu.getMenuItems().stream().map((menuItem)-> {
+        // Nạp món kèm dish và category trong một câu truy vấn, ảnh được nạp theo lô
+        List<MenuItem> menuItems = menuItemService.search(menu, null, null, null, Sort.by("id"));
+        menuResponse.setMenuItems(menuItems.stream().map((menuItem)-> {
             Dish dish = menuItem.getDish();
             DishResponse dishResponse = DishResponse.fromEntity(dish);
             dishResponse.setImages(dish.getAttachments().stream().map(attachmentService::toPersistAttachmentResponse).collect(Collectors.toList()));
@@ -132,18 +142,25 @@ public class MenuController {
         // Cập nhật menu từ dữ liệu gửi đến
         menuMapper.updateMenuFromDto(partialUpdateMenu, existingMenu);
         
-        // Nếu trạng thái được đổi từ DISABLE sang ENABLE
+        // Nếu trạng thái được đổi từ DISABLE sang ENABLE thì bật menu này và tắt các menu khác trong một câu lệnh
         if (oldStatus == Menu.MenuStatus.DISABLE && existingMenu.getStatus() == Menu.MenuStatus.ENABLE) {
-            // Vô hiệu hóa tất cả các menu khác
-            menuService.disableAllMenus();
-            // Đảm bảo menu hiện tại được đặt lại thành ENABLE sau khi gọi disableAllMenus()
-            existingMenu.setStatus(Menu.MenuStatus.ENABLE);
+            menuService.activateMenu(existingMenu);
         }
 
         Menu updatedMenu = menuService.updateMenu(existingMenu);
         return ApiResponseEntity.success(MenuResponse.fromEntity(updatedMenu));
     }
 
+    @Operation(summary = "Chuyển sang thực đơn được chọn", description = "API này dùng để bật thực đơn theo ID và tắt tất cả thực đơn khác trong cùng một thao tác, dùng khi chuyển thực đơn theo ca (trưa sang tối)")
+    @PutMapping("/{id}/activate")
+    public ApiResponseEntity activateMenu(@PathVariable Integer id) throws Exception {
+        Menu menu = menuService.findOrFail(id);
+        Ultis.throwUnless(menuPolicy.canEdit(JwtGuard.userPrincipal(), menu), new ForbiddenException());
+
+        menuService.activateMenu(menu);
+        return ApiResponseEntity.success(MenuResponse.fromEntity(menu));
+    }
+
     @Operation(summary = "Xóa thực đơn theo ID", description = "API này dùng để xóa thực đơn, không thể xóa thực đơn đã có đơn hàng")
     @DeleteMapping("/{id}")
     public ApiResponseEntity deleteMenu(@PathVariable Integer id) throws Exception {
@@ -173,59 +190,20 @@ public class MenuController {
             @RequestParam(required = false) Long categoryId,
             @RequestParam(required = false) Boolean activeOnly,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) throws Exception {
+            @RequestParam(defaultValue = "10") int size,
+            WebRequest webRequest) throws Exception {
         
         Menu menu = menuService.findOrFail(id);
         Ultis.throwUnless(menuPolicy.canView(JwtGuard.userPrincipal(), menu), new ForbiddenException());
-        
-        // Tạo đối tượng Pageable cho phân trang, sắp xếp theo tên món ăn
-        Pageable pageable = PageRequest.of(page, size, Sort.by("dish.name").ascending());
-        
-        Page<MenuItem> menuItemPage;
-        
-        if (categoryId != null) {
-            // Lấy category từ categoryId
-            Category category = categoryService.findOrFail(categoryId);
-            
-            if (activeOnly != null) {
-                // Lấy danh sách món ăn theo menu, category và trạng thái active
-                menuItemPage = menuItemService.findByMenuAndCategoryAndIsActive(menu, category, activeOnly, pageable);
-            } else {
-                // Lấy danh sách món ăn theo menu và category bất kể active hay không
-                menuItemPage = menuItemService.findByMenuAndCategory(menu, category, pageable);
-            }
-        } else {
-            if (activeOnly != null) {
-                // Lấy danh sách món ăn theo menu và trạng thái active
-                menuItemPage = menuItemService.findByMenuAndIsActive(menu, activeOnly, pageable);
-            } else {
-                // Lấy tất cả món ăn theo menu
-                menuItemPage = menuItemService.findByMenu(menu, pageable);
-            }
+
+        if (menu.getStatus() == Menu.MenuStatus.ENABLE) {
+            return fromSnapshot(menu, categoryId, activeOnly, null, page, size, webRequest);
         }
         
-        // Chuyển đổi từ entity sang response
-        List<MenuItemWithDetailsResponse> menuItems = menuItemPage.getContent().stream()
-                .map(menuItem -> {
-                    Dish dish = menuItem.getDish();
-                    DishResponse dishResponse = DishResponse.fromEntity(dish);
-                    dishResponse.setImages(dish.getAttachments().stream()
-                            .map(attachmentService::toPersistAttachmentResponse)
-                            .collect(Collectors.toList()));
-                    
-                    CategoryResponse categoryResponse = CategoryResponse.fromEntity(menuItem.getCategory());
-                    
-                    return MenuItemWithDetailsResponse.fromEntity(menuItem, dishResponse, categoryResponse);
-                })
-                .collect(Collectors.toList());
-        
-        // Tạo PageResponse từ Page và danh sách đã chuyển đổi
-        PageResponse<MenuItemWithDetailsResponse> pageResponse = PageResponse.fromPage(menuItemPage, menuItems);
-        
-        return ApiResponseEntity.success(pageResponse);
+        return fromDatabase(menu, categoryId, activeOnly, null, page, size);
     }
 
-    @Operation(summary = "Tìm kiếm món ăn theo tên trong menu", description = "API này dùng để tìm kiếm món ăn theo tên trong menu, có thể lọc theo category và trạng thái active, hỗ trợ phân trang")
+    @Operation(summary = "Tìm kiếm món ăn theo tên trong menu", description = "API này dùng để tìm kiếm món ăn theo tên trong menu (không phân biệt dấu, chịu lỗi gõ, kết quả xếp theo mức độ khớp với menu đang bật), có thể lọc theo category và trạng thái active, hỗ trợ phân trang")
     @GetMapping("/{id}/dishes/search")
     public ApiResponseEntity searchDishesByNameInMenu(
             @PathVariable Integer id,
@@ -233,40 +211,47 @@ public class MenuController {
             @RequestParam(required = false) Long categoryId,
             @RequestParam(required = false) Boolean activeOnly,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) throws Exception {
+            @RequestParam(defaultValue = "10") int size,
+            WebRequest webRequest) throws Exception {
         
         Menu menu = menuService.findOrFail(id);
         Ultis.throwUnless(menuPolicy.canView(JwtGuard.userPrincipal(), menu), new ForbiddenException());
+
+        if (menu.getStatus() == Menu.MenuStatus.ENABLE) {
+            return fromSnapshot(menu, categoryId, activeOnly, dishName, page, size, webRequest);
+        }
         
+        return fromDatabase(menu, categoryId, activeOnly, dishName, page, size);
+    }
+
+    /**
+     * Trả danh sách món của thực đơn đang bật từ snapshot trong bộ nhớ.
+     * Client gửi lại ETag (If-None-Match) mà thực đơn chưa đổi thì nhận 304 không có nội dung
+     */
+    private ApiResponseEntity fromSnapshot(Menu menu, Long categoryId, Boolean activeOnly, String dishName,
+                                           int page, int size, WebRequest webRequest) {
+        MenuCatalogCache.MenuSnapshot snapshot = menuCatalogCache.getSnapshot(menu.getId());
+        if (webRequest.checkNotModified(snapshot.getEtag())) {
+            return null;
+        }
+        if (categoryId != null && !snapshot.hasCategory(categoryId)) {
+            // Giữ hành vi cũ: danh mục không tồn tại thì trả về 404, tồn tại nhưng không có món thì trả về trang rỗng
+            categoryService.findOrFail(categoryId);
+        }
+        return ApiResponseEntity.success(snapshot.page(categoryId, activeOnly, dishName, page, size));
+    }
+
+    /**
+     * Lấy danh sách món từ DB (thực đơn đang tắt) bằng một câu truy vấn ghép điều kiện,
+     * dish và category được nạp sẵn, ảnh được nạp theo lô nên số câu truy vấn mỗi trang cố định
+     */
+    private ApiResponseEntity fromDatabase(Menu menu, Long categoryId, Boolean activeOnly, String dishName, int page, int size) {
         // Tạo đối tượng Pageable cho phân trang, sắp xếp theo tên món ăn
         Pageable pageable = PageRequest.of(page, size, Sort.by("dish.name").ascending());
-        
-        Page<MenuItem> menuItemPage;
-        
-        if (categoryId != null) {
-            // Lấy category từ categoryId
-            Category category = categoryService.findOrFail(categoryId);
-            
-            if (activeOnly != null) {
-                // Tìm kiếm món ăn theo tên, menu, category và trạng thái active
-                menuItemPage = menuItemService.findByMenuAndCategoryAndIsActiveAndDishNameContainingIgnoreCase(
-                        menu, category, activeOnly, dishName, pageable);
-            } else {
-                // Tìm kiếm món ăn theo tên, menu và category bất kể active hay không
-                menuItemPage = menuItemService.findByMenuAndCategoryAndDishNameContainingIgnoreCase(
-                        menu, category, dishName, pageable);
-            }
-        } else {
-            if (activeOnly != null) {
-                // Tìm kiếm món ăn theo tên, menu và trạng thái active
-                menuItemPage = menuItemService.findByMenuAndIsActiveAndDishNameContainingIgnoreCase(
-                        menu, activeOnly, dishName, pageable);
-            } else {
-                // Tìm kiếm tất cả món ăn theo tên và menu
-                menuItemPage = menuItemService.findByMenuAndDishNameContainingIgnoreCase(menu, dishName, pageable);
-            }
-        }
-        
+        Category category = categoryId != null ? categoryService.findOrFail(categoryId) : null;
+
+        Page<MenuItem> menuItemPage = menuItemService.search(menu, category, activeOnly, dishName, pageable);
+
         // Chuyển đổi từ entity sang response
         List<MenuItemWithDetailsResponse> menuItems = menuItemPage.getContent().stream()
                 .map(menuItem -> {
@@ -275,16 +260,16 @@ public class MenuController {
                     dishResponse.setImages(dish.getAttachments().stream()
                             .map(attachmentService::toPersistAttachmentResponse)
                             .collect(Collectors.toList()));
-                    
+
                     CategoryResponse categoryResponse = CategoryResponse.fromEntity(menuItem.getCategory());
-                    
+
                     return MenuItemWithDetailsResponse.fromEntity(menuItem, dishResponse, categoryResponse);
                 })
                 .collect(Collectors.toList());
-        
+
         // Tạo PageResponse từ Page và danh sách đã chuyển đổi
         PageResponse<MenuItemWithDetailsResponse> pageResponse = PageResponse.fromPage(menuItemPage, menuItems);
-        
+
         return ApiResponseEntity.success(pageResponse);
     }
-}
\ No newline at end of file
+}
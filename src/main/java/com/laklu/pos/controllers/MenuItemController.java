@@ -3,6 +3,7 @@ package com.laklu.pos.controllers;
 import com.laklu.pos.auth.JwtGuard;
 import com.laklu.pos.auth.policies.Policy;
 import com.laklu.pos.dataObjects.ApiResponseEntity;
+import com.laklu.pos.dataObjects.request.MenuItemImportRequest;
 import com.laklu.pos.dataObjects.request.MenuItemStatusUpdateRequest;
 import com.laklu.pos.dataObjects.request.NewMenuItem;
 import com.laklu.pos.dataObjects.response.MenuItemResponse;
@@ -14,6 +15,7 @@ import com.laklu.pos.exceptions.httpExceptions.ForbiddenException;
 import com.laklu.pos.mapper.MenuItemMapper;
 import com.laklu.pos.services.CategoryService;
 import com.laklu.pos.services.DishService;
+import com.laklu.pos.services.MenuItemImportService;
 import com.laklu.pos.services.MenuItemService;
 import com.laklu.pos.services.MenuService;
 import com.laklu.pos.services.OrderItemService;
@@ -45,6 +47,7 @@ public class MenuItemController {
     private final DishService dishService;
     private final MenuService menuService;
     private final OrderItemService orderItemService;
+    private final MenuItemImportService menuItemImportService;
 
     @Operation(summary = "Tạo một mục trong thực đơn mới", description = "API này dùng để tạo một mục trong thực đơn mới")
     @PostMapping("/")
@@ -67,6 +70,18 @@ public class MenuItemController {
         return ApiResponseEntity.success(MenuItemResponse.fromEntity(createdMenuItem));
     }
 
+    @Operation(summary = "Nhập hàng loạt mục trong thực đơn",
+            description = "API này dùng để thêm mới hoặc cập nhật giá nhiều mục trong một thực đơn cùng lúc. Món ăn đã có trong thực đơn thì được cập nhật, chưa có thì được thêm mới; kết quả trả về theo từng dòng")
+    @PostMapping("/batch")
+    public ApiResponseEntity importMenuItems(@Valid @RequestBody MenuItemImportRequest request) throws Exception {
+        // Một lượt nhập vừa thêm mới vừa cập nhật nên cần cả hai quyền
+        Ultis.throwUnless(menuItemPolicy.canCreate(JwtGuard.userPrincipal())
+                && menuItemPolicy.canEdit(JwtGuard.userPrincipal(), null), new ForbiddenException());
+        Menu menu = RuleValidator.getValidatedValue(new ValuableValidationRule<>("menuId", "Thực đơn không tồn tại", () -> menuService.findById(request.getMenuId())));
+
+        return ApiResponseEntity.success(menuItemImportService.importMenuItems(menu, request.getItems()));
+    }
+
     @Operation(summary = "Lấy thông tin mục trong thực đơn theo ID", description = "API này dùng để lấy thông tin mục trong thực đơn theo ID")
     @GetMapping("/{id}")
     public ApiResponseEntity getMenuItemById(@PathVariable Integer id) throws Exception {
@@ -4,6 +4,7 @@ package com.laklu.pos.controllers;
 import com.laklu.pos.auth.JwtGuard;
 import com.laklu.pos.auth.policies.OrderPolicy;
 import com.laklu.pos.dataObjects.ApiResponseEntity;
+import com.laklu.pos.dataObjects.MenuItemSnapshot;
 import com.laklu.pos.dataObjects.request.MergeOrderRequest;
 import com.laklu.pos.dataObjects.request.NewOrderRequest;
 import com.laklu.pos.dataObjects.request.OrderSplitRequest;
@@ -16,6 +17,7 @@ import com.laklu.pos.mapper.DishMapper;
 import com.laklu.pos.mapper.OrderMapper;
 import com.laklu.pos.repositories.ScheduleRepository;
 import com.laklu.pos.services.*;
+import com.laklu.pos.uiltis.BusinessDay;
 import com.laklu.pos.uiltis.Ultis;
 import com.laklu.pos.validator.RuleValidator;
 import com.laklu.pos.validator.UserMustHaveScheduleAndAttendance;
@@ -46,10 +48,12 @@ public class OrderController {
     private final OrderPolicy orderPolicy;
     private final DishMapper dishMapper;
     private final MenuItemService menuItemService;
+    private final MenuItemSnapshotCache menuItemSnapshotCache;
     private final TableService tableService;
     private final ScheduleRepository scheduleRepository;
     private final ScheduleService scheduleService;
     private final ReservationService reservationService;
+    private final IdempotencyService idempotencyService;
 
     @Operation(summary = "Lấy thông tin tất cả đơn đặt món", description = "API này dùng để lấy danh sách tất cả mục đặt món")
     @GetMapping("/")
@@ -80,13 +84,18 @@ public class OrderController {
     @PostMapping("/")
     public ApiResponseEntity createOrder(
             @Valid @RequestBody NewOrderRequest newOrderRequest,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
             @AuthenticationPrincipal UserPrincipal userPrincipal) throws Exception {
         Ultis.throwUnless(orderPolicy.canCreate(JwtGuard.userPrincipal()), new ForbiddenException());
         User staff = userPrincipal.getPersitentUser(); // Lấy staffId từ User đang đăng nhập
         UserMustHaveScheduleAndAttendance rule = new UserMustHaveScheduleAndAttendance(staff, scheduleRepository, scheduleService, true);
         RuleValidator.validate(rule);
-        Order order = orderService.createOrder(newOrderRequest, staff);
-        return ApiResponseEntity.success(orderMapper.toOrderResponse(order));
+        // Client gửi lại cùng Idempotency-Key sẽ nhận kết quả cũ, không tạo đơn trùng
+        Object response = idempotencyService.execute("order.create", idempotencyKey, () -> {
+            Order order = orderService.createOrder(newOrderRequest, staff);
+            return orderMapper.toOrderResponse(order);
+        });
+        return ApiResponseEntity.success(response);
     }
 
     @Operation(summary = "Lấy thông tin mục trong đặt món theo ID", description = "API này dùng để lấy thông tin mục trong đặt món theo ID")
@@ -164,15 +173,13 @@ public class OrderController {
                     .distinct()
                     .toList();
 
-            // Truy vấn toàn bộ MenuItem một lần duy nhất
-            Map<Integer, MenuItem> menuItemMap = menuItemService.findAllByIds(menuItemIds).stream()
-                    .collect(Collectors.toMap(MenuItem::getId, Function.identity()));
+            // Lấy thông tin món từ bộ nhớ đệm, chỉ truy vấn các món chưa có
+            Map<Integer, MenuItemSnapshot> menuItemMap = menuItemSnapshotCache.findAll(menuItemIds);
 
             for (OrderItemResponse orderItemResponse : orderResponse.getOrderItems()) {
-                MenuItem menuItem = menuItemMap.get(orderItemResponse.getMenuItemId());
-                if (menuItem != null && menuItem.getDish() != null) {
-                    DishResponse dishResponse = dishMapper.toDishResponse(menuItem.getDish());
-                    orderItemResponse.setDish(dishResponse);
+                MenuItemSnapshot menuItem = menuItemMap.get(orderItemResponse.getMenuItemId());
+                if (menuItem != null) {
+                    orderItemResponse.setDish(menuItem.toDishResponse());
                 }
             }
         }
@@ -197,15 +204,13 @@ public class OrderController {
                     .distinct()
                     .toList();
 
-            // Truy vấn toàn bộ MenuItem một lần duy nhất
-            Map<Integer, MenuItem> menuItemMap = menuItemService.findAllByIds(menuItemIds).stream()
-                    .collect(Collectors.toMap(MenuItem::getId, Function.identity()));
+            // Lấy thông tin món từ bộ nhớ đệm, chỉ truy vấn các món chưa có
+            Map<Integer, MenuItemSnapshot> menuItemMap = menuItemSnapshotCache.findAll(menuItemIds);
 
             for (OrderItemResponse orderItemResponse : orderResponse.getOrderItems()) {
-                MenuItem menuItem = menuItemMap.get(orderItemResponse.getMenuItemId());
-                if (menuItem != null && menuItem.getDish() != null) {
-                    DishResponse dishResponse = dishMapper.toDishResponse(menuItem.getDish());
-                    orderItemResponse.setDish(dishResponse);
+                MenuItemSnapshot menuItem = menuItemMap.get(orderItemResponse.getMenuItemId());
+                if (menuItem != null) {
+                    orderItemResponse.setDish(menuItem.toDishResponse());
                 }
             }
         }
@@ -244,17 +249,17 @@ public class OrderController {
         return ApiResponseEntity.success(response);
     }
 
-    @Operation(summary = "Lấy đơn hàng từ 4h chiều đến 3h sáng hôm sau", description = "API này lấy các đơn hàng với trạng thái 'Đang chờ' từ 4h chiều đến 3h sáng hôm sau, sắp xếp theo thời gian tạo. Khi gọi API vào rạng sáng (0h-3h), hệ thống tự động lấy đơn từ 4h chiều ngày hôm trước đến 3h sáng ngày hiện tại.")
+    @Operation(summary = "Lấy đơn hàng đang chờ của một ngày kinh doanh", description = "API này lấy các đơn hàng với trạng thái 'Đang chờ' của ngày kinh doanh (đến giờ chốt ngày, mặc định 3h sáng hôm sau), sắp xếp theo thời gian tạo. Không truyền date thì lấy ngày kinh doanh hiện tại, nên khi gọi API vào rạng sáng hệ thống vẫn trả về đơn của ca hôm trước.")
     @GetMapping("/evening-to-dawn")
     public ApiResponseEntity getEveningToDawnOrders(
             @RequestParam(required = false) String date
     ) throws Exception {
         Ultis.throwUnless(orderPolicy.canList(JwtGuard.userPrincipal()), new ForbiddenException());
 
-        // Mặc định sử dụng ngày hiện tại nếu không có tham số date
-        LocalDate today = (date != null && !date.isEmpty()) ? LocalDate.parse(date) : LocalDate.now();
+        // Mặc định sử dụng ngày kinh doanh hiện tại nếu không có tham số date
+        LocalDate businessDay = (date != null && !date.isEmpty()) ? LocalDate.parse(date) : BusinessDay.current();
 
-        List<Order> orders = orderService.getEveningToDawnOrders(today);
+        List<Order> orders = orderService.getEveningToDawnOrders(businessDay);
 
         // Chuyển đổi sang OrderResponseDTO
         List<OrderResponseDTO> orderResponseDTOs = orders.stream()
@@ -297,10 +302,8 @@ public class OrderController {
                                 .updatedAt(orderItem.getUpdatedAt())
                                 .build();
 
-                        if (orderItem.getMenuItem().getDish() != null) {
-                            DishResponse dishResponse = dishMapper.toDishResponse(orderItem.getMenuItem().getDish());
-                            orderItemResponse.setDish(dishResponse);
-                        }
+                        menuItemSnapshotCache.find(orderItem.getMenuItem().getId())
+                                .ifPresent(menuItem -> orderItemResponse.setDish(menuItem.toDishResponse()));
                         return orderItemResponse;
                     })
                     .toList();
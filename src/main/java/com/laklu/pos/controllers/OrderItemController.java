@@ -7,17 +7,17 @@ import com.laklu.pos.dataObjects.request.NewOrderItemRequest;
 import com.laklu.pos.dataObjects.request.UpdateOrderItemQuantity;
 import com.laklu.pos.dataObjects.request.UpdateStatusOrderItemRequest;
 import com.laklu.pos.dataObjects.request.BatchUpdateOrderItemStatusRequest;
-import com.laklu.pos.dataObjects.response.DishResponse;
 import com.laklu.pos.dataObjects.response.OrderItemResponse;
-import com.laklu.pos.entities.MenuItem;
+import com.laklu.pos.dataObjects.response.OrderItemStatusTransitionResponse;
 import com.laklu.pos.entities.Order;
 import com.laklu.pos.entities.OrderItem;
 import com.laklu.pos.entities.User;
 import com.laklu.pos.enums.OrderItemStatus;
 import com.laklu.pos.exceptions.httpExceptions.ForbiddenException;
-import com.laklu.pos.mapper.DishMapper;
 import com.laklu.pos.mapper.OrderItemMapper;
 import com.laklu.pos.repositories.ScheduleRepository;
+import com.laklu.pos.services.IdempotencyService;
+import com.laklu.pos.services.MenuItemSnapshotCache;
 import com.laklu.pos.services.OrderItemService;
 import com.laklu.pos.services.OrderService;
 import com.laklu.pos.services.ScheduleService;
@@ -45,7 +45,8 @@ public class OrderItemController {
     private final OrderItemPolicy orderItemPolicy;
     private final ScheduleRepository scheduleRepository;
     private final ScheduleService scheduleService;
-    private final DishMapper dishMapper;
+    private final MenuItemSnapshotCache menuItemSnapshotCache;
+    private final IdempotencyService idempotencyService;
 
     @Operation(summary = "Lấy thông tin món ăn đã đặt theo ID", description = "API này dùng để lấy thông tin món ăn đã đặt theo ID")
     @GetMapping("/{id}")
@@ -53,10 +54,9 @@ public class OrderItemController {
         OrderItem orderItem = orderItemService.findOrFail(id);
         Ultis.throwUnless(orderItemPolicy.canView(JwtGuard.userPrincipal(), orderItem), new ForbiddenException());
         OrderItemResponse orderItemResponse = orderItemMapper.toResponse(orderItem);
-        MenuItem menuItem = orderItem.getMenuItem();
-        if (menuItem != null && menuItem.getDish() != null) {
-            DishResponse dishResponse = dishMapper.toDishResponse(menuItem.getDish());
-            orderItemResponse.setDish(dishResponse);
+        if (orderItem.getMenuItem() != null) {
+            menuItemSnapshotCache.find(orderItem.getMenuItem().getId())
+                    .ifPresent(menuItem -> orderItemResponse.setDish(menuItem.toDishResponse()));
         }
         return ApiResponseEntity.success(orderItemResponse);
 
@@ -64,14 +64,20 @@ public class OrderItemController {
 
     @Operation(summary = "Thêm thông tin món ăn mới theo orderid có sẵn", description = "API này dùng để thêm thông tin món ăn mới theo orderid có sẵn")
     @PostMapping("/{order_id}")
-    public ApiResponseEntity createNewItemByOrderId(@PathVariable("order_id") Integer id, @Valid @RequestBody NewOrderItemRequest newOrderItemRequest) throws Exception {
+    public ApiResponseEntity createNewItemByOrderId(@PathVariable("order_id") Integer id,
+                                                    @Valid @RequestBody NewOrderItemRequest newOrderItemRequest,
+                                                    @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) throws Exception {
         Order order = orderService.getOrderExist(id);
         Ultis.throwUnless(orderItemPolicy.canCreate(JwtGuard.userPrincipal()), new ForbiddenException());
         User staff = JwtGuard.userPrincipal().getPersitentUser();
         UserMustHaveScheduleAndAttendance rule = new UserMustHaveScheduleAndAttendance(staff, scheduleRepository, scheduleService, true);
         RuleValidator.validate(rule);
-        OrderItem newOrderItem = orderItemService.createNewItemByOrderId(order, newOrderItemRequest);
-        return ApiResponseEntity.success(orderItemMapper.toResponse(newOrderItem));
+        // Gửi lại cùng Idempotency-Key không cộng dồn số lượng thêm lần nữa
+        Object response = idempotencyService.execute("order-item.create:" + id, idempotencyKey, () -> {
+            OrderItem newOrderItem = orderItemService.createNewItemByOrderId(order, newOrderItemRequest);
+            return orderItemMapper.toResponse(newOrderItem);
+        });
+        return ApiResponseEntity.success(response);
     }
 
     @Operation(summary = "Cập nhật thông tin trạng thái món ăn đang đặt", description = "API này dùng để cập nhật trạng thái món ăn đang đặt theo ID")
@@ -142,6 +148,22 @@ public class OrderItemController {
 
         return ApiResponseEntity.success(responses);
     }
+    @Operation(summary = "Chuyển trạng thái hàng loạt theo quy tắc chuyển trạng thái",
+              description = "API này dùng để chuyển trạng thái nhiều món cùng lúc bằng một câu lệnh cập nhật, món không ở trạng thái hợp lệ sẽ được bỏ qua")
+    @PutMapping("/status/transition")
+    public ApiResponseEntity transitionOrderItemsStatus(@Valid @RequestBody BatchUpdateOrderItemStatusRequest request) throws Exception {
+        Ultis.throwUnless(orderItemPolicy.canEdit(JwtGuard.userPrincipal(), null), new ForbiddenException());
+        User staff = JwtGuard.userPrincipal().getPersitentUser();
+        UserMustHaveScheduleAndAttendance rule = new UserMustHaveScheduleAndAttendance(staff, scheduleRepository, scheduleService, true);
+        RuleValidator.validate(rule);
+
+        List<Integer> orderItemIds = request.getOrderItemIds().stream().distinct().toList();
+        OrderItemStatus newStatus = OrderItemStatus.valueOf(request.getStatus().toUpperCase());
+        int updated = orderItemService.transitionOrderItemsStatus(orderItemIds, newStatus);
+
+        return ApiResponseEntity.success(new OrderItemStatusTransitionResponse(newStatus.name(), orderItemIds.size(), updated));
+    }
+
     @Operation(summary = "Chuyển sang trạng thái cancel bỏ qua kiểm tra trạng thái món", description = "API này dùng để chuyển sang trạng thái cancel bỏ qua kiểm tra trạng thái món theo ID")
     @PutMapping("/{id}/cancel-status")
     public ApiResponseEntity cancelIgnoreStatus(@PathVariable Integer id) throws Exception{
@@ -0,0 +1,102 @@
+package com.laklu.pos.controllers;
+
+import com.laklu.pos.auth.JwtGuard;
+import com.laklu.pos.auth.policies.OrderItemPolicy;
+import com.laklu.pos.auth.policies.OrderPolicy;
+import com.laklu.pos.dataObjects.ApiResponseEntity;
+import com.laklu.pos.dataObjects.request.OrderSyncOperation;
+import com.laklu.pos.dataObjects.request.OrderSyncRequest;
+import com.laklu.pos.dataObjects.response.OrderResponse;
+import com.laklu.pos.dataObjects.response.OrderSyncResponse;
+import com.laklu.pos.dataObjects.response.OrderSyncResult;
+import com.laklu.pos.entities.User;
+import com.laklu.pos.enums.OrderSyncOperationType;
+import com.laklu.pos.exceptions.RestHttpException;
+import com.laklu.pos.exceptions.RuleNotValidException;
+import com.laklu.pos.exceptions.httpExceptions.ForbiddenException;
+import com.laklu.pos.repositories.ScheduleRepository;
+import com.laklu.pos.services.OrderSyncService;
+import com.laklu.pos.services.ScheduleService;
+import com.laklu.pos.uiltis.Ultis;
+import com.laklu.pos.validator.RuleValidator;
+import com.laklu.pos.validator.UserMustHaveScheduleAndAttendance;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import lombok.AllArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/v1/order-sync")
+@Tag(name = "Order Sync Controller", description = "Đồng bộ đơn hàng từ tablet khi mất kết nối")
+@AllArgsConstructor
+public class OrderSyncController {
+
+    private final OrderSyncService orderSyncService;
+    private final OrderPolicy orderPolicy;
+    private final OrderItemPolicy orderItemPolicy;
+    private final ScheduleRepository scheduleRepository;
+    private final ScheduleService scheduleService;
+
+    @Operation(summary = "Đồng bộ nhật ký thao tác offline",
+            description = "API này nhận danh sách thao tác (tạo đơn, thêm món, đổi số lượng, đổi trạng thái) theo thứ tự, áp dụng theo từng đơn trong một giao dịch và trả về trạng thái cuối cùng cùng mốc đồng bộ")
+    @PostMapping("/")
+    public ApiResponseEntity sync(@Valid @RequestBody OrderSyncRequest request) throws Exception {
+        LocalDateTime cursor = LocalDateTime.now();
+        User staff = JwtGuard.userPrincipal().getPersitentUser();
+        for (OrderSyncOperation operation : request.getOperations()) {
+            Ultis.throwUnless(canApply(operation.getOperationType()), new ForbiddenException());
+        }
+        UserMustHaveScheduleAndAttendance rule = new UserMustHaveScheduleAndAttendance(staff, scheduleRepository, scheduleService, true);
+        RuleValidator.validate(rule);
+
+        List<OrderSyncResult> results = new ArrayList<>();
+        for (List<OrderSyncOperation> group : orderSyncService.groupByOrder(request.getOperations())) {
+            try {
+                results.add(orderSyncService.applyOrderOperations(group, staff));
+            } catch (RuleNotValidException e) {
+                results.add(orderSyncService.failedResult(group, e.getErrors()));
+            } catch (RestHttpException | IllegalArgumentException | IllegalStateException e) {
+                results.add(orderSyncService.failedResult(group, e.getMessage()));
+            }
+        }
+
+        return ApiResponseEntity.success(OrderSyncResponse.builder()
+                .results(results)
+                .cursor(cursor)
+                .build());
+    }
+
+    @Operation(summary = "Lấy các đơn hàng thay đổi từ mốc đồng bộ",
+            description = "API này trả về trạng thái hiện tại của các đơn hàng có thay đổi sau mốc cursor của lần đồng bộ trước")
+    @GetMapping("/changes")
+    public ApiResponseEntity getChanges(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since) throws Exception {
+        Ultis.throwUnless(orderPolicy.canList(JwtGuard.userPrincipal()), new ForbiddenException());
+        LocalDateTime cursor = LocalDateTime.now();
+        List<OrderResponse> orders = orderSyncService.getChangesSince(since);
+        return ApiResponseEntity.success(OrderSyncResponse.builder()
+                .results(orders.stream()
+                        .map(order -> OrderSyncResult.builder()
+                                .orderId(order.getId())
+                                .success(true)
+                                .order(order)
+                                .build())
+                        .toList())
+                .cursor(cursor)
+                .build());
+    }
+
+    private boolean canApply(OrderSyncOperationType type) {
+        return switch (type) {
+            case CREATE_ORDER -> orderPolicy.canCreate(JwtGuard.userPrincipal());
+            case ADD_ITEM -> orderItemPolicy.canCreate(JwtGuard.userPrincipal());
+            case UPDATE_QUANTITY, UPDATE_STATUS -> orderItemPolicy.canEdit(JwtGuard.userPrincipal(), null);
+        };
+    }
+}
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.laklu.pos.auth.JwtGuard;
 import com.laklu.pos.auth.policies.PaymentPolicy;
 import com.laklu.pos.dataObjects.ApiResponseEntity;
+import com.laklu.pos.dataObjects.MenuItemSnapshot;
 import com.laklu.pos.dataObjects.request.PaymentRequest;
 import com.laklu.pos.dataObjects.request.SepayWebhookRequest;
 import com.laklu.pos.dataObjects.response.BillResponse;
@@ -12,6 +13,7 @@ import com.laklu.pos.dataObjects.response.OrderItemsResponse;
 import com.laklu.pos.dataObjects.response.PaymentResponse;
 import com.laklu.pos.dataObjects.response.PaymentResponseV2;
 import com.laklu.pos.entities.Order;
+import com.laklu.pos.entities.OrderItem;
 import com.laklu.pos.entities.Payment;
 import com.laklu.pos.entities.User;
 import com.laklu.pos.enums.PaymentType;
@@ -56,15 +58,26 @@ public class PaymentController {
     private final PaymentHistoryService paymentHistoryService;
     private final ScheduleRepository scheduleRepository;
     private final ScheduleService scheduleService;
+    private final MenuItemSnapshotCache menuItemSnapshotCache;
     private final CashRegisterService cashRegisterService;
 
     private List<OrderItemsResponse> orderItemResponses(Payment payment) {
-        return payment.getOrder().getOrderItems().stream()
+        return orderItemResponses(payment.getOrder().getOrderItems());
+    }
+
+    /**
+     * Tên món lấy từ bộ nhớ đệm món nên không phải nạp Dish của từng món khi in hóa đơn
+     */
+    private List<OrderItemsResponse> orderItemResponses(List<OrderItem> orderItems) {
+        Map<Integer, MenuItemSnapshot> menuItems = menuItemSnapshotCache.findAll(orderItems.stream()
+                .map(orderItem -> orderItem.getMenuItem().getId())
+                .collect(Collectors.toSet()));
+        return orderItems.stream()
                 .map(orderItem -> new OrderItemsResponse(
                         orderItem.getId(),
-                        orderItem.getMenuItem().getDish().getName(),
+                        menuItems.get(orderItem.getMenuItem().getId()).dishName(),
                         orderItem.getQuantity(),
-                        orderItem.getMenuItem().getPrice()
+                        orderItem.resolveUnitPrice()
                 ))
                 .collect(Collectors.toList());
     }
@@ -72,13 +85,7 @@ public class PaymentController {
     @GetMapping("/order-items/{orderId}")
     public ApiResponseEntity getOrderItemsInOrder(@PathVariable Integer orderId) throws Exception {
         Order order = orderService.findOrFail(orderId);
-        List<OrderItemsResponse> responses = order.getOrderItems().stream()
-                .map(orderItem -> new OrderItemsResponse(
-                        orderItem.getId(),
-                        orderItem.getMenuItem().getDish().getName(),
-                        orderItem.getQuantity(),
-                        orderItem.getMenuItem().getPrice()
-                )).collect(Collectors.toList());
+        List<OrderItemsResponse> responses = orderItemResponses(order.getOrderItems());
         return ApiResponseEntity.success(responses, "Lấy danh sách món ăn trong hóa đơn");
     }
 
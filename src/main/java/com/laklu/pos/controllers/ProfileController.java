@@ -3,6 +3,7 @@ package com.laklu.pos.controllers;
 import com.laklu.pos.auth.JwtGuard;
 import com.laklu.pos.auth.policies.ProfilePolicy;
 import com.laklu.pos.dataObjects.ApiResponseEntity;
+import com.laklu.pos.dataObjects.FileUpload;
 import com.laklu.pos.dataObjects.request.ChangeEmploymentStatusRequest;
 import com.laklu.pos.dataObjects.request.CreateProfileRequest;
 import com.laklu.pos.dataObjects.request.UpdateAvatarRequest;
@@ -21,6 +22,7 @@ import com.laklu.pos.uiltis.Ultis;
 import com.laklu.pos.valueObjects.UserPrincipal;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.AllArgsConstructor;
 import org.springframework.http.MediaType;
@@ -203,11 +205,25 @@ public class ProfileController {
         Ultis.throwUnless(profilePolicy.canEdit(userPrincipal, profile), new ForbiddenException());
         
         // Thêm phương thức để xử lý upload và cập nhật avatar
-        Profile updatedProfile = profileService.uploadAndUpdateAvatar(id, file);
+        Profile updatedProfile = profileService.uploadAndUpdateAvatar(id, FileUpload.of(file));
         ProfileResponse response = toProfileResponse(updatedProfile);
         
         return ApiResponseEntity.success(response);
     }
+
+    @Operation(summary = "Upload và cập nhật avatar (tải lên dạng luồng)", description = "Gửi nội dung ảnh trực tiếp trong body với Content-Type của ảnh, tên file ở tham số name. Ảnh được kiểm tra và ghi thẳng xuống đĩa trong lúc đọc, không qua bộ đệm multipart")
+    @PostMapping(value = "/{id}/upload-avatar/stream")
+    public ApiResponseEntity streamAndUpdateAvatar(@PathVariable Integer id, @RequestParam("name") String name, HttpServletRequest request) throws Exception {
+        UserPrincipal userPrincipal = JwtGuard.userPrincipal();
+        Profile profile = profileService.findOrFail(id);
+
+        Ultis.throwUnless(profilePolicy.canEdit(userPrincipal, profile), new ForbiddenException());
+
+        Profile updatedProfile = profileService.uploadAndUpdateAvatar(id, FileUpload.of(request, name));
+        ProfileResponse response = toProfileResponse(updatedProfile);
+
+        return ApiResponseEntity.success(response);
+    }
     
     @Operation(summary = "Upload và cập nhật avatar của user hiện tại", description = "API này dùng để upload và cập nhật ảnh đại diện của user đang đăng nhập")
     @PostMapping(value = "/me/upload-avatar", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
@@ -220,12 +236,28 @@ public class ProfileController {
         // User luôn có quyền cập nhật avatar của mình
         Ultis.throwUnless(profilePolicy.canEdit(userPrincipal, profile), new ForbiddenException());
         
-        Profile updatedProfile = profileService.uploadAndUpdateAvatar(profile.getId(), file);
+        Profile updatedProfile = profileService.uploadAndUpdateAvatar(profile.getId(), FileUpload.of(file));
         ProfileResponse response = toProfileResponse(updatedProfile);
         
         return ApiResponseEntity.success(response);
     }
 
+    @Operation(summary = "Upload và cập nhật avatar của user hiện tại (tải lên dạng luồng)", description = "Giống /me/upload-avatar nhưng gửi nội dung ảnh trực tiếp trong body với Content-Type của ảnh, tên file ở tham số name")
+    @PostMapping(value = "/me/upload-avatar/stream")
+    public ApiResponseEntity streamAndUpdateMyAvatar(@RequestParam("name") String name, HttpServletRequest request) throws Exception {
+        UserPrincipal userPrincipal = JwtGuard.userPrincipal();
+        User currentUser = userPrincipal.getPersitentUser();
+        Profile profile = profileService.findByUserId(currentUser.getId())
+                .orElseThrow(NotFoundException::new);
+
+        Ultis.throwUnless(profilePolicy.canEdit(userPrincipal, profile), new ForbiddenException());
+
+        Profile updatedProfile = profileService.uploadAndUpdateAvatar(profile.getId(), FileUpload.of(request, name));
+        ProfileResponse response = toProfileResponse(updatedProfile);
+
+        return ApiResponseEntity.success(response);
+    }
+
     private ProfileResponse toProfileResponse(Profile profile) {
         ProfileResponse response = profileMapper.toProfileResponse(profile);
         if (profile.getAttachments() != null && !profile.getAttachments().isEmpty()) {
@@ -39,6 +39,7 @@ import java.time.LocalDateTime;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -178,9 +179,7 @@ public class ReservationController {
 
         Page<Reservation> reservationPage = reservationService.getAllReservation(page, size);
 
-        List<CalendarResponseDTO<Integer, ReservationResponse>> calendarResponses = reservationPage.getContent().stream()
-                .map(this::convertToCalendarResponse)
-                .collect(Collectors.toList());
+        List<CalendarResponseDTO<Integer, ReservationResponse>> calendarResponses = toCalendarResponses(reservationPage.getContent());
         
         PageResponse<CalendarResponseDTO<Integer, ReservationResponse>> pageResponse = 
                 PageResponse.fromPage(reservationPage, calendarResponses);
@@ -249,9 +248,7 @@ public class ReservationController {
             reservationPage = reservationService.getAllReservation(page, size);
         }
         
-        List<CalendarResponseDTO<Integer, ReservationResponse>> calendarResponses = reservationPage.getContent().stream()
-                .map(this::convertToCalendarResponse)
-                .collect(Collectors.toList());
+        List<CalendarResponseDTO<Integer, ReservationResponse>> calendarResponses = toCalendarResponses(reservationPage.getContent());
         
         PageResponse<CalendarResponseDTO<Integer, ReservationResponse>> pageResponse = 
                 PageResponse.fromPage(reservationPage, calendarResponses);
@@ -269,9 +266,7 @@ public class ReservationController {
         
         Page<Reservation> reservationPage = reservationService.searchByNameOrPhone(keyword, page, size);
         
-        List<CalendarResponseDTO<Integer, ReservationResponse>> calendarResponses = reservationPage.getContent().stream()
-                .map(this::convertToCalendarResponse)
-                .collect(Collectors.toList());
+        List<CalendarResponseDTO<Integer, ReservationResponse>> calendarResponses = toCalendarResponses(reservationPage.getContent());
         
         PageResponse<CalendarResponseDTO<Integer, ReservationResponse>> pageResponse = 
                 PageResponse.fromPage(reservationPage, calendarResponses);
@@ -279,6 +274,24 @@ public class ReservationController {
         return ApiResponseEntity.success(pageResponse);
     }
 
+    @Operation(summary = "Lịch sử đặt bàn của khách hàng", description = "API này dùng để lấy các lần đặt bàn của một khách hàng với phân trang")
+    @GetMapping("/customer/{customerId}")
+    public ApiResponseEntity getReservationsByCustomer(
+            @PathVariable Integer customerId,
+            @RequestParam(value = "page", defaultValue = "0") int page,
+            @RequestParam(value = "size", defaultValue = "10") int size) throws Exception {
+        Ultis.throwUnless(reservationPolicy.canList(JwtGuard.userPrincipal()), new ForbiddenException());
+
+        Page<Reservation> reservationPage = reservationService.findByCustomer(customerId, page, size);
+
+        List<CalendarResponseDTO<Integer, ReservationResponse>> calendarResponses = toCalendarResponses(reservationPage.getContent());
+
+        PageResponse<CalendarResponseDTO<Integer, ReservationResponse>> pageResponse =
+                PageResponse.fromPage(reservationPage, calendarResponses);
+
+        return ApiResponseEntity.success(pageResponse);
+    }
+
     @Operation(summary = "Lọc đặt bàn theo khoảng thời gian", description = "API này dùng để lọc đặt bàn theo các khoảng thời gian: hôm nay, hôm qua, tuần này, tháng này, ca tối (4h chiều đến 3h sáng)")
     @GetMapping("/time-range")
     public ApiResponseEntity getReservationsByTimeRange(
@@ -312,9 +325,7 @@ public class ReservationController {
                 break;
         }
         
-        List<CalendarResponseDTO<Integer, ReservationResponse>> calendarResponses = reservationPage.getContent().stream()
-                .map(this::convertToCalendarResponse)
-                .collect(Collectors.toList());
+        List<CalendarResponseDTO<Integer, ReservationResponse>> calendarResponses = toCalendarResponses(reservationPage.getContent());
         
         PageResponse<CalendarResponseDTO<Integer, ReservationResponse>> pageResponse = 
                 PageResponse.fromPage(reservationPage, calendarResponses);
@@ -355,9 +366,7 @@ public class ReservationController {
                 break;
         }
 
-        List<CalendarResponseDTO<Integer, ReservationResponse>> calendarResponses = reservationPage.getContent().stream()
-                .map(this::convertToCalendarResponse)
-                .collect(Collectors.toList());
+        List<CalendarResponseDTO<Integer, ReservationResponse>> calendarResponses = toCalendarResponses(reservationPage.getContent());
 
         PageResponse<CalendarResponseDTO<Integer, ReservationResponse>> pageResponse =
                 PageResponse.fromPage(reservationPage, calendarResponses);
@@ -419,11 +428,28 @@ public class ReservationController {
         return ApiResponseEntity.success("Chuyển bàn thành công");
     }
 
+    /**
+     * Chuyển một trang đặt bàn, tên người tạo của cả trang được lấy bằng một câu truy vấn
+     */
+    private List<CalendarResponseDTO<Integer, ReservationResponse>> toCalendarResponses(List<Reservation> reservations) {
+        Map<Integer, String> usernames = userService.findUsernamesByIds(reservations.stream()
+                .map(Reservation::getUserId)
+                .collect(Collectors.toSet()));
+        return reservations.stream()
+                .map(reservation -> convertToCalendarResponse(reservation,
+                        usernames.getOrDefault(reservation.getUserId(), "Unknown")))
+                .collect(Collectors.toList());
+    }
+
     private CalendarResponseDTO<Integer, ReservationResponse> convertToCalendarResponse(Reservation reservation) {
+        String createBy = userService.findUserById(reservation.getUserId())
+                .map(User::getUsername)
+                .orElse("Unknown");
+        return convertToCalendarResponse(reservation, createBy);
+    }
+
+    private CalendarResponseDTO<Integer, ReservationResponse> convertToCalendarResponse(Reservation reservation, String createBy) {
         try {
-            String createBy = userService.findUserById(reservation.getUserId())
-                    .map(User::getUsername)
-                    .orElse("Unknown");
 
             List<TableInfo> tables = reservation.getReservationTables().stream()
                     .map(reservationTable -> TableInfo.builder()
@@ -442,6 +468,8 @@ public class ReservationController {
                     .numberOfPeople(reservation.getNumberOfPeople())
                     .checkIn(reservation.getCheckIn())
                     .checkOut(reservation.getCheckOut())
+                    .expectedDurationMinutes(reservation.getExpectedDurationMinutes())
+                    .customerId(reservation.getCustomerId())
                     .build();
 
             return new CalendarResponseDTO<>(detail);
@@ -10,12 +10,13 @@ import com.laklu.pos.dataObjects.response.TableResponse;
 import com.laklu.pos.entities.Table;
 import com.laklu.pos.enums.StatusTable;
 import com.laklu.pos.exceptions.httpExceptions.ForbiddenException;
-import com.laklu.pos.services.ReservationService;
+import com.laklu.pos.services.TableOccupancyService;
+import com.laklu.pos.services.TableSeatingService;
 import com.laklu.pos.services.TableService;
 import com.laklu.pos.uiltis.Ultis;
 import com.laklu.pos.validator.RuleValidator;
-import com.laklu.pos.validator.TableMustBeAvailable;
 import com.laklu.pos.validator.TableMustBeUnique;
+import com.laklu.pos.validator.ValidationRule;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
@@ -23,11 +24,15 @@ import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.function.Function;
 
 @Slf4j
@@ -39,34 +44,63 @@ import java.util.function.Function;
 public class TableController {
     TableService tableService;
     TablePolicy tablePolicy;
-    ReservationService reservationService;
+    TableOccupancyService tableOccupancyService;
+    TableSeatingService tableSeatingService;
 
     @Operation(summary = "Lấy danh sách bàn", description = "API này dùng để lấy toàn bộ các bạn của quán")
     @GetMapping("/")
     public ApiResponseEntity index() throws Exception {
         Ultis.throwUnless(tablePolicy.canList(JwtGuard.userPrincipal()), new ForbiddenException());
-        LocalDate date = LocalDate.now();
         List<Table> tables = tableService.getAllTables();
+        Set<Integer> occupiedTableIds = tableOccupancyService.resolveOccupiedTableIds(LocalDate.now(), null);
         List<TableDetailResponse> tableDetailResponses = tables.stream()
-            .map(table -> formatTableDetailResponseByDate(table, date))
+            .map(table -> formatTableDetailResponseByDate(table, occupiedTableIds))
             .toList();
         return ApiResponseEntity.success(tableDetailResponses);
     }
 
-    @Operation(summary = "Lấy danh sách bàn theo ngày", description = "API này dùng để lấy danh sách bàn và trạng thái theo ngày")
+    @Operation(summary = "Lấy danh sách bàn theo ngày", description = "API này dùng để lấy danh sách bàn và trạng thái theo ngày, nếu truyền thêm giờ (HH:mm) và thời lượng (phút) thì trạng thái được tính theo khung giờ đó")
     @GetMapping("/by-date")
-    public ApiResponseEntity getTablesByDate(@RequestParam("date") String dateString) throws Exception {
+    public ApiResponseEntity getTablesByDate(@RequestParam("date") String dateString,
+                                             @RequestParam(value = "time", required = false) String timeString,
+                                             @RequestParam(value = "duration", required = false) Integer durationMinutes) throws Exception {
         Ultis.throwUnless(tablePolicy.canList(JwtGuard.userPrincipal()), new ForbiddenException());
 
         LocalDate requestDate = LocalDate.parse(dateString);
         List<Table> tables = tableService.getAllTables();
+        // Lấy toàn bộ bàn đã được giữ trong ngày (hoặc khung giờ) một lần thay vì kiểm tra từng bàn
+        Set<Integer> occupiedTableIds;
+        if (timeString != null) {
+            LocalDateTime from = requestDate.atTime(LocalTime.parse(timeString));
+            occupiedTableIds = tableOccupancyService.resolveOccupiedTableIds(from,
+                    tableOccupancyService.resolveEnd(from, durationMinutes), null);
+        } else {
+            occupiedTableIds = tableOccupancyService.resolveOccupiedTableIds(requestDate, null);
+        }
         List<TableDetailResponse> tableDetailResponses = tables.stream()
-            .map(table -> formatTableDetailResponseByDate(table, requestDate))
+            .map(table -> formatTableDetailResponseByDate(table, occupiedTableIds))
             .toList();
         return ApiResponseEntity.success(tableDetailResponses);
     }
 
-    private TableDetailResponse formatTableDetailResponseByDate(Table table, LocalDate date) {
+    @Operation(summary = "Gợi ý xếp bàn cho nhóm khách", description = "API này dùng để gợi ý các tập bàn trống ít bàn nhất đủ chỗ cho nhóm khách trong khung giờ, ưu tiên bàn cùng khu vực")
+    @GetMapping("/seating-suggestions")
+    public ApiResponseEntity suggestSeating(@RequestParam("numberOfPeople") Integer numberOfPeople,
+                                            @RequestParam("checkIn") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime checkIn,
+                                            @RequestParam(value = "duration", required = false) Integer durationMinutes,
+                                            @RequestParam(value = "limit", defaultValue = "5") Integer limit) throws Exception {
+        Ultis.throwUnless(tablePolicy.canList(JwtGuard.userPrincipal()), new ForbiddenException());
+
+        RuleValidator.validate(new ValidationRule(
+                (v) -> numberOfPeople > 0,
+                "numberOfPeople",
+                "Số người phải lớn hơn 0"
+        ));
+
+        return ApiResponseEntity.success(tableSeatingService.suggest(numberOfPeople, checkIn, durationMinutes, Math.max(1, Math.min(limit, 20))));
+    }
+
+    private TableDetailResponse formatTableDetailResponseByDate(Table table, Set<Integer> occupiedTableIds) {
         // Nếu bàn đã ở trạng thái OCCUPIED, giữ nguyên trạng thái này
         if (table.getStatus() == StatusTable.OCCUPIED) {
             return TableDetailResponse.builder()
@@ -78,7 +112,7 @@ public class TableController {
         }
         
         // Nếu không, kiểm tra xem bàn có khả dụng không
-        var isAvailable = new TableMustBeAvailable(table, date, reservationService).isValid();
+        var isAvailable = !occupiedTableIds.contains(table.getId());
         StatusTable status = isAvailable ? StatusTable.AVAILABLE : StatusTable.RESERVED;
         return TableDetailResponse.builder()
                 .id(table.getId())
@@ -14,6 +14,7 @@ import com.laklu.pos.exceptions.httpExceptions.ForbiddenException;
 import com.laklu.pos.exceptions.httpExceptions.NotFoundException;
 import com.laklu.pos.mapper.OrderMapper;
 import com.laklu.pos.repositories.ScheduleRepository;
+import com.laklu.pos.services.IdempotencyService;
 import com.laklu.pos.services.OrderService;
 import com.laklu.pos.services.ReservationService;
 import com.laklu.pos.services.ScheduleService;
@@ -31,6 +32,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -53,12 +55,14 @@ public class TableOrderController {
     private final ScheduleRepository scheduleRepository;
     private final ScheduleService scheduleService;
     private final TableService tableService;
+    private final IdempotencyService idempotencyService;
 
     @Operation(summary = "Tạo đặt bàn và order cùng lúc", description = "API này dùng để tạo đặt bàn và order cùng lúc")
     @PostMapping("/")
     @Transactional
     public ApiResponseEntity createTableOrder(
             @Valid @RequestBody TableOrderRequest request,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
             @AuthenticationPrincipal UserPrincipal userPrincipal) throws Exception {
         
         // Kiểm tra quyền
@@ -70,63 +74,66 @@ public class TableOrderController {
         UserMustHaveScheduleAndAttendance rule = new UserMustHaveScheduleAndAttendance(staff, scheduleRepository, scheduleService, true);
         RuleValidator.validate(rule);
         
-        // Lấy danh sách bàn
-        List<Table> tables = tableService.getAllTables().stream()
-                .filter(table -> request.getTableIds().contains(table.getId()))
-                .toList();
+        // Client gửi lại cùng Idempotency-Key sẽ nhận kết quả cũ, không tạo đặt bàn và order trùng
+        Object response = idempotencyService.execute("table-order.create", idempotencyKey, () -> {
+            // Lấy danh sách bàn
+            List<Table> tables = tableService.getAllTables().stream()
+                    .filter(table -> request.getTableIds().contains(table.getId()))
+                    .toList();
         
         
-        // Tính tổng dung lượng bàn
-        int totalCapacity = tables.stream().mapToInt(Table::getCapacity).sum();
+            // Tính tổng dung lượng bàn
+            int totalCapacity = tables.stream().mapToInt(Table::getCapacity).sum();
         
-        // Kiểm tra số lượng người có phù hợp với tổng dung lượng bàn
-        if (request.getNumberOfPeople() > totalCapacity) {
-            // Thay vì ném exception, đặt số người bằng với tổng dung lượng bàn
-            request.setNumberOfPeople(totalCapacity);
-        }
+            // Kiểm tra số lượng người có phù hợp với tổng dung lượng bàn
+            if (request.getNumberOfPeople() > totalCapacity) {
+                // Thay vì ném exception, đặt số người bằng với tổng dung lượng bàn
+                request.setNumberOfPeople(totalCapacity);
+            }
         
-        // Tạo request cho Reservation
-        LocalDateTime now = LocalDateTime.now();
-        ReservationRequest reservationRequest = ReservationRequest.builder()
-                .customerName(request.getCustomerName())
-                .customerPhone(request.getCustomerPhone())
-                .reservationTime(now)
-                .checkIn(now)
-                .tableIds(request.getTableIds())
-                .numberOfPeople(request.getNumberOfPeople())
-                .build();
+            // Tạo request cho Reservation
+            LocalDateTime now = LocalDateTime.now();
+            ReservationRequest reservationRequest = ReservationRequest.builder()
+                    .customerName(request.getCustomerName())
+                    .customerPhone(request.getCustomerPhone())
+                    .reservationTime(now)
+                    .checkIn(now)
+                    .tableIds(request.getTableIds())
+                    .numberOfPeople(request.getNumberOfPeople())
+                    .build();
         
-        // Tạo reservation
-        Reservation reservation = reservationService.createReservation(reservationRequest);
-        reservationService.updateReservationStatus(reservation, Reservation.Status.CONFIRMED);
+            // Tạo reservation
+            Reservation reservation = reservationService.createReservation(reservationRequest);
+            reservationService.updateReservationStatus(reservation, Reservation.Status.CONFIRMED);
         
-        // Tạo request cho Order
-        NewOrderRequest newOrderRequest = new NewOrderRequest();
-        newOrderRequest.setReservationId(reservation.getId());
-        newOrderRequest.setOrderItems(request.getOrderItems());
+            // Tạo request cho Order
+            NewOrderRequest newOrderRequest = new NewOrderRequest();
+            newOrderRequest.setReservationId(reservation.getId());
+            newOrderRequest.setOrderItems(request.getOrderItems());
         
-        // Tạo order
-        Order order = orderService.createOrder(newOrderRequest, staff);
-        // Chuyển đổi sang OrderResponseDTO
-        List<TableInfo> tableInfos = tables.stream()
-                .map(table -> TableInfo.builder()
-                        .id(table.getId())
-                        .tableNumber(table.getTableNumber())
-                        .build())
-                .collect(Collectors.toList());
+            // Tạo order
+            Order order = orderService.createOrder(newOrderRequest, staff);
+            // Chuyển đổi sang OrderResponseDTO
+            List<TableInfo> tableInfos = tables.stream()
+                    .map(table -> TableInfo.builder()
+                            .id(table.getId())
+                            .tableNumber(table.getTableNumber())
+                            .build())
+                    .collect(Collectors.toList());
 
 
-        OrderResponseDTO responseDTO = new OrderResponseDTO(
-                order.getId(),
-                order.getReservation().getId(),
-                order.getStaff().getId(),
-                order.getStatus().getLabel(),
-                order.getCreatedAt(),
-                order.getUpdatedAt(),
-                tableInfos,
-                orderMapper.toOrderResponse(order).getOrderItems()
-        );
-        
-        return ApiResponseEntity.success(responseDTO);
+            return new OrderResponseDTO(
+                    order.getId(),
+                    order.getReservation().getId(),
+                    order.getStaff().getId(),
+                    order.getStatus().getLabel(),
+                    order.getCreatedAt(),
+                    order.getUpdatedAt(),
+                    tableInfos,
+                    orderMapper.toOrderResponse(order).getOrderItems()
+            );
+        });
+
+        return ApiResponseEntity.success(response);
     }
 } 
\ No newline at end of file
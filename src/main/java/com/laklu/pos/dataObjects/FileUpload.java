@@ -0,0 +1,45 @@
+package com.laklu.pos.dataObjects;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.MediaType;
+import org.springframework.util.InvalidMimeTypeException;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Một file tải lên dưới dạng luồng, dùng chung cho multipart và body gửi thẳng
+ *
+ * @param content      Luồng nội dung, được đọc đúng một lần
+ * @param originalName Tên file phía client
+ * @param contentType  MIME type client khai báo (đã bỏ tham số như charset), null nếu không hợp lệ
+ * @param size         Dung lượng khai báo, -1 nếu chưa biết (chunked)
+ */
+public record FileUpload(InputStream content, String originalName, String contentType, long size) {
+
+    public static FileUpload of(MultipartFile file) throws IOException {
+        return new FileUpload(file.getInputStream(), file.getOriginalFilename(),
+                normalizeContentType(file.getContentType()), file.getSize());
+    }
+
+    /**
+     * Body của request chính là nội dung file, Content-Type của request là loại file
+     */
+    public static FileUpload of(HttpServletRequest request, String originalName) throws IOException {
+        return new FileUpload(request.getInputStream(), originalName,
+                normalizeContentType(request.getContentType()), request.getContentLengthLong());
+    }
+
+    private static String normalizeContentType(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        try {
+            MediaType mediaType = MediaType.parseMediaType(contentType);
+            return mediaType.getType() + "/" + mediaType.getSubtype();
+        } catch (InvalidMimeTypeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.laklu.pos.dataObjects;
+
+import com.laklu.pos.dataObjects.response.DishResponse;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Bản chụp chỉ đọc của một món trong thực đơn kèm thông tin món ăn, dùng khi gọi món, tính tiền và hiển thị bếp
+ * thay cho việc nạp MenuItem và Dish từ DB
+ */
+public record MenuItemSnapshot(Integer id,
+                               BigDecimal price,
+                               Boolean active,
+                               Integer menuId,
+                               Long categoryId,
+                               Integer dishId,
+                               String dishName,
+                               String dishDescription,
+                               Double dishPrice,
+                               Boolean requiresPreparation,
+                               LocalDateTime dishCreatedAt,
+                               LocalDateTime dishUpdatedAt) {
+
+    /**
+     * Thông tin món ăn giống DishMapper.toDishResponse (không kèm ảnh)
+     */
+    public DishResponse toDishResponse() {
+        return new DishResponse(dishId, dishName, dishDescription, dishCreatedAt, dishUpdatedAt, dishPrice, requiresPreparation, null);
+    }
+}
@@ -0,0 +1,20 @@
+package com.laklu.pos.dataObjects.request;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class MenuItemImportRequest {
+    @NotNull(message = "Thực đơn không được để trống")
+    private Integer menuId;
+
+    @NotEmpty(message = "Danh sách món không được để trống")
+    @Size(max = 1000, message = "Tối đa 1000 món mỗi lần nhập")
+    @Valid
+    private List<MenuItemImportRow> items;
+}
@@ -0,0 +1,19 @@
+package com.laklu.pos.dataObjects.request;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * Một dòng nhập món hàng loạt.
+ * Món ăn đã có trong thực đơn thì cập nhật giá (và danh mục, trạng thái nếu có truyền), chưa có thì thêm mới.
+ */
+@Data
+public class MenuItemImportRow {
+    private Integer dishId;
+    // Bắt buộc khi thêm mới, để trống khi cập nhật thì giữ danh mục cũ
+    private Long categoryId;
+    private BigDecimal price;
+    // Để trống thì món mới được bật, món cũ giữ trạng thái hiện tại
+    private Boolean isActive;
+}
@@ -18,4 +18,7 @@ public class NewTable {
     @Min(value = 1, message = "Số lượng khách một bàn tối thiểu là 1") // Giá trị tối thiểu là 1
     @Max(value = 20, message = "Số lượng khách một bàn tối đa là 20") // Giới hạn số lượng tối đa
     Integer capacity;
+
+    @Size(max = 50, message = "Tên khu vực không được quá 50 kí tự")
+    String zone;
 }
@@ -0,0 +1,67 @@
+package com.laklu.pos.dataObjects.request;
+
+import com.laklu.pos.enums.OrderSyncOperationType;
+import com.laklu.pos.validator.ValidEnum;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Một thao tác trong nhật ký offline của tablet.
+ * Thao tác trên order mới tạo offline tham chiếu qua clientOrderRef, order đã có trên server dùng orderId.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class OrderSyncOperation {
+    @NotBlank(message = "Mã thao tác không được để trống")
+    @Size(max = 100, message = "Mã thao tác tối đa 100 ký tự")
+    String operationId;
+
+    @ValidEnum(enumClass = OrderSyncOperationType.class, message = "Loại thao tác không hợp lệ!")
+    String type;
+
+    Integer orderId;
+
+    String clientOrderRef;
+
+    LocalDateTime clientTimestamp;
+
+    // CREATE_ORDER
+    Integer reservationId;
+
+    @Valid
+    List<NewOrderItemRequest> orderItems;
+
+    // ADD_ITEM
+    Integer menuItemId;
+
+    // UPDATE_QUANTITY, UPDATE_STATUS
+    Integer orderItemId;
+
+    // ADD_ITEM, UPDATE_QUANTITY
+    @Min(value = 1, message = "Số lượng phải lớn hơn 0")
+    Integer quantity;
+
+    // UPDATE_STATUS
+    String status;
+
+    public OrderSyncOperationType getOperationType() {
+        return OrderSyncOperationType.valueOf(type.toUpperCase());
+    }
+
+    /**
+     * Khóa nhóm các thao tác thuộc cùng một order
+     */
+    public String getGroupKey() {
+        return orderId != null ? "order:" + orderId : "ref:" + clientOrderRef;
+    }
+}
@@ -0,0 +1,14 @@
+package com.laklu.pos.dataObjects.request;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class OrderSyncRequest {
+    @NotEmpty(message = "Danh sách thao tác không được để trống")
+    @Valid
+    private List<OrderSyncOperation> operations;
+}
@@ -1,6 +1,8 @@
 package com.laklu.pos.dataObjects.request;
 
 import jakarta.validation.constraints.FutureOrPresent;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
@@ -35,4 +37,8 @@ public class ReservationRequest {
     @NotEmpty(message = "Hãy chọn bàn")
     List<Integer> tableIds;
     private Integer numberOfPeople;
+
+    @Min(value = 15, message = "Thời lượng giữ bàn tối thiểu 15 phút")
+    @Max(value = 720, message = "Thời lượng giữ bàn tối đa 720 phút")
+    private Integer expectedDurationMinutes;
 }
\ No newline at end of file
@@ -17,6 +17,9 @@ public class TableUpdateRequest {
     @Max(value = 100, message = "Sức chứa không được vượt quá 100") // Giới hạn số lượng tối đa
     private Integer capacity;
 
+    @Size(max = 50, message = "Tên khu vực không được vượt quá 50 ký tự")
+    private String zone;
+
 
     private StatusTable status;
 }
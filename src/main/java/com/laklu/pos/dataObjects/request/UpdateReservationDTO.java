@@ -24,4 +24,8 @@ public class UpdateReservationDTO {
 
     @Min(value = 1, message = "Số lượng người phải lớn hơn 0")
     private Integer numberOfPeople;
+
+    @Min(value = 15, message = "Thời lượng giữ bàn tối thiểu 15 phút")
+    @Max(value = 720, message = "Thời lượng giữ bàn tối đa 720 phút")
+    private Integer expectedDurationMinutes;
 }
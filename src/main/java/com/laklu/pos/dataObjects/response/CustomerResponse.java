@@ -0,0 +1,36 @@
+package com.laklu.pos.dataObjects.response;
+
+import com.laklu.pos.entities.Customer;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class CustomerResponse {
+    Integer id;
+    String name;
+    String phone;
+    Integer visitCount;
+    BigDecimal totalSpent;
+    LocalDateTime lastVisitAt;
+    // Khách đã từng hoàn thành ít nhất một lần đặt bàn
+    Boolean returning;
+
+    public static CustomerResponse fromEntity(Customer customer) {
+        return CustomerResponse.builder()
+                .id(customer.getId())
+                .name(customer.getName())
+                .phone(customer.getPhone())
+                .visitCount(customer.getVisitCount())
+                .totalSpent(customer.getTotalSpent())
+                .lastVisitAt(customer.getLastVisitAt())
+                .returning(customer.getVisitCount() > 0)
+                .build();
+    }
+}
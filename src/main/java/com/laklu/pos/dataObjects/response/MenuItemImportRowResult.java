@@ -0,0 +1,20 @@
+package com.laklu.pos.dataObjects.response;
+
+import lombok.*;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@Builder
+public class MenuItemImportRowResult {
+    public static final String CREATED = "CREATED";
+    public static final String UPDATED = "UPDATED";
+    public static final String FAILED = "FAILED";
+
+    private Integer index;
+    private Integer dishId;
+    private String result;
+    private Integer menuItemId;
+    private String error;
+}
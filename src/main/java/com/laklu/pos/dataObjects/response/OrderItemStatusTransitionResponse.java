@@ -0,0 +1,18 @@
+package com.laklu.pos.dataObjects.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class OrderItemStatusTransitionResponse {
+    private String status;
+    // Số món được yêu cầu chuyển trạng thái
+    private int requested;
+    // Số món thực sự được cập nhật, các món không ở trạng thái nguồn hợp lệ bị bỏ qua
+    private int updated;
+}
@@ -0,0 +1,19 @@
+package com.laklu.pos.dataObjects.response;
+
+import lombok.*;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@Builder
+public class OrderSyncOperationResult {
+    public static final String APPLIED = "APPLIED";
+    public static final String DUPLICATE = "DUPLICATE";
+
+    private String operationId;
+    private String type;
+    private String result;
+    private Integer orderId;
+    private Integer orderItemId;
+}
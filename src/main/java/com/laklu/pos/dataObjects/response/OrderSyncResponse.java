@@ -0,0 +1,17 @@
+package com.laklu.pos.dataObjects.response;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@Builder
+public class OrderSyncResponse {
+    private List<OrderSyncResult> results;
+    // Mốc thời gian server, client gửi lại ở lần đồng bộ sau để lấy các thay đổi kể từ mốc này
+    private LocalDateTime cursor;
+}
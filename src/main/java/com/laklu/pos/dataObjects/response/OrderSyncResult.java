@@ -0,0 +1,23 @@
+package com.laklu.pos.dataObjects.response;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * Kết quả đồng bộ của một order: các thao tác đã áp dụng và trạng thái cuối cùng trên server.
+ * Nếu có lỗi thì toàn bộ thao tác của order bị hoàn tác và error chứa thông báo lỗi.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@Builder
+public class OrderSyncResult {
+    private String clientOrderRef;
+    private Integer orderId;
+    private boolean success;
+    private Object error;
+    private List<OrderSyncOperationResult> operations;
+    private OrderResponse order;
+}
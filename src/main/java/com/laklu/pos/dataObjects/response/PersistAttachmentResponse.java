@@ -11,4 +11,13 @@ public class PersistAttachmentResponse {
     private Long id;
     private String link;
     private String name;
+    // Ảnh thu nhỏ cho danh sách, null nếu attachment không phải ảnh
+    private String thumbnailLink;
+    private String mediumLink;
+
+    public PersistAttachmentResponse(Long id, String link, String name) {
+        this.id = id;
+        this.link = link;
+        this.name = name;
+    }
 }
@@ -24,6 +24,8 @@ public class ReservationResponse implements Calendarable<Integer , ReservationRe
     Integer numberOfPeople;
     LocalDateTime checkIn;
     LocalDateTime checkOut;
+    Integer expectedDurationMinutes;
+    Integer customerId;
     List<TableInfo> tables;
 
     @Override
@@ -0,0 +1,20 @@
+package com.laklu.pos.dataObjects.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class SeatingSuggestionResponse {
+    List<TableInfo> tables;
+    Integer totalCapacity;
+    // Số ghế dư so với số khách
+    Integer wastedSeats;
+    List<String> zones;
+    Boolean sameZone;
+}
@@ -8,11 +8,13 @@ import lombok.Data;
 public class TableResponse {
     private String tableNumber;
     private int capacity;
+    private String zone;
     private String status;
 
     public TableResponse(Table table) {
         this.tableNumber = table.getTableNumber();
         this.capacity = table.getCapacity();
+        this.zone = table.getZone();
         this.status = table.getStatus().toString();
     }
 }
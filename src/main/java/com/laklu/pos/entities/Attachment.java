@@ -4,7 +4,13 @@ import com.laklu.pos.controllers.ActivityLogListener;
 import jakarta.persistence.*;
 import lombok.*;
 
+import java.time.LocalDateTime;
+
 @Entity
+@jakarta.persistence.Table(
+        name = "attachment",
+        indexes = @Index(name = "idx_attachment_storage_name", columnList = "storage_name")
+)
 @Getter
 @Setter
 @NoArgsConstructor
@@ -37,6 +43,30 @@ public class Attachment implements Identifiable<Long> {
     @Column(name = "path", nullable = false)
     private String path;
 
+    // SHA-256 của nội dung file, null với file tải lên trước khi lưu theo nội dung
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    // Tên file trên đĩa (hash + đuôi file), nhiều attachment cùng nội dung dùng chung một file
+    @Column(name = "storage_name")
+    private String storageName;
+
+    // Null với attachment tạo trước khi có cột này
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+
+    /**
+     * Tên file thực tế trong thư mục upload: file lưu theo nội dung hoặc randomName với dữ liệu cũ
+     */
+    public String getStoredFileName() {
+        return storageName != null ? storageName : randomName;
+    }
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+
     @Override
     public Long getId() { // Trả về String thay vì Integer
         return id;
@@ -0,0 +1,61 @@
+package com.laklu.pos.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Entity
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@jakarta.persistence.Table(
+        name = "customers",
+        uniqueConstraints = @UniqueConstraint(name = "uk_customers_phone", columnNames = "phone")
+)
+public class Customer implements Identifiable<Integer> {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    Integer id;
+
+    // Số điện thoại đã chuẩn hóa (chỉ gồm chữ số, đầu 0), dùng làm khóa nhận diện khách
+    @Column(name = "phone", nullable = false, length = 20)
+    String phone;
+
+    // Tên khách ở lần đặt bàn gần nhất
+    @Column(name = "name", nullable = false)
+    String name;
+
+    @Builder.Default
+    @Column(name = "visit_count", nullable = false)
+    Integer visitCount = 0;
+
+    @Builder.Default
+    @Column(name = "total_spent", nullable = false)
+    BigDecimal totalSpent = BigDecimal.ZERO;
+
+    @Column(name = "last_visit_at")
+    LocalDateTime lastVisitAt;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    LocalDateTime updatedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        this.createdAt = LocalDateTime.now();
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        this.updatedAt = LocalDateTime.now();
+    }
+}
@@ -4,6 +4,7 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.BatchSize;
 
 import java.time.LocalDateTime;
 import java.util.Arrays;
@@ -41,7 +42,9 @@ public class Dish implements Identifiable<Integer>, InteractWithAttachments<Inte
     @OneToMany(mappedBy = "dish", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<MenuItem> menuItems;
 
+    // Nạp ảnh của nhiều món trong một câu truy vấn khi duyệt danh sách món
     @ManyToMany
+    @BatchSize(size = 50)
     @JoinTable(
             name = "dish_attachment",
             joinColumns = @JoinColumn(name = "dish_id"),
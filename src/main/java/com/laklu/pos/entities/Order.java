@@ -1,6 +1,7 @@
 package com.laklu.pos.entities;
 
 import com.laklu.pos.enums.OrderStatus;
+import com.laklu.pos.uiltis.BusinessDay;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -8,6 +9,8 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
@@ -17,7 +20,10 @@ import lombok.experimental.FieldDefaults;
 
 
 @Entity
-@Table(name = "Orders")
+@Table(
+        name = "Orders",
+        indexes = @Index(name = "idx_orders_business_day_status", columnList = "business_day, status")
+)
 @Getter
 @Setter
 @NoArgsConstructor
@@ -43,6 +49,10 @@ public class Order {
     @Column(name = "updated_at")
     LocalDateTime updatedAt;
 
+    // Ngày kinh doanh của thời điểm tạo đơn (xem BusinessDay)
+    @Column(name = "business_day", updatable = false)
+    LocalDate businessDay;
+
     @Enumerated(EnumType.STRING)
     @Column(name = "status", nullable = false)
     OrderStatus status;
@@ -50,10 +60,37 @@ public class Order {
     @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, orphanRemoval = true)
     List<OrderItem> orderItems = new ArrayList<>();
 
+    // Tổng tiền các món chưa hủy, cập nhật dần mỗi khi món thay đổi. Null với đơn cũ chưa được tính
+    @Column(name = "subtotal")
+    BigDecimal subtotal;
+
+    /**
+     * Cộng thêm chênh lệch vào subtotal. Đơn cũ chưa có subtotal sẽ được tính lại toàn bộ khi cần
+     */
+    public void addToSubtotal(BigDecimal amount) {
+        if (subtotal != null) {
+            subtotal = subtotal.add(amount);
+        }
+    }
+
+    /**
+     * Tính lại subtotal từ danh sách món hiện có
+     */
+    public BigDecimal recalculateSubtotal() {
+        subtotal = orderItems == null ? BigDecimal.ZERO : orderItems.stream()
+                .map(OrderItem::calculateLineTotal)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return subtotal;
+    }
+
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
         updatedAt = LocalDateTime.now();
+        businessDay = BusinessDay.of(createdAt);
+        if (subtotal == null) {
+            recalculateSubtotal();
+        }
     }
 
     @PreUpdate
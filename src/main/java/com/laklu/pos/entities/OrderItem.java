@@ -6,6 +6,7 @@ import lombok.*;
 import jakarta.persistence.Table;
 import lombok.experimental.FieldDefaults;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
@@ -32,6 +33,10 @@ public class OrderItem {
     @Column(name = "quantity", nullable = false)
     int quantity;
 
+    // Giá món tại thời điểm gọi, không bị ảnh hưởng khi giá trong menu thay đổi
+    @Column(name = "unit_price")
+    BigDecimal unitPrice;
+
     @Enumerated(EnumType.STRING)
     @Column(name = "status", nullable = false)
     OrderItemStatus status;
@@ -42,10 +47,30 @@ public class OrderItem {
     @Column(name = "updated_at")
     LocalDateTime updatedAt;
 
+    /**
+     * Giá áp dụng cho món: giá chụp lại khi gọi món, hoặc giá hiện tại trong menu với dữ liệu cũ
+     */
+    public BigDecimal resolveUnitPrice() {
+        return unitPrice != null ? unitPrice : menuItem.getPrice();
+    }
+
+    /**
+     * Thành tiền của món, món đã hủy không tính tiền
+     */
+    public BigDecimal calculateLineTotal() {
+        if (status == OrderItemStatus.CANCELLED) {
+            return BigDecimal.ZERO;
+        }
+        return resolveUnitPrice().multiply(BigDecimal.valueOf(quantity));
+    }
+
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
         updatedAt = LocalDateTime.now();
+        if (unitPrice == null && menuItem != null) {
+            unitPrice = menuItem.getPrice();
+        }
     }
 
     @PreUpdate
@@ -3,10 +3,13 @@ package com.laklu.pos.entities;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.laklu.pos.auth.JwtGuard;
 import com.laklu.pos.controllers.ActivityLogListener;
+import com.laklu.pos.uiltis.BusinessDay;
 import jakarta.persistence.*;
 import lombok.*;
 import lombok.experimental.FieldDefaults;
+import org.hibernate.annotations.BatchSize;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
@@ -18,6 +21,9 @@ import java.util.Set;
 @NoArgsConstructor
 @AllArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE)
+@jakarta.persistence.Table(
+        indexes = @Index(name = "idx_reservation_business_day_status", columnList = "business_day, status")
+)
 public class Reservation implements Identifiable<Integer> {
 
     @Id
@@ -46,13 +52,27 @@ public class Reservation implements Identifiable<Integer> {
     @Column(name = "updated_at")
     LocalDateTime updatedAt;
 
+    // Ngày kinh doanh của giờ check in, tính lại mỗi lần lưu (xem BusinessDay)
+    @Column(name = "business_day")
+    LocalDate businessDay;
+
     @Column(name = "user_id")
     Integer userId;
 
+    @Column(name = "customer_id")
+    Integer customerId;
+
     @Column(name = "number_of_people", nullable = false)
     Integer numberOfPeople;
 
-    @OneToMany(mappedBy = "reservation", cascade = CascadeType.ALL, fetch = FetchType.EAGER)
+    // Thời lượng dự kiến (phút) khách giữ bàn tính từ checkIn, null thì dùng thời lượng mặc định
+    @Column(name = "expected_duration_minutes")
+    Integer expectedDurationMinutes;
+
+    // Danh sách đặt bàn nạp bàn theo cả trang bằng ReservationRepository.findWithTablesByIdIn,
+    // BatchSize gom các lần nạp lẻ còn lại thành một câu truy vấn cho nhiều đặt bàn
+    @OneToMany(mappedBy = "reservation", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
+    @BatchSize(size = 50)
     List<ReservationTable> reservationTables = new ArrayList<>();
 
     @Override
@@ -63,12 +83,14 @@ public class Reservation implements Identifiable<Integer> {
     @PrePersist
     protected void onCreate() {
         this.updatedAt = LocalDateTime.now();
+        this.businessDay = BusinessDay.of(this.checkIn);
         this.userId = JwtGuard.userPrincipal().getPersitentUser().getId();
     }
 
     @PreUpdate
     protected void onUpdate() {
         this.updatedAt = LocalDateTime.now();
+        this.businessDay = BusinessDay.of(this.checkIn);
     }
 
     public enum Status {
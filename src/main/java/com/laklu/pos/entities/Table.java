@@ -29,6 +29,10 @@ public class Table implements Identifiable<Integer> {
     @Column(name = "capacity", nullable = false)
     Integer capacity;
 
+    // Khu vực của bàn (tầng, sân vườn...), dùng để ưu tiên ghép các bàn gần nhau
+    @Column(name = "zone", length = 50)
+    String zone;
+
     @Enumerated(EnumType.STRING)
     @Column(name = "status", nullable = false)
     StatusTable status;
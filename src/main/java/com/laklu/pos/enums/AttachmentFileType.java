@@ -0,0 +1,75 @@
+package com.laklu.pos.enums;
+
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Các loại file được phép tải lên, kèm đuôi file dùng khi lưu trên đĩa.
+ * Đuôi file lưu trữ luôn lấy từ loại file đã kiểm tra chứ không từ tên file phía client,
+ * nên khi phục vụ file có thể suy ra lại đúng loại từ đuôi
+ */
+public enum AttachmentFileType {
+    JPEG("image/jpeg", ".jpg", ".jpeg"),
+    PNG("image/png", ".png"),
+    GIF("image/gif", ".gif"),
+    PDF("application/pdf", ".pdf"),
+    DOC("application/msword", ".doc"),
+    DOCX("application/vnd.openxmlformats-officedocument.wordprocessingml.document", ".docx"),
+    XLS("application/vnd.ms-excel", ".xls"),
+    XLSX("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet", ".xlsx"),
+    TEXT("text/plain", ".txt");
+
+    private final String mimeType;
+    private final String extension;
+    // Đuôi khác của cùng loại, chỉ dùng để nhận diện file cũ
+    private final String[] aliases;
+
+    AttachmentFileType(String mimeType, String extension, String... aliases) {
+        this.mimeType = mimeType;
+        this.extension = extension;
+        this.aliases = aliases;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public boolean isImage() {
+        return mimeType.startsWith("image/");
+    }
+
+    public static Optional<AttachmentFileType> fromMimeType(String mimeType) {
+        for (AttachmentFileType type : values()) {
+            if (type.mimeType.equals(mimeType)) {
+                return Optional.of(type);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Loại file theo đuôi của tên file, rỗng nếu đuôi không thuộc danh sách được phép
+     */
+    public static Optional<AttachmentFileType> fromFileName(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        if (dot < 0) {
+            return Optional.empty();
+        }
+        String extension = fileName.substring(dot).toLowerCase(Locale.ROOT);
+        for (AttachmentFileType type : values()) {
+            if (type.extension.equals(extension)) {
+                return Optional.of(type);
+            }
+            for (String alias : type.aliases) {
+                if (alias.equals(extension)) {
+                    return Optional.of(type);
+                }
+            }
+        }
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,58 @@
+package com.laklu.pos.enums;
+
+/**
+ * Kích thước ảnh trả về khi xem attachment. Ảnh thu nhỏ được tạo sẵn (JPEG) và lưu cạnh ảnh gốc
+ */
+public enum ImageSize {
+    THUMBNAIL("thumb", 240),   // Ảnh trong danh sách món, avatar
+    MEDIUM("medium", 720),     // Ảnh chi tiết món trên tablet
+    ORIGINAL("original", 0);   // Ảnh gốc người dùng tải lên
+
+    private final String param;
+    private final int width;
+
+    ImageSize(String param, int width) {
+        this.param = param;
+        this.width = width;
+    }
+
+    public String getParam() {
+        return param;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Tên file ảnh thu nhỏ của một ảnh gốc, ví dụ abc_pho.png -> abc_pho.png.thumb.jpg
+     */
+    public String fileNameOf(String randomName) {
+        return this == ORIGINAL ? randomName : randomName + "." + param + ".jpg";
+    }
+
+    /**
+     * Tên ảnh gốc của một file trong thư mục upload, file không phải ảnh thu nhỏ thì giữ nguyên
+     */
+    public static String originalNameOf(String fileName) {
+        for (ImageSize size : values()) {
+            String suffix = "." + size.param + ".jpg";
+            if (size != ORIGINAL && fileName.endsWith(suffix) && fileName.length() > suffix.length()) {
+                return fileName.substring(0, fileName.length() - suffix.length());
+            }
+        }
+        return fileName;
+    }
+
+    /**
+     * Đọc từ tham số size trên URL, giá trị không hợp lệ hoặc null thì trả về ảnh gốc
+     */
+    public static ImageSize fromParam(String param) {
+        for (ImageSize size : values()) {
+            if (size.param.equalsIgnoreCase(param)) {
+                return size;
+            }
+        }
+        return ORIGINAL;
+    }
+}
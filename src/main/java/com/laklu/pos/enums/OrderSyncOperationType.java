@@ -0,0 +1,8 @@
+package com.laklu.pos.enums;
+
+public enum OrderSyncOperationType {
+    CREATE_ORDER,
+    ADD_ITEM,
+    UPDATE_QUANTITY,
+    UPDATE_STATUS
+}
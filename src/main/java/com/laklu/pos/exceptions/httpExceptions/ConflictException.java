@@ -0,0 +1,10 @@
+package com.laklu.pos.exceptions.httpExceptions;
+
+import com.laklu.pos.exceptions.ExceptionCode;
+import com.laklu.pos.exceptions.RestHttpException;
+
+public class ConflictException extends RestHttpException {
+    public ConflictException() {
+        super(ExceptionCode.CONFLICT);
+    }
+}
@@ -16,6 +16,7 @@ public interface ReservationMapper {
     @Mapping(target = "customerPhone", source = "customerPhone")
     @Mapping(target = "checkIn", source = "checkIn")
     @Mapping(target = "numberOfPeople", source = "numberOfPeople")
+    @Mapping(target = "expectedDurationMinutes", source = "expectedDurationMinutes")
     @BeanMapping(nullValuePropertyMappingStrategy = NullValuePropertyMappingStrategy.IGNORE)
     void updateReservation(UpdateReservationDTO request, @MappingTarget Reservation reservation);
 
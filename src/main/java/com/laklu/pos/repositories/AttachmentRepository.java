@@ -1,12 +1,39 @@
 package com.laklu.pos.repositories;
 
 import com.laklu.pos.entities.Attachment;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface AttachmentRepository extends JpaRepository<Attachment, Long> {
     Optional<Attachment> findByRandomName(String randomName);
+
+    boolean existsByStorageName(String storageName); // Còn attachment nào dùng file này không
+
+    /**
+     * Trang tiếp theo theo con trỏ ID (keyset), không dùng OFFSET nên mỗi trang có chi phí như nhau
+     */
+    @Query("SELECT a FROM Attachment a WHERE a.id > :afterId ORDER BY a.id")
+    List<Attachment> findPageAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * Trong các ID cho trước, lấy ID của attachment đang được món ăn hoặc hồ sơ nhân viên sử dụng
+     */
+    @Query(value = "SELECT attachment_id FROM dish_attachment WHERE attachment_id IN (:ids) " +
+            "UNION SELECT attachment_id FROM profile_attachment WHERE attachment_id IN (:ids)", nativeQuery = true)
+    List<Number> findLinkedIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Trong các tên file cho trước, lấy các tên còn attachment tham chiếu (file lưu theo nội dung hoặc randomName với dữ liệu cũ)
+     */
+    @Query("SELECT a.storageName FROM Attachment a WHERE a.storageName IN :names " +
+            "UNION SELECT a.randomName FROM Attachment a WHERE a.storageName IS NULL AND a.randomName IN :names")
+    List<String> findReferencedFileNames(@Param("names") Collection<String> names);
 }
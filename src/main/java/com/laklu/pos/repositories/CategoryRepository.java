@@ -2,8 +2,11 @@ package com.laklu.pos.repositories;
 
 import com.laklu.pos.entities.Category;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -12,4 +15,7 @@ public interface CategoryRepository extends JpaRepository<Category, Long> {
     Optional<Category> findByName(String name);
 
     List<Category> findAllByIsDeletedFalse();
+
+    @Query("SELECT c.id FROM Category c WHERE c.id IN :ids AND (c.isDeleted IS NULL OR c.isDeleted = false)")
+    List<Long> findActiveIds(@Param("ids") Collection<Long> ids);
 }
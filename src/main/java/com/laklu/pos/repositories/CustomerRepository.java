@@ -0,0 +1,52 @@
+package com.laklu.pos.repositories;
+
+import com.laklu.pos.entities.Customer;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface CustomerRepository extends JpaRepository<Customer, Integer> {
+    Optional<Customer> findByPhone(String phone);
+
+    /**
+     * Cộng dồn một lượt ghé và số tiền đã chi, không cần đọc lại khách hàng
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Customer c SET c.visitCount = c.visitCount + 1, " +
+            "c.totalSpent = c.totalSpent + :amount, " +
+            "c.lastVisitAt = CASE WHEN c.lastVisitAt IS NULL OR c.lastVisitAt < :visitedAt THEN :visitedAt ELSE c.lastVisitAt END, " +
+            "c.updatedAt = :visitedAt " +
+            "WHERE c.id = :customerId")
+    int recordVisit(@Param("customerId") Integer customerId,
+                    @Param("amount") BigDecimal amount,
+                    @Param("visitedAt") LocalDateTime visitedAt);
+
+    /**
+     * Cộng dồn nhiều lượt ghé cùng lúc, dùng khi gắn các đặt bàn cũ với khách hàng
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Customer c SET c.visitCount = c.visitCount + :visits, " +
+            "c.totalSpent = c.totalSpent + :amount, " +
+            "c.lastVisitAt = CASE WHEN c.lastVisitAt IS NULL OR c.lastVisitAt < :lastVisitAt THEN :lastVisitAt ELSE c.lastVisitAt END " +
+            "WHERE c.id = :customerId")
+    int addVisits(@Param("customerId") Integer customerId,
+                  @Param("visits") int visits,
+                  @Param("amount") BigDecimal amount,
+                  @Param("lastVisitAt") LocalDateTime lastVisitAt);
+
+    /**
+     * Hoàn tác một lượt ghé khi thanh toán của lượt đó bị hủy
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Customer c SET c.visitCount = CASE WHEN c.visitCount > 0 THEN c.visitCount - 1 ELSE 0 END, " +
+            "c.totalSpent = c.totalSpent - :amount " +
+            "WHERE c.id = :customerId")
+    int reverseVisit(@Param("customerId") Integer customerId, @Param("amount") BigDecimal amount);
+}
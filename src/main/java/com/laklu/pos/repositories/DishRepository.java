@@ -4,8 +4,11 @@ import com.laklu.pos.entities.Dish;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,4 +22,10 @@ public interface DishRepository extends JpaRepository<Dish, Integer> {
     List<Dish> findByNameContainingIgnoreCase(String name); // Tìm món ăn theo tên (tìm kiếm mờ)
     
     Page<Dish> findByNameContainingIgnoreCase(String name, Pageable pageable); // Tìm món ăn theo tên có phân trang
+
+    @Query("SELECT d.id, d.name FROM Dish d")
+    List<Object[]> findIdAndNames(); // Lấy [id, name] của toàn bộ món ăn để dựng chỉ mục tìm kiếm
+
+    @Query("SELECT d.id FROM Dish d WHERE d.id IN :ids")
+    List<Integer> findExistingIds(@Param("ids") Collection<Integer> ids); // Lọc ra các ID món ăn có tồn tại
 }
@@ -0,0 +1,31 @@
+package com.laklu.pos.repositories;
+
+import com.laklu.pos.entities.IdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, Integer> {
+    Optional<IdempotencyKey> findByScopeAndIdempotencyKeyAndExpiresAtAfter(String scope, String idempotencyKey, LocalDateTime now);
+
+    Optional<IdempotencyKey> findByScopeAndIdempotencyKey(String scope, String idempotencyKey);
+
+    /**
+     * Ghi kết quả vào khóa đã giữ chỗ, chạy trong giao dịch của người gọi nếu có
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE IdempotencyKey k SET k.responseBody = :body, k.expiresAt = :expiresAt WHERE k.id = :id")
+    int complete(@Param("id") Integer id, @Param("body") String body, @Param("expiresAt") LocalDateTime expiresAt);
+
+    @Modifying
+    @Query("DELETE FROM IdempotencyKey k WHERE k.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
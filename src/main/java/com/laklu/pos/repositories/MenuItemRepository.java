@@ -4,19 +4,31 @@ import com.laklu.pos.entities.MenuItem;
 import com.laklu.pos.entities.Category;
 import com.laklu.pos.entities.Dish;
 import com.laklu.pos.entities.Menu;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import com.laklu.pos.dataObjects.MenuItemSnapshot;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
-import java.util.Optional;
 
 @Repository
-public interface MenuItemRepository extends JpaRepository<MenuItem, Integer> {
+public interface MenuItemRepository extends JpaRepository<MenuItem, Integer>, JpaSpecificationExecutor<MenuItem> {
     boolean existsByCategory(Category category);
+
+    /**
+     * Lấy toàn bộ món của một thực đơn kèm món ăn, ảnh và danh mục trong một câu truy vấn, dùng để dựng snapshot thực đơn
+     * @param menuId ID thực đơn
+     * @return Danh sách MenuItem đã nạp sẵn dish, dish.attachments và category
+     */
+    @Query("SELECT DISTINCT mi FROM MenuItem mi " +
+            "JOIN FETCH mi.dish d " +
+            "LEFT JOIN FETCH d.attachments " +
+            "JOIN FETCH mi.category " +
+            "WHERE mi.menu.id = :menuId")
+    List<MenuItem> findCatalogByMenuId(@Param("menuId") Integer menuId);
     
     /**
      * Kiểm tra xem một MenuItem có tồn tại với Menu và Dish cụ thể không
@@ -25,156 +37,28 @@ public interface MenuItemRepository extends JpaRepository<MenuItem, Integer> {
      * @return true nếu MenuItem với Menu và Dish này đã tồn tại, ngược lại là false
      */
     boolean existsByMenuAndDish(Menu menu, Dish dish);
-    
-    /**
-     * Tìm tất cả các MenuItem theo Menu
-     * @param menu Menu cần tìm
-     * @return Danh sách các MenuItem thuộc menu
-     */
-    List<MenuItem> findByMenu(Menu menu);
-    
-    /**
-     * Tìm tất cả các MenuItem theo Menu và trạng thái active
-     * @param menu Menu cần tìm
-     * @param isActive Trạng thái active cần tìm
-     * @return Danh sách các MenuItem thuộc menu với trạng thái active cụ thể
-     */
-    List<MenuItem> findByMenuAndIsActive(Menu menu, Boolean isActive);
-    
-    /**
-     * Tìm tất cả các MenuItem theo Menu và Category
-     * @param menu Menu cần tìm
-     * @param category Category cần tìm
-     * @return Danh sách các MenuItem thuộc menu và category
-     */
-    List<MenuItem> findByMenuAndCategory(Menu menu, Category category);
-    
-    /**
-     * Tìm tất cả các MenuItem theo Menu, Category và trạng thái active
-     * @param menu Menu cần tìm
-     * @param category Category cần tìm
-     * @param isActive Trạng thái active cần tìm
-     * @return Danh sách các MenuItem thuộc menu và category với trạng thái active cụ thể
-     */
-    List<MenuItem> findByMenuAndCategoryAndIsActive(Menu menu, Category category, Boolean isActive);
-    
-    /**
-     * Tìm tất cả các MenuItem theo Menu với phân trang
-     * @param menu Menu cần tìm
-     * @param pageable Thông tin phân trang
-     * @return Page chứa danh sách MenuItem thuộc menu với phân trang
-     */
-    Page<MenuItem> findByMenu(Menu menu, Pageable pageable);
-    
-    /**
-     * Tìm tất cả các MenuItem theo Menu và trạng thái active với phân trang
-     * @param menu Menu cần tìm
-     * @param isActive Trạng thái active cần tìm
-     * @param pageable Thông tin phân trang
-     * @return Page chứa danh sách MenuItem thuộc menu với trạng thái active với phân trang
-     */
-    Page<MenuItem> findByMenuAndIsActive(Menu menu, Boolean isActive, Pageable pageable);
-    
-    /**
-     * Tìm tất cả các MenuItem theo Menu và Category với phân trang
-     * @param menu Menu cần tìm
-     * @param category Category cần tìm
-     * @param pageable Thông tin phân trang
-     * @return Page chứa danh sách MenuItem thuộc menu và category với phân trang
-     */
-    Page<MenuItem> findByMenuAndCategory(Menu menu, Category category, Pageable pageable);
-    
-    /**
-     * Tìm tất cả các MenuItem theo Menu, Category và trạng thái active với phân trang
-     * @param menu Menu cần tìm
-     * @param category Category cần tìm
-     * @param isActive Trạng thái active cần tìm
-     * @param pageable Thông tin phân trang
-     * @return Page chứa danh sách MenuItem thuộc menu và category với trạng thái active với phân trang
-     */
-    Page<MenuItem> findByMenuAndCategoryAndIsActive(Menu menu, Category category, Boolean isActive, Pageable pageable);
-    
-    /**
-     * Tìm kiếm các MenuItem theo Menu và tên món ăn (Dish)
-     * @param menu Menu cần tìm
-     * @param dishName Tên món ăn cần tìm
-     * @return Danh sách các MenuItem thuộc menu có tên món ăn chứa dishName
-     */
-    @Query("SELECT mi FROM MenuItem mi JOIN mi.dish d WHERE mi.menu = :menu AND LOWER(d.name) LIKE LOWER(CONCAT('%', :dishName, '%'))")
-    List<MenuItem> findByMenuAndDishNameContainingIgnoreCase(@Param("menu") Menu menu, @Param("dishName") String dishName);
-    
-    /**
-     * Tìm kiếm các MenuItem theo Menu và tên món ăn (Dish) có phân trang
-     * @param menu Menu cần tìm
-     * @param dishName Tên món ăn cần tìm
-     * @param pageable Thông tin phân trang
-     * @return Page chứa danh sách MenuItem thuộc menu có tên món ăn chứa dishName với phân trang
-     */
-    @Query("SELECT mi FROM MenuItem mi JOIN mi.dish d WHERE mi.menu = :menu AND LOWER(d.name) LIKE LOWER(CONCAT('%', :dishName, '%'))")
-    Page<MenuItem> findByMenuAndDishNameContainingIgnoreCase(@Param("menu") Menu menu, @Param("dishName") String dishName, Pageable pageable);
-    
-    /**
-     * Tìm kiếm các MenuItem theo Menu, Category và tên món ăn (Dish)
-     * @param menu Menu cần tìm
-     * @param category Category cần tìm
-     * @param dishName Tên món ăn cần tìm
-     * @return Danh sách các MenuItem thuộc menu và category có tên món ăn chứa dishName
-     */
-    @Query("SELECT mi FROM MenuItem mi JOIN mi.dish d WHERE mi.menu = :menu AND mi.category = :category AND LOWER(d.name) LIKE LOWER(CONCAT('%', :dishName, '%'))")
-    List<MenuItem> findByMenuAndCategoryAndDishNameContainingIgnoreCase(@Param("menu") Menu menu, @Param("category") Category category, @Param("dishName") String dishName);
-    
-    /**
-     * Tìm kiếm các MenuItem theo Menu, Category và tên món ăn (Dish) có phân trang
-     * @param menu Menu cần tìm
-     * @param category Category cần tìm
-     * @param dishName Tên món ăn cần tìm
-     * @param pageable Thông tin phân trang
-     * @return Page chứa danh sách MenuItem thuộc menu và category có tên món ăn chứa dishName với phân trang
-     */
-    @Query("SELECT mi FROM MenuItem mi JOIN mi.dish d WHERE mi.menu = :menu AND mi.category = :category AND LOWER(d.name) LIKE LOWER(CONCAT('%', :dishName, '%'))")
-    Page<MenuItem> findByMenuAndCategoryAndDishNameContainingIgnoreCase(@Param("menu") Menu menu, @Param("category") Category category, @Param("dishName") String dishName, Pageable pageable);
-    
-    /**
-     * Tìm kiếm các MenuItem theo Menu, trạng thái active và tên món ăn (Dish)
-     * @param menu Menu cần tìm
-     * @param isActive Trạng thái active cần tìm
-     * @param dishName Tên món ăn cần tìm
-     * @return Danh sách các MenuItem thuộc menu có trạng thái active và tên món ăn chứa dishName
-     */
-    @Query("SELECT mi FROM MenuItem mi JOIN mi.dish d WHERE mi.menu = :menu AND mi.isActive = :isActive AND LOWER(d.name) LIKE LOWER(CONCAT('%', :dishName, '%'))")
-    List<MenuItem> findByMenuAndIsActiveAndDishNameContainingIgnoreCase(@Param("menu") Menu menu, @Param("isActive") Boolean isActive, @Param("dishName") String dishName);
-    
+
     /**
-     * Tìm kiếm các MenuItem theo Menu, trạng thái active và tên món ăn (Dish) có phân trang
-     * @param menu Menu cần tìm
-     * @param isActive Trạng thái active cần tìm
-     * @param dishName Tên món ăn cần tìm
-     * @param pageable Thông tin phân trang
-     * @return Page chứa danh sách MenuItem thuộc menu có trạng thái active và tên món ăn chứa dishName với phân trang
+     * Lấy [dishId, menuItemId, isActive] của toàn bộ món trong thực đơn, dùng để kiểm tra trùng khi nhập hàng loạt
+     * @param menuId ID thực đơn
      */
-    @Query("SELECT mi FROM MenuItem mi JOIN mi.dish d WHERE mi.menu = :menu AND mi.isActive = :isActive AND LOWER(d.name) LIKE LOWER(CONCAT('%', :dishName, '%'))")
-    Page<MenuItem> findByMenuAndIsActiveAndDishNameContainingIgnoreCase(@Param("menu") Menu menu, @Param("isActive") Boolean isActive, @Param("dishName") String dishName, Pageable pageable);
-    
+    @Query("SELECT mi.dish.id, mi.id, mi.isActive FROM MenuItem mi WHERE mi.menu.id = :menuId")
+    List<Object[]> findDishAndIdsByMenuId(@Param("menuId") Integer menuId);
+
     /**
-     * Tìm kiếm các MenuItem theo Menu, Category, trạng thái active và tên món ăn (Dish)
-     * @param menu Menu cần tìm
-     * @param category Category cần tìm
-     * @param isActive Trạng thái active cần tìm
-     * @param dishName Tên món ăn cần tìm
-     * @return Danh sách các MenuItem thuộc menu, category có trạng thái active và tên món ăn chứa dishName
+     * Bản chụp của các món thuộc các thực đơn có trạng thái cho trước, dùng để nạp sẵn bộ nhớ đệm món khi gọi món
      */
-    @Query("SELECT mi FROM MenuItem mi JOIN mi.dish d WHERE mi.menu = :menu AND mi.category = :category AND mi.isActive = :isActive AND LOWER(d.name) LIKE LOWER(CONCAT('%', :dishName, '%'))")
-    List<MenuItem> findByMenuAndCategoryAndIsActiveAndDishNameContainingIgnoreCase(@Param("menu") Menu menu, @Param("category") Category category, @Param("isActive") Boolean isActive, @Param("dishName") String dishName);
-    
+    @Query(SNAPSHOT_SELECT + "WHERE mi.menu.status = :status")
+    List<MenuItemSnapshot> findSnapshotsByMenuStatus(@Param("status") Menu.MenuStatus status);
+
     /**
-     * Tìm kiếm các MenuItem theo Menu, Category, trạng thái active và tên món ăn (Dish) có phân trang
-     * @param menu Menu cần tìm
-     * @param category Category cần tìm
-     * @param isActive Trạng thái active cần tìm
-     * @param dishName Tên món ăn cần tìm
-     * @param pageable Thông tin phân trang
-     * @return Page chứa danh sách MenuItem thuộc menu, category có trạng thái active và tên món ăn chứa dishName với phân trang
+     * Bản chụp của các món theo ID, dùng khi món không nằm trong bộ nhớ đệm
      */
-    @Query("SELECT mi FROM MenuItem mi JOIN mi.dish d WHERE mi.menu = :menu AND mi.category = :category AND mi.isActive = :isActive AND LOWER(d.name) LIKE LOWER(CONCAT('%', :dishName, '%'))")
-    Page<MenuItem> findByMenuAndCategoryAndIsActiveAndDishNameContainingIgnoreCase(@Param("menu") Menu menu, @Param("category") Category category, @Param("isActive") Boolean isActive, @Param("dishName") String dishName, Pageable pageable);
+    @Query(SNAPSHOT_SELECT + "WHERE mi.id IN :ids")
+    List<MenuItemSnapshot> findSnapshotsByIdIn(@Param("ids") Collection<Integer> ids);
+
+    String SNAPSHOT_SELECT = "SELECT new com.laklu.pos.dataObjects.MenuItemSnapshot(" +
+            "mi.id, mi.price, mi.isActive, mi.menu.id, c.id, d.id, d.name, d.description, d.price, " +
+            "d.requiresPreparation, d.createdAt, d.updatedAt) " +
+            "FROM MenuItem mi JOIN mi.dish d JOIN mi.category c ";
 }
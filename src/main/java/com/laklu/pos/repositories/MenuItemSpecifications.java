@@ -0,0 +1,77 @@
+package com.laklu.pos.repositories;
+
+import com.laklu.pos.entities.Category;
+import com.laklu.pos.entities.Dish;
+import com.laklu.pos.entities.Menu;
+import com.laklu.pos.entities.MenuItem;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.jpa.domain.Specification;
+
+/**
+ * Các điều kiện lọc MenuItem, ghép lại với nhau thay cho các hàm findByMenuAnd... riêng lẻ
+ */
+public final class MenuItemSpecifications {
+
+    private MenuItemSpecifications() {
+    }
+
+    public static Specification<MenuItem> inMenu(Menu menu) {
+        return (root, query, cb) -> cb.equal(root.get("menu"), menu);
+    }
+
+    public static Specification<MenuItem> inCategory(Category category) {
+        return (root, query, cb) -> cb.equal(root.get("category"), category);
+    }
+
+    public static Specification<MenuItem> isActive(Boolean isActive) {
+        return (root, query, cb) -> cb.equal(root.get("isActive"), isActive);
+    }
+
+    public static Specification<MenuItem> dishNameContains(String dishName) {
+        return (root, query, cb) -> cb.like(
+                cb.lower(dish(root, query).get("name")),
+                "%" + dishName.toLowerCase() + "%");
+    }
+
+    /**
+     * Nạp sẵn dish và category trong cùng câu truy vấn (trừ câu đếm của phân trang).
+     * Ảnh của món được nạp theo lô nhờ @BatchSize trên Dish.attachments
+     */
+    public static Specification<MenuItem> fetchDetails() {
+        return (root, query, cb) -> {
+            if (!isCountQuery(query)) {
+                dish(root, query);
+                if (root.getFetches().stream().noneMatch(fetch -> "category".equals(fetch.getAttribute().getName()))) {
+                    root.fetch("category", JoinType.INNER);
+                }
+            }
+            return null;
+        };
+    }
+
+    /**
+     * Dùng lại join tới dish nếu đã có (fetch hoặc join), tránh join hai lần khi vừa lọc theo tên vừa nạp sẵn.
+     * Câu đếm của phân trang không được fetch nên chỉ join
+     */
+    @SuppressWarnings("unchecked")
+    private static Join<MenuItem, Dish> dish(Root<MenuItem> root, CriteriaQuery<?> query) {
+        return root.getFetches().stream()
+                .filter(fetch -> "dish".equals(fetch.getAttribute().getName()))
+                .map(fetch -> (Join<MenuItem, Dish>) fetch)
+                .findFirst()
+                .orElseGet(() -> root.getJoins().stream()
+                        .filter(join -> "dish".equals(join.getAttribute().getName()))
+                        .map(join -> (Join<MenuItem, Dish>) join)
+                        .findFirst()
+                        .orElseGet(() -> isCountQuery(query)
+                                ? root.join("dish", JoinType.INNER)
+                                : (Join<MenuItem, Dish>) root.<MenuItem, Dish>fetch("dish", JoinType.INNER)));
+    }
+
+    private static boolean isCountQuery(CriteriaQuery<?> query) {
+        return query.getResultType() == Long.class || query.getResultType() == long.class;
+    }
+}
@@ -2,8 +2,12 @@ package com.laklu.pos.repositories;
 
 import com.laklu.pos.entities.Menu;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,4 +18,25 @@ public interface MenuRepository extends JpaRepository<Menu, Integer> {
     
     // Tìm thực đơn theo trạng thái
     List<Menu> findByStatus(Menu.MenuStatus status);
+
+    /**
+     * Tắt mọi thực đơn đang bật bằng một câu UPDATE
+     * @return Số thực đơn bị tắt
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Menu m SET m.status = :disabled, m.updatedAt = :now WHERE m.status <> :disabled")
+    int disableAll(@Param("disabled") Menu.MenuStatus disabled, @Param("now") LocalDateTime now);
+
+    /**
+     * Bật một thực đơn và tắt mọi thực đơn khác trong cùng một câu UPDATE,
+     * không có thời điểm nào hai thực đơn cùng bật hoặc không có thực đơn nào bật
+     * @return Số thực đơn đổi trạng thái
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Menu m SET m.status = CASE WHEN m.id = :menuId THEN :enabled ELSE :disabled END, m.updatedAt = :now " +
+            "WHERE (m.id = :menuId AND m.status <> :enabled) OR (m.id <> :menuId AND m.status <> :disabled)")
+    int activateOnly(@Param("menuId") Integer menuId,
+                     @Param("enabled") Menu.MenuStatus enabled,
+                     @Param("disabled") Menu.MenuStatus disabled,
+                     @Param("now") LocalDateTime now);
 }
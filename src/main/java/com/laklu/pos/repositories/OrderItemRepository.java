@@ -7,11 +7,13 @@ import com.laklu.pos.entities.Order;
 import com.laklu.pos.entities.Menu;
 import com.laklu.pos.enums.OrderItemStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -192,4 +194,51 @@ public interface OrderItemRepository extends JpaRepository<OrderItem, Integer> {
      * @return Số lượng OrderItem
      */
     long countByOrder(Order order);
-}
\ No newline at end of file
+
+    List<OrderItem> findByOrderId(Integer orderId);
+
+    /**
+     * Chuyển trạng thái hàng loạt bằng một câu lệnh UPDATE, chỉ áp dụng cho các món đang ở trạng thái nguồn hợp lệ
+     *
+     * @param orderItemIds Danh sách ID món
+     * @param sourceStatuses Các trạng thái được phép chuyển sang newStatus
+     * @param newStatus Trạng thái mới
+     * @param updatedAt Thời điểm cập nhật
+     * @return Số món được cập nhật
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE OrderItem oi SET oi.status = :newStatus, oi.updatedAt = :updatedAt " +
+            "WHERE oi.id IN :orderItemIds AND oi.status IN :sourceStatuses")
+    int transitionStatus(@Param("orderItemIds") List<Integer> orderItemIds,
+                         @Param("sourceStatuses") Collection<OrderItemStatus> sourceStatuses,
+                         @Param("newStatus") OrderItemStatus newStatus,
+                         @Param("updatedAt") LocalDateTime updatedAt);
+
+    /**
+     * Khóa (SELECT ... FOR UPDATE) các món đang ở một trong các trạng thái cho trước.
+     * Giao dịch khác đang chuyển trạng thái cùng món phải chờ commit, sau đó đọc được trạng thái mới
+     * nên món đã bị chuyển sẽ không còn trong kết quả
+     *
+     * @param orderItemIds Danh sách ID món
+     * @param statuses Tên các trạng thái nguồn
+     * @return ID các món đã khóa
+     */
+    @Query(value = "SELECT id FROM order_items WHERE id IN (:orderItemIds) AND status IN (:statuses) FOR UPDATE",
+            nativeQuery = true)
+    List<Integer> lockIdsByStatusIn(@Param("orderItemIds") List<Integer> orderItemIds,
+                                    @Param("statuses") Collection<String> statuses);
+
+    /**
+     * Cập nhật trạng thái cho toàn bộ OrderItem thuộc các đơn hàng bằng một câu lệnh UPDATE duy nhất
+     *
+     * @param orderIds Danh sách ID đơn hàng
+     * @param status Trạng thái mới
+     * @param updatedAt Thời điểm cập nhật
+     * @return Số OrderItem bị ảnh hưởng
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE OrderItem oi SET oi.status = :status, oi.updatedAt = :updatedAt WHERE oi.order.id IN :orderIds")
+    int updateStatusByOrderIds(@Param("orderIds") List<Integer> orderIds,
+                               @Param("status") OrderItemStatus status,
+                               @Param("updatedAt") LocalDateTime updatedAt);
+}
@@ -2,12 +2,17 @@ package com.laklu.pos.repositories;
 
 import com.laklu.pos.entities.Order;
 import com.laklu.pos.entities.Reservation;
+import com.laklu.pos.enums.OrderStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -16,4 +21,56 @@ public interface OrderRepository extends JpaRepository<Order, Integer>, JpaSpeci
     List<Order> findByReservationIdAndStatusNotCancelledOrCompleted(@Param("reservationId") Integer reservationId);
 
     List<Order> findByReservation(Reservation reservation);
+
+    /**
+     * Lấy các đơn hàng theo ngày kinh doanh và trạng thái, sắp theo thời gian tạo tăng dần
+     */
+    List<Order> findByBusinessDayAndStatusOrderByCreatedAtAsc(LocalDate businessDay, OrderStatus status);
+
+    /**
+     * Lấy các đơn hàng cũ chưa có ngày kinh doanh
+     *
+     * @return Danh sách [id, createdAt]
+     */
+    @Query("SELECT o.id, o.createdAt FROM Order o WHERE o.businessDay IS NULL")
+    List<Object[]> findCreatedAtWithoutBusinessDay();
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Order o SET o.businessDay = :businessDay WHERE o.id IN :ids")
+    int updateBusinessDay(@Param("ids") Collection<Integer> ids, @Param("businessDay") LocalDate businessDay);
+
+    /**
+     * Hủy nhiều đơn hàng bằng một câu lệnh UPDATE duy nhất, đồng thời đưa subtotal về 0
+     *
+     * @param orderIds Danh sách ID đơn hàng
+     * @param updatedAt Thời điểm cập nhật
+     * @return Số đơn hàng bị ảnh hưởng
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Order o SET o.status = com.laklu.pos.enums.OrderStatus.CANCELLED, o.subtotal = 0, o.updatedAt = :updatedAt WHERE o.id IN :orderIds")
+    int cancelByIds(@Param("orderIds") List<Integer> orderIds, @Param("updatedAt") LocalDateTime updatedAt);
+
+    /**
+     * Lấy các đơn hàng có thay đổi (ở đơn hoặc ở món) sau một mốc thời gian, dùng cho đồng bộ offline
+     *
+     * @param since Mốc thời gian client đã đồng bộ lần trước
+     * @return Danh sách đơn hàng có thay đổi
+     */
+    @Query("SELECT DISTINCT o FROM Order o LEFT JOIN o.orderItems oi WHERE o.updatedAt > :since OR oi.updatedAt > :since")
+    List<Order> findChangedSince(@Param("since") LocalDateTime since);
+
+    /**
+     * Trừ thành tiền của các món khỏi subtotal của đơn chứa chúng bằng một câu lệnh UPDATE,
+     * gọi trước khi hủy hàng loạt các món đã khóa
+     *
+     * @param orderItemIds ID các món sắp bị hủy
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE orders o JOIN (" +
+            "SELECT oi.order_id, SUM(COALESCE(oi.unit_price, mi.price) * oi.quantity) AS amount FROM order_items oi " +
+            "JOIN menu_item mi ON mi.id = oi.menu_item_id " +
+            "WHERE oi.id IN (:orderItemIds) GROUP BY oi.order_id" +
+            ") t ON t.order_id = o.id " +
+            "SET o.subtotal = o.subtotal - t.amount WHERE o.subtotal IS NOT NULL", nativeQuery = true)
+    int subtractLineTotalsOf(@Param("orderItemIds") List<Integer> orderItemIds);
 }
@@ -13,6 +13,7 @@ import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -44,4 +45,17 @@ public interface PaymentRepository extends JpaRepository<Payment, Integer> {
 
     List<Payment> getPaymentByOrder(Order orderId);
     List<Payment> findByPaymentStatusAndCreatedAtBefore(PaymentStatus status, LocalDateTime createdAt);
+
+    @Query("SELECT COALESCE(SUM(p.amountPaid), 0) FROM Payment p WHERE p.paymentStatus = 'PAID' " +
+            "AND p.order.reservation.id = :reservationId")
+    BigDecimal sumPaidAmountByReservationId(@Param("reservationId") Integer reservationId);
+
+    /**
+     * Tổng tiền đã thanh toán theo từng đặt bàn
+     *
+     * @return Danh sách [reservationId, tổng tiền]
+     */
+    @Query("SELECT p.order.reservation.id, SUM(p.amountPaid) FROM Payment p WHERE p.paymentStatus = 'PAID' " +
+            "AND p.order.reservation.id IN :reservationIds GROUP BY p.order.reservation.id")
+    List<Object[]> sumPaidAmountByReservationIds(@Param("reservationIds") Collection<Integer> reservationIds);
 }
@@ -1,15 +1,20 @@
 package com.laklu.pos.repositories;
 
 import com.laklu.pos.entities.Reservation;
+import jakarta.transaction.Transactional;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -27,6 +32,38 @@ public interface ReservationRepository extends JpaRepository<Reservation, Intege
            "LOWER(r.customerName) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
            "r.customerPhone LIKE CONCAT('%', :keyword, '%')")
     Page<Reservation> searchByNameOrPhone(@Param("keyword") String keyword, Pageable pageable);
+
+    Page<Reservation> findByCustomerId(Integer customerId, Pageable pageable);
+
+    /**
+     * Nạp các đặt bàn kèm danh sách bàn trong một câu truy vấn, dùng cho các trang danh sách
+     */
+    @EntityGraph(attributePaths = {"reservationTables", "reservationTables.table"})
+    @Query("SELECT r FROM Reservation r WHERE r.id IN :ids")
+    List<Reservation> findWithTablesByIdIn(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * Lấy các đặt bàn chưa gắn với khách hàng, bỏ qua khách vãng lai (không có số hoặc số toàn chữ số 0)
+     * vì các đặt bàn này không bao giờ được gắn và sẽ bị đọc lại ở mỗi lần khởi động
+     *
+     * @return Danh sách [id, customerName, customerPhone, status, checkIn, checkOut]
+     */
+    @Query("SELECT r.id, r.customerName, r.customerPhone, r.status, r.checkIn, r.checkOut FROM Reservation r " +
+           "WHERE r.customerId IS NULL AND r.customerPhone IS NOT NULL " +
+           "AND REPLACE(TRIM(r.customerPhone), '0', '') <> '' ORDER BY r.checkIn")
+    List<Object[]> findUnlinkedCustomerFields();
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Reservation r SET r.customerId = :customerId WHERE r.id IN :ids")
+    int linkCustomer(@Param("ids") Collection<Integer> ids, @Param("customerId") Integer customerId);
+
+    /**
+     * Lấy các trường dùng để dựng chỉ mục tìm kiếm
+     *
+     * @return Danh sách [id, customerName, customerPhone, checkIn]
+     */
+    @Query("SELECT r.id, r.customerName, r.customerPhone, r.checkIn FROM Reservation r")
+    List<Object[]> findSearchableFields();
     
     @Query("SELECT r FROM Reservation r ORDER BY r.checkIn DESC")
     Page<Reservation> findAllReservations(Pageable pageable);
@@ -41,32 +78,63 @@ public interface ReservationRepository extends JpaRepository<Reservation, Intege
     Page<Reservation> findByCheckInBetweenAndStatus(LocalDateTime start, LocalDateTime end, Reservation.Status status, Pageable pageable);
 
     /**
-     * Tìm đặt bàn có thời gian check in nằm trong một trong hai khoảng thời gian
-     * 
-     * @param start1 Thời gian bắt đầu khoảng 1
-     * @param end1 Thời gian kết thúc khoảng 1
-     * @param start2 Thời gian bắt đầu khoảng 2
-     * @param end2 Thời gian kết thúc khoảng 2
+     * Tìm đặt bàn trong ca tối của một ngày kinh doanh
+     *
+     * @param businessDay Ngày kinh doanh
+     * @param from Thời điểm bắt đầu ca tối
      * @param pageable Phân trang
      * @return Danh sách đặt bàn
      */
-    Page<Reservation> findByCheckInBetweenOrCheckInBetween(
-            LocalDateTime start1, LocalDateTime end1, 
-            LocalDateTime start2, LocalDateTime end2, 
-            Pageable pageable);
+    Page<Reservation> findByBusinessDayAndCheckInGreaterThanEqual(
+            LocalDate businessDay, LocalDateTime from, Pageable pageable);
+
+    Page<Reservation> findByBusinessDayAndStatusInAndCheckInGreaterThanEqual(
+            LocalDate businessDay, List<Reservation.Status> statuses, LocalDateTime from, Pageable pageable);
 
+    /**
+     * Lấy các đặt bàn cũ chưa có ngày kinh doanh
+     *
+     * @return Danh sách [id, checkIn]
+     */
+    @Query("SELECT r.id, r.checkIn FROM Reservation r WHERE r.businessDay IS NULL AND r.checkIn IS NOT NULL")
+    List<Object[]> findCheckInsWithoutBusinessDay();
+
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Reservation r SET r.businessDay = :businessDay WHERE r.id IN :ids")
+    int updateBusinessDay(@Param("ids") Collection<Integer> ids, @Param("businessDay") LocalDate businessDay);
+
+
+    /**
+     * Tìm đặt bàn theo trạng thái có thời gian check-in từ mốc from
+     * Sử dụng để đặt hẹn giờ hủy đặt bàn trễ hẹn khi khởi động
+     */
+    List<Reservation> findByStatusAndCheckInGreaterThanEqual(Reservation.Status status, LocalDateTime from);
+
+    /**
+     * Lấy ID các đặt bàn PENDING có thời gian check in trong khoảng [from, to)
+     */
+    @Query("SELECT r.id FROM Reservation r " +
+           "WHERE r.status = com.laklu.pos.entities.Reservation$Status.PENDING " +
+           "AND r.checkIn >= :from AND r.checkIn < :to")
+    List<Integer> findPendingIdsByCheckInBetween(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    /**
+     * Khóa (SELECT ... FOR UPDATE) các đặt bàn vẫn còn PENDING và có thời gian check in không muộn hơn lateBefore.
+     * Nhân viên đổi trạng thái hoặc đổi giờ cùng lúc phải chờ giao dịch hủy commit, còn nếu đã commit trước
+     * thì đặt bàn không còn thỏa điều kiện và không bị khóa
+     *
+     * @return ID các đặt bàn đã khóa
+     */
+    @Query(value = "SELECT id FROM reservation WHERE id IN (:ids) AND status = 'PENDING' AND check_in <= :lateBefore FOR UPDATE",
+           nativeQuery = true)
+    List<Integer> lockLatePendingIds(@Param("ids") Collection<Integer> ids, @Param("lateBefore") LocalDateTime lateBefore);
 
-    Page<Reservation> findByCheckInBetweenAndStatusInOrCheckInBetweenAndStatusIn(
-            LocalDateTime start1, LocalDateTime end1, List<Reservation.Status> statuses,
-            LocalDateTime start2, LocalDateTime end2, List<Reservation.Status> statuses2,
-            Pageable pageable);
-            
     /**
-     * Tìm đặt bàn theo trạng thái và khoảng thời gian check-in
-     * Sử dụng cho việc kiểm tra đặt bàn trễ hẹn
+     * Hủy các đặt bàn bằng một câu lệnh UPDATE, dùng cho các đặt bàn trễ hẹn đã khóa bằng lockLatePendingIds
      */
-    List<Reservation> findByStatusAndCheckInBetween(
-            Reservation.Status status, 
-            LocalDateTime startTime,
-            LocalDateTime endTime);
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Reservation r SET r.status = com.laklu.pos.entities.Reservation$Status.CANCELLED, r.updatedAt = :updatedAt " +
+           "WHERE r.id IN :ids")
+    int cancelByIds(@Param("ids") Collection<Integer> ids, @Param("updatedAt") LocalDateTime updatedAt);
 }
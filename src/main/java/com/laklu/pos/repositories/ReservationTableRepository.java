@@ -10,6 +10,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
@@ -21,12 +22,6 @@ public interface ReservationTableRepository extends JpaRepository<ReservationTab
             "AND FUNCTION('DATE', rt.reservation.reservationTime) = :date")
     long countByTableAndDate(@Param("tableId") Integer tableId, @Param("date") LocalDate date);
 
-    @Query("SELECT COUNT(rt) FROM ReservationTable rt " +
-            "WHERE rt.table.id = :tableId " +
-            "AND FUNCTION('DATE', rt.reservation.checkIn) = :date " +
-            "AND rt.reservation.status <> 'COMPLETED'")
-    long countByTableAndDateAndNotCompleted(@Param("tableId") Integer tableId, @Param("date") LocalDate date);
-
     @Query("SELECT rt FROM ReservationTable rt " +
             "WHERE FUNCTION('DATE', rt.reservation.checkIn) = :localDate " +
             "AND rt.table IN :tables " +
@@ -43,21 +38,23 @@ public interface ReservationTableRepository extends JpaRepository<ReservationTab
     int deleteByReservationIdAndTableIds(@Param("reservationId") Integer reservationId, @Param("tableIds") List<Integer> tableIds);
 
     /**
-     * Kiểm tra xem các bàn có đang được sử dụng trong đặt bàn khác nào không vào ngày cụ thể
-     * 
-     * @param tableIds Danh sách ID của các bàn cần kiểm tra
-     * @param excludeReservationId ID của đặt bàn cần loại trừ khỏi việc kiểm tra (đặt bàn hiện tại)
-     * @param date Ngày cần kiểm tra
-     * @return true nếu có ít nhất một bàn đang được sử dụng vào ngày đó, false nếu không có bàn nào đang được sử dụng
+     * Lấy các cặp (đặt bàn, bàn, thời gian check in, thời lượng dự kiến) của đặt bàn còn hiệu lực
+     * có thời gian check in trong khoảng [from, to)
+     *
+     * @return Danh sách [reservationId, tableId, checkIn, expectedDurationMinutes]
      */
-    @Query("SELECT COUNT(rt) > 0 FROM ReservationTable rt " +
-           "WHERE rt.table.id IN :tableIds " +
-           "AND rt.reservation.id != :excludeReservationId " +
-           "AND rt.reservation.status NOT IN (com.laklu.pos.entities.Reservation$Status.CANCELLED, com.laklu.pos.entities.Reservation$Status.COMPLETED) " +
-           "AND FUNCTION('DATE', rt.reservation.checkIn) = :date")
-    boolean areTablesInUseByOtherReservationOnDate(
-            @Param("tableIds") List<Integer> tableIds,
-            @Param("excludeReservationId") Integer excludeReservationId,
-            @Param("date") LocalDate date);
-}
+    @Query("SELECT rt.reservation.id, rt.table.id, rt.reservation.checkIn, rt.reservation.expectedDurationMinutes FROM ReservationTable rt " +
+           "WHERE rt.reservation.checkIn >= :from AND rt.reservation.checkIn < :to " +
+           "AND rt.reservation.status NOT IN (com.laklu.pos.entities.Reservation$Status.CANCELLED, com.laklu.pos.entities.Reservation$Status.COMPLETED)")
+    List<Object[]> findActiveTableBookings(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
 
+    /**
+     * Lấy các bàn (kèm thời gian check in, thời lượng dự kiến) của một đặt bàn còn hiệu lực
+     *
+     * @return Danh sách [tableId, checkIn, expectedDurationMinutes]
+     */
+    @Query("SELECT rt.table.id, rt.reservation.checkIn, rt.reservation.expectedDurationMinutes FROM ReservationTable rt " +
+           "WHERE rt.reservation.id = :reservationId " +
+           "AND rt.reservation.status NOT IN (com.laklu.pos.entities.Reservation$Status.CANCELLED, com.laklu.pos.entities.Reservation$Status.COMPLETED)")
+    List<Object[]> findActiveTableBookingsByReservationId(@Param("reservationId") Integer reservationId);
+}
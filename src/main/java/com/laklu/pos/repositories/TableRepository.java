@@ -2,11 +2,15 @@ package com.laklu.pos.repositories;
 
 import com.laklu.pos.entities.Reservation;
 import com.laklu.pos.entities.Table;
+import com.laklu.pos.enums.StatusTable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -24,4 +28,39 @@ public interface TableRepository extends JpaRepository<Table, Integer> {
         "WHERE rt.reservation_id = :reservationId LIMIT 1", nativeQuery = true)
     Optional<Table> findTableByReservationId(@Param("reservationId") Integer reservationId);
 
+    @Query("SELECT t.id FROM Table t WHERE t.status = :status")
+    List<Integer> findIdsByStatus(@Param("status") StatusTable status);
+
+    /**
+     * Chuyển trạng thái các bàn trong danh sách, chỉ cập nhật bàn đang ở trạng thái fromStatus
+     *
+     * @return Số bàn thực sự đổi trạng thái
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Table t SET t.status = :toStatus, t.updatedAt = :updatedAt " +
+            "WHERE t.id IN :tableIds AND t.status = :fromStatus")
+    int updateStatusByIds(@Param("tableIds") Collection<Integer> tableIds,
+                          @Param("fromStatus") StatusTable fromStatus,
+                          @Param("toStatus") StatusTable toStatus,
+                          @Param("updatedAt") LocalDateTime updatedAt);
+
+    /**
+     * Chuyển trạng thái các bàn ngoài danh sách, chỉ cập nhật bàn đang ở trạng thái fromStatus
+     *
+     * @return Số bàn thực sự đổi trạng thái
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Table t SET t.status = :toStatus, t.updatedAt = :updatedAt " +
+            "WHERE t.id NOT IN :tableIds AND t.status = :fromStatus")
+    int updateStatusExceptIds(@Param("tableIds") Collection<Integer> tableIds,
+                              @Param("fromStatus") StatusTable fromStatus,
+                              @Param("toStatus") StatusTable toStatus,
+                              @Param("updatedAt") LocalDateTime updatedAt);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Table t SET t.status = :toStatus, t.updatedAt = :updatedAt WHERE t.status = :fromStatus")
+    int updateStatusByStatus(@Param("fromStatus") StatusTable fromStatus,
+                             @Param("toStatus") StatusTable toStatus,
+                             @Param("updatedAt") LocalDateTime updatedAt);
+
 }
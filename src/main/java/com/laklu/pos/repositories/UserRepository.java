@@ -4,8 +4,12 @@ import com.laklu.pos.entities.User;
 import com.laklu.pos.entities.Role;
 import com.laklu.pos.entities.SalaryRate;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -17,4 +21,12 @@ public interface UserRepository extends JpaRepository<User, Integer> {
     boolean existsByRolesContaining(Role role);
 
     boolean existsBySalaryRate(SalaryRate salaryRate);
+
+    /**
+     * Lấy tên đăng nhập của nhiều người dùng trong một câu truy vấn
+     *
+     * @return Danh sách [id, username]
+     */
+    @Query("SELECT u.id, u.username FROM User u WHERE u.id IN :ids")
+    List<Object[]> findUsernamesByIds(@Param("ids") Collection<Integer> ids);
 }
@@ -0,0 +1,196 @@
+package com.laklu.pos.services;
+
+import com.laklu.pos.enums.AttachmentFileType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Trả file attachment trực tiếp ra response: ETag/Last-Modified cho GET có điều kiện (304),
+ * Range một đoạn (206), Cache-Control immutable vì tên file (randomName) là duy nhất cho mỗi nội dung.
+ * Nội dung được đẩy bằng sendfile của Tomcat khi có hỗ trợ, nếu không thì FileChannel.transferTo.
+ * Ảnh thu nhỏ hay được xem nằm trong một LRU nhỏ trên bộ nhớ để không phải mở file mỗi lượt.
+ * Content-Type chỉ lấy từ AttachmentFileType kèm nosniff, file không phải ảnh được trả dạng tải xuống.
+ */
+@Service
+@Slf4j
+public class AttachmentFileServer {
+
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+    private static final String REVALIDATE = "no-cache";
+    private static final String BYTES_UNIT = "bytes=";
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final int HOT_MAX_ENTRIES = 256;
+    private static final long HOT_MAX_FILE_SIZE = 64 * 1024;
+
+    private final Map<String, byte[]> hot = new LinkedHashMap<>(HOT_MAX_ENTRIES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+            return size() > HOT_MAX_ENTRIES;
+        }
+    };
+
+    private record ByteRange(long start, long end) {
+        long length() {
+            return end - start + 1;
+        }
+    }
+
+    /**
+     * Ghi file ra response
+     *
+     * @param file File cần trả về
+     * @param immutable true nếu nội dung ứng với URL không bao giờ đổi (cho phép client cache lâu dài),
+     *                  false khi trả tạm ảnh gốc thay cho ảnh thu nhỏ chưa tạo xong
+     * @param keepHot true nếu nên giữ nội dung trong LRU (ảnh thu nhỏ)
+     */
+    public void serve(Path file, boolean immutable, boolean keepHot,
+                      HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        String name = file.getFileName().toString();
+        long length = Files.size(file);
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        String etag = "\"" + name + "-" + length + "\"";
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, immutable ? IMMUTABLE : REVALIDATE);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader("X-Content-Type-Options", "nosniff");
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            return;
+        }
+        // Loại nội dung chỉ lấy từ danh sách được phép tải lên, đuôi lạ (file cũ) trả về dạng nhị phân.
+        // File không phải ảnh luôn được tải xuống để trình duyệt không hiển thị trên origin của API
+        AttachmentFileType type = AttachmentFileType.fromFileName(name).orElse(null);
+        response.setContentType(type != null ? type.getMimeType() : MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        if (type == null || !type.isImage()) {
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().build().toString());
+        }
+
+        ByteRange range = new ByteRange(0, length - 1);
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        // Range với đơn vị khác bytes thì bỏ qua và trả cả file
+        if (rangeHeader != null && rangeHeader.startsWith(BYTES_UNIT) && length > 0 && (ifRange == null || ifRange.equals(etag))) {
+            ByteRange requested = parseRange(rangeHeader, length);
+            if (requested == null) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            range = requested;
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + range.start() + "-" + range.end() + "/" + length);
+        }
+        response.setContentLengthLong(length == 0 ? 0 : range.length());
+        if (length == 0 || "HEAD".equalsIgnoreCase(request.getMethod())) {
+            return;
+        }
+
+        byte[] content = keepHot && length <= HOT_MAX_FILE_SIZE ? hotContent(name, file, length) : null;
+        if (content != null) {
+            response.getOutputStream().write(content, (int) range.start(), (int) range.length());
+            return;
+        }
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // Tomcat tự gửi file bằng sendfile sau khi request xử lý xong, không copy qua bộ nhớ ứng dụng
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, range.start());
+            request.setAttribute(SENDFILE_END, range.end() + 1);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel output = Channels.newChannel(response.getOutputStream());
+            long position = range.start();
+            long remaining = range.length();
+            while (remaining > 0) {
+                long sent = channel.transferTo(position, remaining, output);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+                remaining -= sent;
+            }
+        }
+    }
+
+    /**
+     * Bỏ file khỏi LRU khi file bị xóa
+     */
+    public void evict(String name) {
+        synchronized (hot) {
+            hot.remove(name);
+        }
+    }
+
+    private byte[] hotContent(String name, Path file, long length) {
+        synchronized (hot) {
+            byte[] cached = hot.get(name);
+            if (cached != null && cached.length == length) {
+                return cached;
+            }
+        }
+        try {
+            byte[] content = Files.readAllBytes(file);
+            if (content.length != length) {
+                return null;
+            }
+            synchronized (hot) {
+                hot.put(name, content);
+            }
+            return content;
+        } catch (IOException e) {
+            log.warn("Không thể đọc file {}: {}", name, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Đọc header Range dạng "bytes=start-end", "bytes=start-" hoặc "bytes=-suffix".
+     * Nhiều đoạn thì chỉ phục vụ đoạn đầu tiên
+     *
+     * @return null nếu đoạn không hợp lệ hoặc nằm ngoài file
+     */
+    private static ByteRange parseRange(String header, long length) {
+        String spec = header.substring(BYTES_UNIT.length()).split(",")[0].trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            String from = spec.substring(0, dash).trim();
+            String to = spec.substring(dash + 1).trim();
+            if (from.isEmpty()) {
+                long suffix = Long.parseLong(to);
+                return suffix <= 0 ? null : new ByteRange(Math.max(0, length - suffix), length - 1);
+            }
+            long start = Long.parseLong(from);
+            long end = to.isEmpty() ? length - 1 : Math.min(Long.parseLong(to), length - 1);
+            return start > end || start >= length ? null : new ByteRange(start, end);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.laklu.pos.services;
+
+import com.laklu.pos.entities.Attachment;
+import com.laklu.pos.enums.ImageSize;
+import com.laklu.pos.repositories.AttachmentRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Dọn attachment mồ côi theo lịch:
+ * 1. Duyệt bảng attachment theo con trỏ ID, đối chiếu với dish_attachment và profile_attachment,
+ *    xóa các bản ghi không còn liên kết và đã quá thời gian chờ (file chỉ bị xóa khi không còn bản ghi nào dùng chung).
+ * 2. Duyệt thư mục upload, xóa file (kể cả ảnh thu nhỏ và file tạm) không còn bản ghi nào tham chiếu
+ *    và không được tải lên dùng lại trong thời gian chờ.
+ * Mỗi lượt xóa tối đa một số lượng cố định để không chiếm DB và đĩa quá lâu, phần còn lại để lượt sau.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AttachmentGarbageCollector {
+
+    private final AttachmentRepository attachmentRepository;
+    private final AttachmentService attachmentService;
+
+    @Value("${app.attachment-gc.grace-hours:24}")
+    private long graceHours;
+
+    @Value("${app.attachment-gc.batch-size:200}")
+    private int batchSize;
+
+    @Value("${app.attachment-gc.max-deletes-per-run:2000}")
+    private int maxDeletesPerRun;
+
+    /**
+     * Kết quả một lượt dọn
+     */
+    public record Report(int scannedRows, int deletedRows, int scannedFiles, int deletedFiles, long reclaimedBytes) {
+    }
+
+    @Scheduled(cron = "${app.attachment-gc.cron:0 30 4 * * *}")
+    public void scheduledCollect() {
+        Report report = collect();
+        log.info("Dọn attachment: duyệt {} bản ghi, xóa {} bản ghi; duyệt {} file, xóa {} file, thu hồi {} bytes",
+                report.scannedRows(), report.deletedRows(), report.scannedFiles(), report.deletedFiles(), report.reclaimedBytes());
+    }
+
+    public Report collect() {
+        Instant cutoff = Instant.now().minusSeconds(graceHours * 3600);
+        RowResult rows = collectRows(LocalDateTime.ofInstant(cutoff, ZoneId.systemDefault()));
+        FileResult files = collectFiles(cutoff, maxDeletesPerRun - rows.deleted());
+        return new Report(rows.scanned(), rows.deleted(), files.scanned(), files.deleted(), files.reclaimedBytes());
+    }
+
+    private record RowResult(int scanned, int deleted) {
+    }
+
+    private record FileResult(int scanned, int deleted, long reclaimedBytes) {
+    }
+
+    /**
+     * Xóa bản ghi attachment không được món ăn hay hồ sơ nào dùng. File của chúng được xóa ở bước duyệt thư mục
+     * nên bước này chỉ thao tác trên DB
+     */
+    private RowResult collectRows(LocalDateTime cutoff) {
+        int scanned = 0;
+        int deleted = 0;
+        long afterId = 0;
+        while (deleted < maxDeletesPerRun) {
+            List<Attachment> page = attachmentRepository.findPageAfter(afterId, PageRequest.of(0, batchSize));
+            if (page.isEmpty()) {
+                break;
+            }
+            scanned += page.size();
+            afterId = page.get(page.size() - 1).getId();
+
+            List<Long> ids = page.stream().map(Attachment::getId).toList();
+            Set<Long> linked = attachmentRepository.findLinkedIds(ids).stream()
+                    .map(Number::longValue)
+                    .collect(Collectors.toSet());
+            List<Long> orphanIds = page.stream()
+                    .filter(attachment -> !linked.contains(attachment.getId()))
+                    // Dữ liệu cũ không có thời điểm tạo, coi như đã quá thời gian chờ
+                    .filter(attachment -> attachment.getCreatedAt() == null || attachment.getCreatedAt().isBefore(cutoff))
+                    .map(Attachment::getId)
+                    .limit(maxDeletesPerRun - deleted)
+                    .toList();
+            if (!orphanIds.isEmpty()) {
+                attachmentRepository.deleteAllByIdInBatch(orphanIds);
+                deleted += orphanIds.size();
+            }
+        }
+        return new RowResult(scanned, deleted);
+    }
+
+    private FileResult collectFiles(Instant cutoff, int maxDeletes) {
+        Path uploadPath = Paths.get(AttachmentService.UPLOAD_DIRECTORY);
+        if (maxDeletes <= 0 || !Files.isDirectory(uploadPath)) {
+            return new FileResult(0, 0, 0);
+        }
+        int scanned = 0;
+        int deleted = 0;
+        long reclaimed = 0;
+        List<Path> batch = new ArrayList<>(batchSize);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(uploadPath)) {
+            for (Path file : stream) {
+                if (!Files.isRegularFile(file) || !Files.getLastModifiedTime(file).toInstant().isBefore(cutoff)) {
+                    continue;
+                }
+                scanned++;
+                batch.add(file);
+                if (batch.size() >= batchSize) {
+                    long[] result = deleteUnreferenced(batch, cutoff, maxDeletes - deleted);
+                    deleted += (int) result[0];
+                    reclaimed += result[1];
+                    batch.clear();
+                    if (deleted >= maxDeletes) {
+                        break;
+                    }
+                }
+            }
+            if (!batch.isEmpty() && deleted < maxDeletes) {
+                long[] result = deleteUnreferenced(batch, cutoff, maxDeletes - deleted);
+                deleted += (int) result[0];
+                reclaimed += result[1];
+            }
+        } catch (IOException e) {
+            log.error("Không thể duyệt thư mục upload: " + e.getMessage());
+        }
+        return new FileResult(scanned, deleted, reclaimed);
+    }
+
+    /**
+     * Xóa các file trong lô không còn bản ghi tham chiếu. Ảnh thu nhỏ đi theo ảnh gốc và được xóa cùng qua
+     * AttachmentService.deleteStoredFile, nơi kiểm tra lại thời gian sửa trong khóa của tên file: lượt tải lên
+     * dùng lại file sau khi tra cứu ở đây đã làm mới thời gian sửa nên file được giữ. File tạm luôn bị xóa
+     *
+     * @return [số file đã xóa, số byte thu hồi]
+     */
+    private long[] deleteUnreferenced(List<Path> files, Instant cutoff, int maxDeletes) {
+        long deleted = 0;
+        long reclaimed = 0;
+        Set<String> originals = new LinkedHashSet<>();
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            if (!name.endsWith(".tmp")) {
+                originals.add(ImageSize.originalNameOf(name));
+                continue;
+            }
+            try {
+                long size = Files.size(file);
+                if (Files.deleteIfExists(file)) {
+                    deleted++;
+                    reclaimed += size;
+                }
+            } catch (IOException e) {
+                log.warn("Không thể xóa file {}: {}", name, e.getMessage());
+            }
+        }
+        if (originals.isEmpty()) {
+            return new long[]{deleted, reclaimed};
+        }
+
+        Set<String> referenced = new HashSet<>(attachmentRepository.findReferencedFileNames(originals));
+        for (String original : originals) {
+            if (deleted >= maxDeletes) {
+                break;
+            }
+            if (referenced.contains(original)) {
+                continue;
+            }
+            AttachmentService.StoredFileDeletion deletion = attachmentService.deleteStoredFile(original, cutoff);
+            if (deletion != null) {
+                deleted += deletion.files();
+                reclaimed += deletion.bytes();
+            }
+        }
+        return new long[]{deleted, reclaimed};
+    }
+}
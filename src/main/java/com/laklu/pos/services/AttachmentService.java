@@ -1,8 +1,12 @@
 package com.laklu.pos.services;
 
+import com.laklu.pos.dataObjects.FileUpload;
 import com.laklu.pos.dataObjects.response.PersistAttachmentResponse;
 import com.laklu.pos.entities.Attachment;
+import com.laklu.pos.entities.Dish;
 import com.laklu.pos.entities.InteractWithAttachments;
+import com.laklu.pos.enums.AttachmentFileType;
+import com.laklu.pos.enums.ImageSize;
 import com.laklu.pos.exceptions.httpExceptions.NotFoundException;
 import com.laklu.pos.repositories.AttachmentRepository;
 import com.laklu.pos.validator.FileMustBeValid;
@@ -11,13 +15,24 @@ import jakarta.validation.constraints.NotNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
 
 @Service
@@ -32,43 +47,172 @@ public class AttachmentService {
 
     public static String UPLOAD_DIRECTORY = System.getProperty("user.dir") + "/uploads";
 
+    // Bộ đệm đọc/ghi cho mỗi lượt tải lên, bộ nhớ dùng không phụ thuộc dung lượng file
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    // File được tải lên dùng lại trong khoảng này thì không bị xóa khi xóa attachment,
+    // đủ dài để giao dịch của lượt tải lên kịp commit bản ghi
+    private static final Duration CLAIM_WINDOW = Duration.ofMinutes(10);
+
+    // Khóa theo tên file lưu trữ (chia sọc), dùng chung giữa bước kiểm tra và làm mới file có sẵn khi tải lên
+    // và bước xóa file, để không xóa mất file vừa được dùng lại
+    private static final Object[] STORAGE_LOCKS = new Object[64];
+
+    static {
+        Arrays.setAll(STORAGE_LOCKS, i -> new Object());
+    }
+
+    /**
+     * Kết quả xóa một file lưu trữ và các ảnh thu nhỏ của nó
+     */
+    public record StoredFileDeletion(int files, long bytes) {
+    }
+
     private final AttachmentRepository attachmentRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ImageDerivativeService imageDerivativeService;
+    private final AttachmentFileServer attachmentFileServer;
 
     public Attachment saveFile(MultipartFile file) throws IOException {
-        RuleValidator.validate(new FileMustBeValid(file));
+        return saveFile(FileUpload.of(file));
+    }
 
-        String randomName = UUID.randomUUID() + "_" + Objects.requireNonNull(file.getOriginalFilename()).replace(" ", "_");
+    /**
+     * Lưu file tải lên theo nội dung: tên file trên đĩa là SHA-256 của nội dung,
+     * file trùng nội dung với file đã có thì chỉ thêm bản ghi attachment mà không giữ thêm bản sao trên đĩa.
+     * Mỗi attachment vẫn có randomName riêng, file chỉ bị xóa khi không còn attachment nào dùng.
+     * Luồng tải lên được đọc một lượt: phần đầu dùng để kiểm tra loại file trước khi ghi,
+     * phần còn lại vừa tính hash vừa ghi thẳng ra file tạm qua FileChannel với bộ đệm cố định,
+     * vượt dung lượng tối đa thì dừng ngay mà không đọc hết
+     */
+    public Attachment saveFile(FileUpload upload) throws IOException {
+        String originalName = upload.originalName() == null || upload.originalName().isBlank()
+                ? "file" : upload.originalName();
+        String randomName = UUID.randomUUID() + "_" + originalName.replace(" ", "_");
         Path uploadPath = Paths.get(UPLOAD_DIRECTORY);
 
         if (!Files.exists(uploadPath)) {
             Files.createDirectories(uploadPath);
         }
 
-        Path filePath = uploadPath.resolve(randomName);
-        file.transferTo(filePath.toFile());
+        MessageDigest digest = sha256();
+        long size;
+        // Tên file tạm chưa biết hash, ghi xong mới đổi tên để không bao giờ phục vụ file ghi dở
+        Path tempPath = uploadPath.resolve(UUID.randomUUID() + ".upload.tmp");
+        try (InputStream input = upload.content()) {
+            byte[] head = input.readNBytes(FileMustBeValid.HEAD_SIZE);
+            RuleValidator.validate(new FileMustBeValid(upload.contentType(), Math.max(upload.size(), head.length), head));
+
+            try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                write(channel, digest, head, head.length);
+                size = head.length;
+                byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+                int read;
+                while ((read = input.read(buffer)) != -1) {
+                    size += read;
+                    if (size > FileMustBeValid.MAX_FILE_SIZE) {
+                        RuleValidator.validate(new FileMustBeValid(upload.contentType(), size, head));
+                    }
+                    write(channel, digest, buffer, read);
+                }
+            }
+
+            String contentHash = HexFormat.of().formatHex(digest.digest());
+            // Đuôi file theo loại đã kiểm tra, không theo tên phía client để file luôn được phục vụ đúng loại
+            String storageName = contentHash + AttachmentFileType.fromMimeType(upload.contentType())
+                    .map(AttachmentFileType::getExtension)
+                    .orElse("");
+            Path filePath = uploadPath.resolve(storageName);
+            boolean written = false;
+            synchronized (storageLock(storageName)) {
+                if (!Files.exists(filePath)) {
+                    Files.move(tempPath, filePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    written = true;
+                } else {
+                    // File đã có sẵn: làm mới thời gian sửa để deleteStoredFile không xóa khi bản ghi mới chưa commit
+                    Files.setLastModifiedTime(filePath, FileTime.from(Instant.now()));
+                }
+            }
+
+            Attachment attachment = new Attachment();
+            attachment.setMimeType(upload.contentType());
+            attachment.setOriginalName(originalName);
+            attachment.setRandomName(randomName);
+            attachment.setSize(size);
+            attachment.setPath("/uploads/" + storageName);
+            attachment.setContentHash(contentHash);
+            attachment.setStorageName(storageName);
+
+            Attachment savedAttachment = attachmentRepository.save(attachment);
+            if (written && isImage(savedAttachment)) {
+                imageDerivativeService.generateAsync(storageName);
+            }
+            return savedAttachment;
+        } finally {
+            Files.deleteIfExists(tempPath);
+        }
+    }
+
+    /**
+     * Tên file trên đĩa của một tên trong URL: URL mới dùng thẳng tên file lưu theo nội dung,
+     * URL cũ hoặc client tự ghép từ randomName thì tra bản ghi attachment
+     */
+    public String resolveStoredFileName(String name) {
+        if (Files.exists(Paths.get(UPLOAD_DIRECTORY).resolve(name))) {
+            return name;
+        }
+        return attachmentRepository.findByRandomName(name)
+                .map(Attachment::getStoredFileName)
+                .orElse(name);
+    }
+
+    private static Object storageLock(String storedFileName) {
+        return STORAGE_LOCKS[Math.floorMod(storedFileName.hashCode(), STORAGE_LOCKS.length)];
+    }
 
-        Attachment attachment = new Attachment();
-        attachment.setMimeType(file.getContentType());
-        attachment.setOriginalName(file.getOriginalFilename());
-        attachment.setRandomName(randomName);
-        attachment.setSize(file.getSize());
-        attachment.setPath("/uploads/" + randomName);
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 
-        return attachmentRepository.save(attachment);
+    private static void write(FileChannel channel, MessageDigest digest, byte[] bytes, int length) throws IOException {
+        digest.update(bytes, 0, length);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, length);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
     }
 
     public String getImageUrl(String name) {
         Attachment attachment = attachmentRepository.findByRandomName(name).orElseThrow(NotFoundException::new);
-        return appBaseurl + "/" + attachmentEndpoint + "/" + attachment.getRandomName();
+        return getImageUrl(attachment);
     }
 
     public String getImageUrl(Long id) {
         Attachment attachment = attachmentRepository.findById(id).orElseThrow(NotFoundException::new);
-        return appBaseurl + "/" + attachmentEndpoint + "/" + attachment.getRandomName();
+        return getImageUrl(attachment);
     }
 
+    /**
+     * URL trỏ thẳng tới file lưu theo nội dung nên các attachment trùng nội dung dùng chung cache phía client
+     */
     public String getImageUrl(@NotNull Attachment attachment) {
-        return appBaseurl + "/" + attachmentEndpoint + "/" + attachment.getRandomName();
+        return appBaseurl + "/" + attachmentEndpoint + "/" + attachment.getStoredFileName();
+    }
+
+    /**
+     * Đường dẫn ảnh theo kích thước, ví dụ ảnh thu nhỏ cho danh sách món
+     */
+    public String getImageUrl(@NotNull Attachment attachment, ImageSize size) {
+        String url = getImageUrl(attachment);
+        return size == ImageSize.ORIGINAL ? url : url + "?size=" + size.getParam();
+    }
+
+    public boolean isImage(Attachment attachment) {
+        return attachment.getMimeType() != null && attachment.getMimeType().startsWith("image/");
     }
 
     public <T> void saveAttachment(InteractWithAttachments<T> interactWithAttachments, Long attachmentId, boolean isSync) {
@@ -82,6 +226,7 @@ public class AttachmentService {
         }
 
         attachmentRepository.save(attachment);
+        publishIfDish(interactWithAttachments);
     }
 
     public <T> void saveAttachment(InteractWithAttachments<T> interactWithAttachments, List<Long> attachmentIds, boolean isSync) {
@@ -96,10 +241,14 @@ public class AttachmentService {
             interactWithAttachments.addAttachment(attachments.toArray(new Attachment[0]));
         }
         attachmentRepository.saveAll(attachments);
+        publishIfDish(interactWithAttachments);
     }
 
-    public void cleanUp() {
-        //TODO: Lấy ra toàn bộ ảnh trong database kiểm tra ảnh nào đang không có target id và targetName thì xóa.
+    // Ảnh món ăn nằm trong snapshot thực đơn
+    private void publishIfDish(InteractWithAttachments<?> interactWithAttachments) {
+        if (interactWithAttachments instanceof Dish) {
+            eventPublisher.publishEvent(new MenuCatalogChangedEvent());
+        }
     }
 
     public List<Attachment> findAll(List<Long> ids) {
@@ -107,27 +256,65 @@ public class AttachmentService {
     }
 
     public PersistAttachmentResponse toPersistAttachmentResponse(Attachment attachment) {
-        return new PersistAttachmentResponse(
+        PersistAttachmentResponse response = new PersistAttachmentResponse(
                 attachment.getId(),
                 this.getImageUrl(attachment),
                 attachment.getRandomName()
         );
+        if (isImage(attachment)) {
+            response.setThumbnailLink(this.getImageUrl(attachment, ImageSize.THUMBNAIL));
+            response.setMediumLink(this.getImageUrl(attachment, ImageSize.MEDIUM));
+        }
+        return response;
+    }
+
+    /**
+     * Xóa file lưu trữ cùng các ảnh thu nhỏ nếu file không được tải lên dùng lại sau claimedBefore.
+     * Chạy trong khóa của tên file, cùng khóa với bước kiểm tra file có sẵn của saveFile
+     *
+     * @return Số file và số byte đã xóa, null nếu file vừa được dùng lại nên được giữ
+     */
+    public StoredFileDeletion deleteStoredFile(String storedFileName, Instant claimedBefore) {
+        Path uploadPath = Paths.get(UPLOAD_DIRECTORY);
+        synchronized (storageLock(storedFileName)) {
+            Path original = uploadPath.resolve(storedFileName);
+            int files = 0;
+            long bytes = 0;
+            try {
+                if (Files.exists(original) && !Files.getLastModifiedTime(original).toInstant().isBefore(claimedBefore)) {
+                    return null;
+                }
+                for (ImageSize size : ImageSize.values()) {
+                    String fileName = size.fileNameOf(storedFileName);
+                    Path path = uploadPath.resolve(fileName);
+                    long length = Files.exists(path) ? Files.size(path) : 0;
+                    if (Files.deleteIfExists(path)) {
+                        files++;
+                        bytes += length;
+                    }
+                    attachmentFileServer.evict(fileName);
+                }
+            } catch (IOException e) {
+                log.error("Không thể xóa file: " + e.getMessage());
+            }
+            return new StoredFileDeletion(files, bytes);
+        }
     }
 
     public void deleteAttachment(Long id) {
         try {
             Attachment attachment = attachmentRepository.findById(id).orElse(null);
             if (attachment != null) {
-                // Xóa file từ hệ thống file nếu cần
-                try {
-                    Path filePath = Paths.get(UPLOAD_DIRECTORY).resolve(attachment.getRandomName());
-                    Files.deleteIfExists(filePath);
-                } catch (IOException e) {
-                    log.error("Không thể xóa file: " + e.getMessage());
-                }
-                
                 // Xóa bản ghi từ database
                 attachmentRepository.deleteById(id);
+
+                // File dùng chung theo nội dung chỉ bị xóa khi không còn attachment nào tham chiếu.
+                // Lượt tải lên dùng lại file có thể chưa commit bản ghi nên file vừa được dùng lại được giữ,
+                // AttachmentGarbageCollector sẽ dọn nếu rốt cuộc không ai dùng
+                String storedFileName = attachment.getStoredFileName();
+                if (attachment.getStorageName() == null || !attachmentRepository.existsByStorageName(storedFileName)) {
+                    deleteStoredFile(storedFileName, Instant.now().minus(CLAIM_WINDOW));
+                }
             }
         } catch (Exception e) {
             log.error("Lỗi khi xóa attachment: " + e.getMessage());
@@ -12,6 +12,7 @@ import com.laklu.pos.validator.RuleValidator;
 import com.laklu.pos.validator.ValueExistIn;
 import jakarta.transaction.Transactional;
 import lombok.AllArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.util.Date;
@@ -29,6 +30,8 @@ public class CategoryService {
 
     private final MenuItemRepository menuItemRepository;
 
+    private final ApplicationEventPublisher eventPublisher;
+
     public List<Category> getAllCategories() {
         return categoryRepository.findAll();
     }
@@ -49,7 +52,9 @@ public class CategoryService {
         Category category = categoryMapper.toEntity(categoryRequest);
         category.setIsDeleted(false);
 
-        return categoryRepository.save(category);
+        Category savedCategory = categoryRepository.save(category);
+        eventPublisher.publishEvent(new MenuCatalogChangedEvent());
+        return savedCategory;
     }
 
     @Transactional
@@ -64,6 +69,7 @@ public class CategoryService {
 
         category.setName(categoryRequest.getName());
         category.setDescription(categoryRequest.getDescription());
+        eventPublisher.publishEvent(new MenuCatalogChangedEvent());
 
         return category;
     }
@@ -72,6 +78,7 @@ public class CategoryService {
     public void deleteCategory(Category category) {
         category.setIsDeleted(true);
         categoryRepository.save(category);
+        eventPublisher.publishEvent(new MenuCatalogChangedEvent());
     }
 
 
@@ -88,7 +95,9 @@ public class CategoryService {
             }
         });
 
-        return categoryRepository.save(category);
+        Category savedCategory = categoryRepository.save(category);
+        eventPublisher.publishEvent(new MenuCatalogChangedEvent());
+        return savedCategory;
     }
 
     public Optional<Category> findByName(String name) {
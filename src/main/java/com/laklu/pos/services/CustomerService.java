@@ -0,0 +1,185 @@
+package com.laklu.pos.services;
+
+import com.laklu.pos.entities.Customer;
+import com.laklu.pos.entities.Reservation;
+import com.laklu.pos.exceptions.httpExceptions.NotFoundException;
+import com.laklu.pos.repositories.CustomerRepository;
+import com.laklu.pos.repositories.PaymentRepository;
+import com.laklu.pos.repositories.ReservationRepository;
+import com.laklu.pos.uiltis.Ultis;
+import jakarta.transaction.Transactional;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Khách hàng được nhận diện theo số điện thoại đã chuẩn hóa (có unique index),
+ * số lượt ghé, tổng chi tiêu và lần ghé gần nhất được cộng dồn khi đặt bàn hoàn thành
+ * nên tra cứu khách quen không cần quét bảng reservation.
+ */
+@Service
+@Slf4j
+public class CustomerService {
+
+    private final CustomerRepository customerRepository;
+    private final ReservationRepository reservationRepository;
+    private final PaymentRepository paymentRepository;
+    private final TransactionTemplate requiresNew;
+
+    public CustomerService(CustomerRepository customerRepository, ReservationRepository reservationRepository,
+                           PaymentRepository paymentRepository, PlatformTransactionManager transactionManager) {
+        this.customerRepository = customerRepository;
+        this.reservationRepository = reservationRepository;
+        this.paymentRepository = paymentRepository;
+        this.requiresNew = new TransactionTemplate(transactionManager);
+        this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public Customer findOrFail(Integer id) {
+        return customerRepository.findById(id).orElseThrow(NotFoundException::new);
+    }
+
+    public Optional<Customer> findByPhone(String phone) {
+        String normalizedPhone = Ultis.normalizePhone(phone);
+        if (normalizedPhone.isEmpty()) {
+            return Optional.empty();
+        }
+        return customerRepository.findByPhone(normalizedPhone);
+    }
+
+    /**
+     * Tìm khách theo số điện thoại, tạo mới nếu chưa có. Tên khách được cập nhật theo lần đặt bàn mới nhất.
+     * Khách vãng lai (không có số hoặc số giữ chỗ của TableOrderRequest) không được gắn với khách hàng nào
+     */
+    public Optional<Customer> resolveCustomer(String name, String phone) {
+        String normalizedPhone = Ultis.normalizePhone(phone);
+        if (!isIdentifiablePhone(normalizedPhone)) {
+            return Optional.empty();
+        }
+        Optional<Customer> existing = customerRepository.findByPhone(normalizedPhone);
+        if (existing.isPresent()) {
+            Customer customer = existing.get();
+            if (name != null && !name.equals(customer.getName())) {
+                customer.setName(name);
+                return Optional.of(customerRepository.save(customer));
+            }
+            return Optional.of(customer);
+        }
+        try {
+            // Tạo trong giao dịch riêng: hai yêu cầu cùng tạo một số mới thì lỗi trùng khóa
+            // không làm hỏng giao dịch đặt bàn, yêu cầu chậm hơn đọc lại khách vừa được tạo
+            return Optional.of(requiresNew.execute(status -> customerRepository.saveAndFlush(Customer.builder()
+                    .phone(normalizedPhone)
+                    .name(name)
+                    .build())));
+        } catch (DataIntegrityViolationException e) {
+            // Đọc lại trong giao dịch mới để thấy khách do giao dịch kia vừa commit
+            return requiresNew.execute(status -> customerRepository.findByPhone(normalizedPhone));
+        }
+    }
+
+    /**
+     * Số rỗng hoặc toàn số 0 (mặc định của khách vãng lai) không nhận diện được khách
+     */
+    private static boolean isIdentifiablePhone(String normalizedPhone) {
+        return !normalizedPhone.isEmpty() && !normalizedPhone.chars().allMatch(digit -> digit == '0');
+    }
+
+    /**
+     * Cộng một lượt ghé cho khách của đặt bàn vừa hoàn thành, kèm tổng tiền đã thanh toán của đặt bàn
+     */
+    public void recordVisit(Reservation reservation) {
+        if (reservation.getCustomerId() == null) {
+            return;
+        }
+        BigDecimal spent = paymentRepository.sumPaidAmountByReservationId(reservation.getId());
+        LocalDateTime visitedAt = reservation.getCheckOut() != null ? reservation.getCheckOut() : LocalDateTime.now();
+        customerRepository.recordVisit(reservation.getCustomerId(), spent, visitedAt);
+    }
+
+    /**
+     * Hoàn tác lượt ghé khi đặt bàn đã hoàn thành bị mở lại do hủy thanh toán
+     */
+    public void reverseVisit(Reservation reservation, BigDecimal refundedAmount) {
+        if (reservation.getCustomerId() == null) {
+            return;
+        }
+        customerRepository.reverseVisit(reservation.getCustomerId(), refundedAmount);
+    }
+
+    /**
+     * Gắn các đặt bàn cũ (tạo trước khi có bảng customers) với khách hàng và tính lại bộ đếm cho các khách này.
+     * Chỉ xử lý đặt bàn chưa gắn khách, truy vấn đã loại khách vãng lai. Số có định dạng lạ vẫn có thể lọt qua
+     * truy vấn nhưng không nhận diện được khách nên được bỏ qua, không gắn và không tính tiền.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void linkExistingReservations() {
+        List<Object[]> rows = reservationRepository.findUnlinkedCustomerFields();
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        // Số điện thoại -> các đặt bàn, giữ thứ tự check in để tên khách là tên ở lần đặt gần nhất
+        Map<String, List<Object[]>> byPhone = new LinkedHashMap<>();
+        for (Object[] row : rows) {
+            String phone = Ultis.normalizePhone((String) row[2]);
+            if (isIdentifiablePhone(phone)) {
+                byPhone.computeIfAbsent(phone, key -> new ArrayList<>()).add(row);
+            }
+        }
+
+        if (byPhone.isEmpty()) {
+            return;
+        }
+
+        List<Integer> completedIds = byPhone.values().stream()
+                .flatMap(List::stream)
+                .filter(row -> row[3] == Reservation.Status.COMPLETED)
+                .map(row -> (Integer) row[0])
+                .toList();
+        Map<Integer, BigDecimal> spentByReservation = new HashMap<>();
+        if (!completedIds.isEmpty()) {
+            for (Object[] row : paymentRepository.sumPaidAmountByReservationIds(completedIds)) {
+                spentByReservation.put((Integer) row[0], (BigDecimal) row[1]);
+            }
+        }
+
+        int linked = 0;
+        for (Map.Entry<String, List<Object[]>> entry : byPhone.entrySet()) {
+            String phone = entry.getKey();
+            List<Object[]> reservations = entry.getValue();
+            Object[] latest = reservations.get(reservations.size() - 1);
+            Integer customerId = resolveCustomer((String) latest[1], phone).orElseThrow().getId();
+            int visits = 0;
+            BigDecimal spent = BigDecimal.ZERO;
+            LocalDateTime lastVisitAt = null;
+            for (Object[] row : reservations) {
+                if (row[3] != Reservation.Status.COMPLETED) {
+                    continue;
+                }
+                LocalDateTime visitedAt = row[5] != null ? (LocalDateTime) row[5] : (LocalDateTime) row[4];
+                visits++;
+                spent = spent.add(spentByReservation.getOrDefault((Integer) row[0], BigDecimal.ZERO));
+                if (visitedAt != null && (lastVisitAt == null || lastVisitAt.isBefore(visitedAt))) {
+                    lastVisitAt = visitedAt;
+                }
+            }
+            // Cộng dồn bằng UPDATE: khách có thể vừa được tạo trong giao dịch riêng của resolveCustomer
+            if (visits > 0) {
+                customerRepository.addVisits(customerId, visits, spent, lastVisitAt);
+            }
+            linked += reservationRepository.linkCustomer(reservations.stream().map(row -> (Integer) row[0]).toList(), customerId);
+        }
+        log.info("Đã gắn {} đặt bàn cũ với {} khách hàng", linked, byPhone.size());
+    }
+}
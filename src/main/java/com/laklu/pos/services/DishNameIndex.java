@@ -0,0 +1,151 @@
+package com.laklu.pos.services;
+
+import com.laklu.pos.uiltis.Ultis;
+
+import java.util.*;
+
+/**
+ * Chỉ mục tên món ăn chỉ đọc, tìm không dấu ("pho bo" khớp "Phở bò") và chịu được lỗi gõ.
+ * Mỗi từ trong tên (đã bỏ dấu) được đệm và tách thành các cụm 3 ký tự (trigram), mỗi trigram giữ danh sách món chứa nó.
+ * Kết quả được xếp hạng: trùng tên, tên bắt đầu bằng từ khóa, mọi từ của từ khóa là đầu một từ trong tên,
+ * tên chứa từ khóa, cuối cùng là gần giống theo tỉ lệ trigram của từ khóa có trong tên.
+ *
+ * @param <K> Khóa trả về cho mỗi món (ID món ăn, món trong thực đơn...)
+ */
+final class DishNameIndex<K> {
+
+    private static final int GRAM = 3;
+    // Tỉ lệ trigram của từ khóa phải có trong tên để coi là gần giống
+    private static final double MIN_SIMILARITY = 0.6;
+
+    private static final int EXACT = 0;
+    private static final int NAME_PREFIX = 1;
+    private static final int WORD_PREFIX = 2;
+    private static final int CONTAINS = 3;
+    private static final int SIMILAR = 4;
+
+    private final List<K> keys;
+    private final String[] names;
+    private final String[][] words;
+    private final Map<String, int[]> postings;
+
+    private record Match(int position, int rank, double similarity) {
+    }
+
+    DishNameIndex(List<K> keys, List<String> names) {
+        this.keys = List.copyOf(keys);
+        this.names = new String[keys.size()];
+        this.words = new String[keys.size()][];
+        Map<String, List<Integer>> grams = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            this.names[i] = Ultis.normalizeSearchText(names.get(i));
+            this.words[i] = this.names[i].isEmpty() ? new String[0] : this.names[i].split(" ");
+            for (String gram : grams(this.words[i])) {
+                grams.computeIfAbsent(gram, key -> new ArrayList<>()).add(i);
+            }
+        }
+        Map<String, int[]> compact = new HashMap<>();
+        grams.forEach((gram, positions) -> compact.put(gram, positions.stream().mapToInt(Integer::intValue).toArray()));
+        this.postings = compact;
+    }
+
+    /**
+     * Tìm các món có tên khớp từ khóa
+     *
+     * @param keyword Từ khóa, không phân biệt dấu và hoa thường
+     * @return Khóa của các món khớp, món khớp tốt hơn đứng trước
+     */
+    List<K> search(String keyword) {
+        String query = Ultis.normalizeSearchText(keyword);
+        if (query.isEmpty()) {
+            return List.of();
+        }
+        String[] queryWords = query.split(" ");
+        Set<String> queryGrams = grams(queryWords);
+
+        // Đếm số trigram chung với từ khóa của từng món
+        Map<Integer, Integer> shared = new HashMap<>();
+        for (String gram : queryGrams) {
+            int[] positions = postings.get(gram);
+            if (positions != null) {
+                for (int position : positions) {
+                    shared.merge(position, 1, Integer::sum);
+                }
+            }
+        }
+
+        List<Match> matches = new ArrayList<>();
+        if (query.length() < GRAM) {
+            // Từ khóa quá ngắn thì trigram không đủ để lọc ứng viên, duyệt trực tiếp các tên
+            for (int i = 0; i < names.length; i++) {
+                addMatch(matches, i, query, queryWords, 0);
+            }
+        } else {
+            shared.forEach((position, count) -> addMatch(matches, position, query, queryWords,
+                    (double) count / queryGrams.size()));
+        }
+
+        matches.sort(Comparator.comparingInt(Match::rank)
+                .thenComparing(Comparator.comparingDouble(Match::similarity).reversed())
+                .thenComparingInt(match -> names[match.position()].length())
+                .thenComparing(match -> names[match.position()]));
+        return matches.stream().map(match -> keys.get(match.position())).toList();
+    }
+
+    private void addMatch(List<Match> matches, int position, String query, String[] queryWords, double similarity) {
+        int rank = rank(position, query, queryWords, similarity);
+        if (rank >= 0) {
+            matches.add(new Match(position, rank, similarity));
+        }
+    }
+
+    private int rank(int position, String query, String[] queryWords, double similarity) {
+        String name = names[position];
+        if (name.equals(query)) {
+            return EXACT;
+        }
+        if (name.startsWith(query)) {
+            return NAME_PREFIX;
+        }
+        if (allWordsArePrefixes(queryWords, words[position])) {
+            return WORD_PREFIX;
+        }
+        if (name.contains(query)) {
+            return CONTAINS;
+        }
+        if (query.length() >= GRAM && similarity >= MIN_SIMILARITY) {
+            return SIMILAR;
+        }
+        return -1;
+    }
+
+    private static boolean allWordsArePrefixes(String[] queryWords, String[] nameWords) {
+        for (String queryWord : queryWords) {
+            boolean found = false;
+            for (String nameWord : nameWords) {
+                if (nameWord.startsWith(queryWord)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Trigram của từng từ, đệm hai khoảng trắng phía trước và một phía sau để từ ngắn và đầu từ cũng có trigram
+     */
+    private static Set<String> grams(String[] words) {
+        Set<String> grams = new HashSet<>();
+        for (String word : words) {
+            String padded = "  " + word + " ";
+            for (int i = 0; i + GRAM <= padded.length(); i++) {
+                grams.add(padded.substring(i, i + GRAM));
+            }
+        }
+        return grams;
+    }
+}
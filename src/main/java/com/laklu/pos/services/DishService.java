@@ -7,13 +7,18 @@ import com.laklu.pos.entities.Dish;
 import com.laklu.pos.exceptions.httpExceptions.NotFoundException;
 import com.laklu.pos.repositories.DishRepository;
 import lombok.AllArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -21,6 +26,8 @@ import java.util.stream.Collectors;
 public class DishService {
 
     private final DishRepository dishRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MenuCatalogCache menuCatalogCache;
 
     public List<Dish> getAll() {
         return dishRepository.findAll();
@@ -35,11 +42,15 @@ public class DishService {
     }
 
     public Dish createDish(Dish dish) {
-        return dishRepository.save(dish);
+        Dish savedDish = dishRepository.save(dish);
+        eventPublisher.publishEvent(new MenuCatalogChangedEvent());
+        return savedDish;
     }
 
     public Dish updateDish(Dish dish) {
-        return dishRepository.save(dish);
+        Dish savedDish = dishRepository.save(dish);
+        eventPublisher.publishEvent(new MenuCatalogChangedEvent());
+        return savedDish;
     }
 
     public Dish findOrFail(Integer id) {
@@ -49,18 +60,52 @@ public class DishService {
 
     public void deleteDish(Dish dish) {
         dishRepository.delete(dish);
+        eventPublisher.publishEvent(new MenuCatalogChangedEvent());
     }
 
     public Optional<Dish> findByName(String name) {
         return dishRepository.findByName(name);
     }
     
+    /**
+     * Tìm món ăn theo tên (không phân biệt dấu, chịu lỗi gõ) qua chỉ mục trong bộ nhớ, món khớp tốt hơn đứng trước
+     */
     public List<Dish> searchByName(String name) {
-        return dishRepository.findByNameContainingIgnoreCase(name);
+        if (name == null || name.isBlank()) {
+            return dishRepository.findByNameContainingIgnoreCase("");
+        }
+        return findInOrder(menuCatalogCache.searchDishIds(name));
     }
-    
+
+    /**
+     * Tìm món ăn theo tên qua chỉ mục trong bộ nhớ. Kết quả giữ thứ hạng của chỉ mục
+     * (trùng khớp, tiền tố, tiền tố của từ, gần đúng) nên chỉ phân trang trên danh sách ID đã xếp hạng,
+     * sort trong pageable chỉ áp dụng khi không có từ khóa
+     */
     public Page<Dish> searchByNameWithPagination(String name, Pageable pageable) {
-        return dishRepository.findByNameContainingIgnoreCase(name, pageable);
+        if (name == null || name.isBlank()) {
+            return dishRepository.findByNameContainingIgnoreCase("", pageable);
+        }
+        List<Integer> ids = menuCatalogCache.searchDishIds(name);
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(findInOrder(ids), pageable, ids.size());
+        }
+        int from = (int) Math.min(pageable.getOffset(), ids.size());
+        int to = Math.min(from + pageable.getPageSize(), ids.size());
+        return new PageImpl<>(findInOrder(ids.subList(from, to)), pageable, ids.size());
+    }
+
+    // Nạp món ăn theo ID và trả về đúng thứ tự của danh sách ID
+    private List<Dish> findInOrder(List<Integer> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Integer, Dish> dishes = dishRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Dish::getId, Function.identity()));
+        return ids.stream()
+                .map(dishes::get)
+                .filter(Objects::nonNull)
+                .toList();
     }
 
     public Set<PersistAttachmentResponse> getDishImages(Integer dishId) {
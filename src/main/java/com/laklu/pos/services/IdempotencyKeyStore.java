@@ -0,0 +1,38 @@
+package com.laklu.pos.services;
+
+import com.laklu.pos.entities.IdempotencyKey;
+import com.laklu.pos.repositories.IdempotencyKeyRepository;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+
+/**
+ * Giữ chỗ và giải phóng Idempotency-Key trong giao dịch riêng, tách khỏi giao dịch nghiệp vụ của người gọi:
+ * khóa trùng chỉ làm hỏng giao dịch giữ chỗ, và khóa của giao dịch bị hoàn tác vẫn được xóa.
+ * Tách thành bean riêng để REQUIRES_NEW đi qua proxy
+ */
+@Service
+@RequiredArgsConstructor
+public class IdempotencyKeyStore {
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+
+    /**
+     * Thêm khóa chưa có kết quả, ném DataIntegrityViolationException nếu khóa đã tồn tại
+     */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    public IdempotencyKey reserve(String scope, String key, LocalDateTime expiresAt) {
+        return idempotencyKeyRepository.saveAndFlush(IdempotencyKey.builder()
+                .scope(scope)
+                .idempotencyKey(key)
+                .expiresAt(expiresAt)
+                .build());
+    }
+
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    public void release(Integer id) {
+        idempotencyKeyRepository.deleteById(id);
+    }
+}
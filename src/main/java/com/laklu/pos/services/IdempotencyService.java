@@ -0,0 +1,228 @@
+package com.laklu.pos.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.laklu.pos.auth.JwtGuard;
+import com.laklu.pos.entities.IdempotencyKey;
+import com.laklu.pos.exceptions.httpExceptions.BadRequestException;
+import com.laklu.pos.exceptions.httpExceptions.ConflictException;
+import com.laklu.pos.exceptions.httpExceptions.InternalServerException;
+import com.laklu.pos.repositories.IdempotencyKeyRepository;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lưu kết quả của các yêu cầu tạo mới theo khóa Idempotency-Key do client gửi lên,
+ * để khi tablet gửi lại (do mất mạng) thì trả về kết quả cũ thay vì thực hiện lại giao dịch.
+ * Bộ nhớ đệm trong RAM có TTL, bảng idempotency_keys dùng làm dự phòng khi khởi động lại.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+    private static final int MAX_KEY_LENGTH = 100;
+    // Thời gian giữ chỗ của khóa chưa có kết quả, sau đó coi như yêu cầu đầu tiên đã chết
+    private static final long PENDING_MINUTES = 10;
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final ObjectMapper objectMapper;
+
+    private final IdempotencyKeyStore keyStore;
+
+    private final Map<String, CachedResponse> cache = new ConcurrentHashMap<>();
+    // Kết quả chờ giao dịch của người gọi commit mới được đưa vào bộ nhớ đệm
+    private final Map<String, CachedResponse> pendingResults = new ConcurrentHashMap<>();
+
+    @Value("${app.idempotency.ttl-minutes:1440}")
+    private long ttlMinutes;
+
+    @FunctionalInterface
+    public interface IdempotentAction<T> {
+        T execute() throws Exception;
+    }
+
+    private record CachedResponse(Object body, LocalDateTime expiresAt) {
+        boolean isExpired(LocalDateTime now) {
+            return expiresAt.isBefore(now);
+        }
+    }
+
+    /**
+     * Thực hiện action một lần duy nhất cho mỗi cặp (scope, key) trong thời gian TTL.
+     * Nếu key rỗng thì thực hiện bình thường như không có idempotency.
+     * Khóa được giữ chỗ trong giao dịch riêng trước khi chạy action, kết quả được ghi vào khóa trong giao dịch
+     * của người gọi nên chỉ tồn tại khi giao dịch đó commit; giao dịch bị hoàn tác thì khóa được giải phóng
+     * để client gửi lại. Bộ nhớ đệm chỉ được nạp sau khi commit.
+     * @param scope Phạm vi của khóa, ví dụ "order.create"
+     * @param key Giá trị header Idempotency-Key
+     * @param action Hành động cần thực hiện
+     * @return Kết quả của lần thực hiện đầu tiên
+     */
+    public Object execute(String scope, String key, IdempotentAction<?> action) throws Exception {
+        if (key == null || key.isBlank()) {
+            return action.execute();
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            throw new BadRequestException();
+        }
+
+        String fullScope = resolveScope(scope);
+        String cacheKey = fullScope + ":" + key;
+        LocalDateTime now = LocalDateTime.now();
+
+        CachedResponse cached = cache.get(cacheKey);
+        if (cached != null && !cached.isExpired(now)) {
+            return cached.body();
+        }
+
+        Optional<IdempotencyKey> stored = idempotencyKeyRepository
+                .findByScopeAndIdempotencyKeyAndExpiresAtAfter(fullScope, key, now);
+        if (stored.isPresent()) {
+            return replay(cacheKey, stored.get());
+        }
+
+        IdempotencyKey reserved = reserve(fullScope, key);
+        boolean inTransaction = TransactionSynchronizationManager.isSynchronizationActive();
+        Object result;
+        try {
+            result = action.execute();
+        } catch (Exception e) {
+            if (!inTransaction) {
+                keyStore.release(reserved.getId());
+            }
+            throw e;
+        } finally {
+            if (inTransaction) {
+                registerCompletion(cacheKey, reserved.getId());
+            }
+        }
+
+        LocalDateTime expiresAt = LocalDateTime.now().plusMinutes(ttlMinutes);
+        idempotencyKeyRepository.complete(reserved.getId(), objectMapper.writeValueAsString(result), expiresAt);
+        if (inTransaction) {
+            pendingResults.put(cacheKey, new CachedResponse(result, expiresAt));
+        } else {
+            cache.put(cacheKey, new CachedResponse(result, expiresAt));
+        }
+        return result;
+    }
+
+    /**
+     * Giữ chỗ khóa; nếu khóa đã có thì phát lại kết quả hoặc báo yêu cầu đầu tiên vẫn đang xử lý.
+     * Khóa hết hạn chưa bị dọn thì xóa rồi giữ chỗ lại một lần
+     */
+    private IdempotencyKey reserve(String fullScope, String key) {
+        LocalDateTime pendingExpiresAt = LocalDateTime.now().plusMinutes(PENDING_MINUTES);
+        try {
+            return keyStore.reserve(fullScope, key, pendingExpiresAt);
+        } catch (DataIntegrityViolationException e) {
+            IdempotencyKey existing = idempotencyKeyRepository.findByScopeAndIdempotencyKey(fullScope, key)
+                    .orElseThrow(ConflictException::new);
+            if (!existing.getExpiresAt().isBefore(LocalDateTime.now())) {
+                throw new ConflictException();
+            }
+            keyStore.release(existing.getId());
+            try {
+                return keyStore.reserve(fullScope, key, pendingExpiresAt);
+            } catch (DataIntegrityViolationException retry) {
+                throw new ConflictException();
+            }
+        }
+    }
+
+    private Object replay(String cacheKey, IdempotencyKey stored) throws JsonProcessingException {
+        // Yêu cầu đầu tiên vẫn đang xử lý thì không cho yêu cầu gửi lại chạy song song
+        if (stored.getResponseBody() == null) {
+            throw new ConflictException();
+        }
+        Object body = objectMapper.readTree(stored.getResponseBody());
+        cache.put(cacheKey, new CachedResponse(body, stored.getExpiresAt()));
+        return body;
+    }
+
+    private void registerCompletion(String cacheKey, Integer reservedId) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                CachedResponse result = pendingResults.remove(cacheKey);
+                if (result != null) {
+                    cache.put(cacheKey, result);
+                }
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                pendingResults.remove(cacheKey);
+                if (status != STATUS_COMMITTED) {
+                    try {
+                        keyStore.release(reservedId);
+                    } catch (RuntimeException e) {
+                        log.warn("Không thể giải phóng Idempotency-Key {}: {}", cacheKey, e.getMessage());
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Tìm kết quả đã lưu của một khóa trực tiếp trong bảng, không qua bộ nhớ đệm.
+     * Dùng cùng với storeResponse trong giao dịch của người gọi.
+     */
+    public <T> Optional<T> findStoredResponse(String scope, String key, Class<T> type) {
+        Optional<IdempotencyKey> stored = idempotencyKeyRepository
+                .findByScopeAndIdempotencyKeyAndExpiresAtAfter(resolveScope(scope), key, LocalDateTime.now());
+        if (stored.isEmpty()) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(objectMapper.readValue(stored.get().getResponseBody(), type));
+        } catch (JsonProcessingException e) {
+            throw new InternalServerException();
+        }
+    }
+
+    /**
+     * Ghi nhận khóa trong giao dịch hiện tại: nếu giao dịch bị hoàn tác thì khóa cũng không được lưu
+     */
+    public void storeResponse(String scope, String key, Object response) {
+        try {
+            idempotencyKeyRepository.save(IdempotencyKey.builder()
+                    .scope(resolveScope(scope))
+                    .idempotencyKey(key)
+                    .responseBody(objectMapper.writeValueAsString(response))
+                    .expiresAt(LocalDateTime.now().plusMinutes(ttlMinutes))
+                    .build());
+        } catch (JsonProcessingException e) {
+            throw new InternalServerException();
+        }
+    }
+
+    private String resolveScope(String scope) {
+        return scope + ":" + JwtGuard.userPrincipal().getPersitentUser().getId();
+    }
+
+    @Scheduled(fixedRate = 3600000)
+    @Transactional
+    public void purgeExpiredKeys() {
+        LocalDateTime now = LocalDateTime.now();
+        cache.entrySet().removeIf(entry -> entry.getValue().isExpired(now));
+        int deleted = idempotencyKeyRepository.deleteExpired(now);
+        if (deleted > 0) {
+            log.info("Đã xóa {} Idempotency-Key hết hạn", deleted);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.laklu.pos.services;
+
+import com.laklu.pos.enums.ImageSize;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tạo ảnh thu nhỏ (THUMBNAIL, MEDIUM) cho ảnh tải lên để tablet không phải tải ảnh gốc vài MB cho mỗi món.
+ * Ảnh được tạo trên luồng nền riêng ngay sau khi tải lên, ghi ra file tạm rồi đổi tên nên không bao giờ
+ * phục vụ file đang ghi dở. Ảnh cũ chưa có bản thu nhỏ sẽ được tạo ở lần đầu có người xem.
+ */
+@Service
+@Slf4j
+public class ImageDerivativeService {
+
+    private static final float JPEG_QUALITY = 0.8f;
+    // Ảnh vượt quá số điểm ảnh này bị bỏ qua, tránh một file nhỏ khai báo kích thước khổng lồ làm cạn bộ nhớ JVM
+    private static final long MAX_PIXELS = 40_000_000L;
+
+    private final ExecutorService executor;
+    // Ảnh đang được xử lý, tránh tạo trùng khi nhiều máy cùng xem một ảnh cũ
+    private final Set<String> inProgress = ConcurrentHashMap.newKeySet();
+
+    public ImageDerivativeService(@Value("${app.image.derivative-threads:2}") int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "image-derivative-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Đưa ảnh vào hàng đợi tạo ảnh thu nhỏ, bỏ qua nếu ảnh đang được xử lý
+     *
+     * @param randomName Tên file ảnh gốc trong thư mục upload
+     */
+    public void generateAsync(String randomName) {
+        if (!isSafeName(randomName) || !inProgress.add(randomName)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    generate(randomName);
+                } catch (Exception e) {
+                    log.error("Không thể tạo ảnh thu nhỏ cho {}: {}", randomName, e.getMessage());
+                } finally {
+                    inProgress.remove(randomName);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inProgress.remove(randomName);
+        }
+    }
+
+    /**
+     * Đường dẫn ảnh theo kích thước, null nếu ảnh thu nhỏ chưa được tạo
+     */
+    public Path find(String randomName, ImageSize size) {
+        if (!isSafeName(randomName)) {
+            return null;
+        }
+        Path path = uploadPath().resolve(size.fileNameOf(randomName));
+        return Files.exists(path) ? path : null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void generate(String randomName) throws IOException {
+        Path original = uploadPath().resolve(randomName);
+        if (!Files.exists(original)) {
+            return;
+        }
+        int maxWidth = Arrays.stream(ImageSize.values()).mapToInt(ImageSize::getWidth).max().orElse(1);
+        BufferedImage source = read(original, maxWidth);
+        if (source == null) {
+            return;
+        }
+        for (ImageSize size : ImageSize.values()) {
+            if (size == ImageSize.ORIGINAL) {
+                continue;
+            }
+            Path target = uploadPath().resolve(size.fileNameOf(randomName));
+            Path temp = uploadPath().resolve(size.fileNameOf(randomName) + ".tmp");
+            Files.deleteIfExists(temp);
+            writeJpeg(resize(source, size.getWidth()), temp);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    /**
+     * Đọc ảnh gốc: đọc kích thước trước và bỏ qua ảnh vượt quá MAX_PIXELS, sau đó giải mã lấy mẫu thưa
+     * (subsampling) về gần chiều rộng cần dùng nên không phải giữ toàn bộ ảnh gốc trong bộ nhớ
+     *
+     * @return null nếu không phải ảnh, định dạng ImageIO không đọc được hoặc ảnh quá lớn
+     */
+    private static BufferedImage read(Path path, int maxWidth) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(path.toFile())) {
+            if (input == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > MAX_PIXELS) {
+                    log.warn("Bỏ qua ảnh {} vì quá lớn ({}x{})", path.getFileName(), width, height);
+                    return null;
+                }
+                // Bước lấy mẫu làm tròn xuống nên ảnh đọc ra không bao giờ hẹp hơn maxWidth
+                int step = Math.max(1, width / maxWidth);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Thu nhỏ ảnh về chiều rộng tối đa, giữ tỉ lệ và không phóng to ảnh nhỏ.
+     * Nền trong suốt (PNG, GIF) được phủ trắng vì JPEG không có kênh alpha
+     */
+    private static BufferedImage resize(BufferedImage source, int maxWidth) {
+        int width = Math.min(maxWidth, source.getWidth());
+        int height = Math.max(1, (int) Math.round((double) source.getHeight() * width / source.getWidth()));
+
+        BufferedImage current = source;
+        // Giảm một nửa mỗi bước cho tới gần kích thước đích để ảnh không bị răng cưa
+        while (current.getWidth() / 2 >= width) {
+            current = draw(current, current.getWidth() / 2, Math.max(1, current.getHeight() / 2));
+        }
+        return draw(current, width, height);
+    }
+
+    private static BufferedImage draw(BufferedImage source, int width, int height) {
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    private static void writeJpeg(BufferedImage image, Path path) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(JPEG_QUALITY);
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(path.toFile())) {
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    // Tên file lấy từ URL, chỉ nhận tên nằm ngay trong thư mục upload
+    private static boolean isSafeName(String randomName) {
+        return randomName != null && !randomName.contains("/") && !randomName.contains("\\") && !randomName.contains("..");
+    }
+
+    private static Path uploadPath() {
+        return Paths.get(AttachmentService.UPLOAD_DIRECTORY);
+    }
+}
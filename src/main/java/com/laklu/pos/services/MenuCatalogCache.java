@@ -0,0 +1,192 @@
+package com.laklu.pos.services;
+
+import com.laklu.pos.dataObjects.response.CategoryResponse;
+import com.laklu.pos.dataObjects.response.DishResponse;
+import com.laklu.pos.dataObjects.response.MenuItemWithDetailsResponse;
+import com.laklu.pos.dataObjects.response.PageResponse;
+import com.laklu.pos.entities.Dish;
+import com.laklu.pos.entities.MenuItem;
+import com.laklu.pos.repositories.DishRepository;
+import com.laklu.pos.repositories.MenuItemRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Snapshot chỉ đọc của các thực đơn đang bật (món, món ăn, danh mục, đường dẫn ảnh) nằm trong bộ nhớ.
+ * Mỗi snapshot được dựng bằng một câu truy vấn và dùng lại cho mọi lượt đọc cho tới khi có thay đổi;
+ * mỗi lần thay đổi (MenuCatalogChangedEvent) tăng version nên snapshot cũ bị bỏ và ETag cũ không còn khớp.
+ * Mỗi snapshot kèm một chỉ mục tên món (DishNameIndex) để tìm món không dấu mà không truy vấn DB,
+ * ngoài ra còn một chỉ mục tên của toàn bộ món ăn dùng cho tìm kiếm món ăn ngoài thực đơn.
+ */
+@Service
+@RequiredArgsConstructor
+public class MenuCatalogCache {
+
+    private final MenuItemRepository menuItemRepository;
+    private final DishRepository dishRepository;
+    private final AttachmentService attachmentService;
+
+    // Phân biệt ETag giữa các lần khởi động vì version bắt đầu lại từ 0
+    private final long epoch = System.currentTimeMillis();
+    private final AtomicLong version = new AtomicLong();
+    private final Map<Integer, MenuSnapshot> snapshots = new ConcurrentHashMap<>();
+    private volatile DishIndex dishIndex;
+
+    private record DishIndex(long version, DishNameIndex<Integer> index) {
+    }
+
+    private record Entry(MenuItemWithDetailsResponse item, Long categoryId, boolean active) {
+    }
+
+    /**
+     * Snapshot của một thực đơn, các món đã sắp theo tên món ăn
+     */
+    public static final class MenuSnapshot {
+        private final long version;
+        private final String etag;
+        private final List<Entry> entries;
+        private final Set<Long> categoryIds;
+        // Khóa là vị trí của món trong entries
+        private final DishNameIndex<Integer> nameIndex;
+
+        private MenuSnapshot(long version, String etag, List<Entry> entries) {
+            this.version = version;
+            this.etag = etag;
+            this.entries = List.copyOf(entries);
+            this.categoryIds = entries.stream().map(Entry::categoryId).collect(Collectors.toUnmodifiableSet());
+            this.nameIndex = new DishNameIndex<>(
+                    IntStream.range(0, entries.size()).boxed().toList(),
+                    entries.stream().map(entry -> entry.item().getDish().getName()).toList());
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public boolean hasCategory(Long categoryId) {
+            return categoryIds.contains(categoryId);
+        }
+
+        /**
+         * Lọc và phân trang các món trong snapshot
+         *
+         * @param categoryId Lọc theo danh mục, null thì không lọc
+         * @param activeOnly Lọc theo trạng thái active, null thì không lọc
+         * @param dishName Tìm theo tên món ăn (không phân biệt dấu, chịu lỗi gõ), kết quả xếp theo mức độ khớp.
+         *                 null hoặc rỗng thì không lọc và giữ thứ tự theo tên
+         */
+        public PageResponse<MenuItemWithDetailsResponse> page(Long categoryId, Boolean activeOnly, String dishName, int page, int size) {
+            Stream<Entry> candidates = dishName == null || dishName.isBlank()
+                    ? entries.stream()
+                    : nameIndex.search(dishName).stream().map(entries::get);
+            List<MenuItemWithDetailsResponse> matched = candidates
+                    .filter(entry -> categoryId == null || categoryId.equals(entry.categoryId()))
+                    .filter(entry -> activeOnly == null || activeOnly == entry.active())
+                    .map(Entry::item)
+                    .toList();
+
+            PageRequest pageable = PageRequest.of(page, size);
+            int from = (int) Math.min(pageable.getOffset(), matched.size());
+            int to = Math.min(from + size, matched.size());
+            List<MenuItemWithDetailsResponse> content = matched.subList(from, to);
+            return PageResponse.fromPage(new PageImpl<>(content, pageable, matched.size()), content);
+        }
+    }
+
+    /**
+     * ETag của toàn bộ danh mục thực đơn (danh sách thực đơn đang bật, món, giá...), đổi sau mỗi thay đổi đã commit.
+     * Client dùng để biết khi nào cần tải lại, ví dụ khi chuyển thực đơn trưa sang tối
+     */
+    public String getCatalogEtag() {
+        return "\"menus-" + epoch + "-" + version.get() + "\"";
+    }
+
+    /**
+     * Lấy snapshot của thực đơn, dựng lại nếu chưa có hoặc đã cũ
+     */
+    public MenuSnapshot getSnapshot(Integer menuId) {
+        long current = version.get();
+        MenuSnapshot snapshot = snapshots.get(menuId);
+        if (snapshot != null && snapshot.version == current) {
+            return snapshot;
+        }
+
+        MenuSnapshot built = build(menuId, current);
+        // Có thay đổi trong lúc dựng thì không lưu lại, lượt đọc sau sẽ dựng với dữ liệu mới
+        if (version.get() == current) {
+            snapshots.put(menuId, built);
+        }
+        return built;
+    }
+
+    /**
+     * Tìm món ăn (kể cả món không nằm trong thực đơn nào) theo tên, không phân biệt dấu và chịu lỗi gõ
+     *
+     * @return ID món ăn, món khớp tốt hơn đứng trước
+     */
+    public List<Integer> searchDishIds(String name) {
+        long current = version.get();
+        DishIndex cached = this.dishIndex;
+        if (cached == null || cached.version() != current) {
+            List<Integer> ids = new ArrayList<>();
+            List<String> names = new ArrayList<>();
+            for (Object[] row : dishRepository.findIdAndNames()) {
+                ids.add((Integer) row[0]);
+                names.add((String) row[1]);
+            }
+            cached = new DishIndex(current, new DishNameIndex<>(ids, names));
+            if (version.get() == current) {
+                this.dishIndex = cached;
+            }
+        }
+        return cached.index().search(name);
+    }
+
+    /**
+     * Bỏ toàn bộ snapshot sau khi giao dịch thay đổi thực đơn commit (hoặc ngay lập tức nếu không có giao dịch)
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMenuCatalogChanged(MenuCatalogChangedEvent event) {
+        version.incrementAndGet();
+        snapshots.clear();
+        dishIndex = null;
+    }
+
+    private MenuSnapshot build(Integer menuId, long snapshotVersion) {
+        List<Entry> entries = menuItemRepository.findCatalogByMenuId(menuId).stream()
+                .sorted(Comparator.comparing((MenuItem menuItem) -> menuItem.getDish().getName(), String.CASE_INSENSITIVE_ORDER)
+                        .thenComparing(MenuItem::getId))
+                .map(this::toEntry)
+                .toList();
+        String etag = "\"menu-" + menuId + "-" + epoch + "-" + snapshotVersion + "\"";
+        return new MenuSnapshot(snapshotVersion, etag, entries);
+    }
+
+    private Entry toEntry(MenuItem menuItem) {
+        Dish dish = menuItem.getDish();
+        DishResponse dishResponse = DishResponse.fromEntity(dish);
+        dishResponse.setImages(dish.getAttachments().stream()
+                .map(attachmentService::toPersistAttachmentResponse)
+                .collect(Collectors.toList()));
+        CategoryResponse categoryResponse = CategoryResponse.fromEntity(menuItem.getCategory());
+
+        return new Entry(
+                MenuItemWithDetailsResponse.fromEntity(menuItem, dishResponse, categoryResponse),
+                menuItem.getCategory().getId(),
+                Boolean.TRUE.equals(menuItem.getIsActive()));
+    }
+}
@@ -0,0 +1,8 @@
+package com.laklu.pos.services;
+
+/**
+ * Phát ra khi thực đơn, món trong thực đơn, món ăn (kể cả ảnh) hoặc danh mục thay đổi,
+ * để MenuCatalogCache bỏ các snapshot thực đơn đang giữ
+ */
+public record MenuCatalogChangedEvent() {
+}
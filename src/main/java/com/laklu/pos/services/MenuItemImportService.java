@@ -0,0 +1,164 @@
+package com.laklu.pos.services;
+
+import com.laklu.pos.dataObjects.request.MenuItemImportRow;
+import com.laklu.pos.dataObjects.response.MenuItemImportRowResult;
+import com.laklu.pos.entities.Menu;
+import com.laklu.pos.enums.TrackedResourceType;
+import com.laklu.pos.repositories.CategoryRepository;
+import com.laklu.pos.repositories.DishRepository;
+import com.laklu.pos.repositories.MenuItemRepository;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Nhập món vào thực đơn hàng loạt (thêm món mới, đổi giá theo mùa).
+ * Món ăn, danh mục và các món đã có trong thực đơn được nạp mỗi loại bằng một câu truy vấn,
+ * kiểm tra trùng và hợp lệ làm trong bộ nhớ, sau đó ghi bằng JDBC batch thay vì lưu từng entity.
+ * Vì không đi qua entity nên @PrePersist và ActivityLogListener không chạy:
+ * thời gian tạo/cập nhật được gán trực tiếp và cả lượt nhập chỉ ghi một dòng nhật ký.
+ */
+@Service
+@RequiredArgsConstructor
+public class MenuItemImportService {
+
+    private static final BigDecimal MAX_PRICE = BigDecimal.valueOf(2_000_000);
+
+    private static final String INSERT_SQL = "INSERT INTO menu_item " +
+            "(dish_id, menu_id, category_id, price, is_active, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE_SQL = "UPDATE menu_item SET price = ?, " +
+            "category_id = COALESCE(?, category_id), is_active = COALESCE(?, is_active), updated_at = ? WHERE id = ?";
+
+    private final MenuItemRepository menuItemRepository;
+    private final DishRepository dishRepository;
+    private final CategoryRepository categoryRepository;
+    private final OrderItemService orderItemService;
+    private final ActivityLogService activityLogService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final JdbcTemplate jdbcTemplate;
+
+    private record ExistingItem(Integer id, boolean active) {
+    }
+
+    /**
+     * Nhập các dòng vào thực đơn. Dòng không hợp lệ được bỏ qua và trả về FAILED kèm lý do,
+     * các dòng hợp lệ vẫn được ghi.
+     *
+     * @return Kết quả theo thứ tự các dòng gửi lên
+     */
+    @Transactional
+    public List<MenuItemImportRowResult> importMenuItems(Menu menu, List<MenuItemImportRow> rows) {
+        Map<Integer, ExistingItem> existingByDish = loadExistingItems(menu.getId());
+        List<Integer> requestedDishIds = rows.stream()
+                .map(MenuItemImportRow::getDishId).filter(Objects::nonNull).distinct().toList();
+        List<Long> requestedCategoryIds = rows.stream()
+                .map(MenuItemImportRow::getCategoryId).filter(Objects::nonNull).distinct().toList();
+        Set<Integer> dishIds = requestedDishIds.isEmpty()
+                ? Set.of() : new HashSet<>(dishRepository.findExistingIds(requestedDishIds));
+        Set<Long> categoryIds = requestedCategoryIds.isEmpty()
+                ? Set.of() : new HashSet<>(categoryRepository.findActiveIds(requestedCategoryIds));
+
+        LocalDateTime now = LocalDateTime.now();
+        List<MenuItemImportRowResult> results = new ArrayList<>(rows.size());
+        List<Object[]> inserts = new ArrayList<>();
+        List<Object[]> updates = new ArrayList<>();
+        List<Integer> deactivatedIds = new ArrayList<>();
+        Set<Integer> seenDishIds = new HashSet<>();
+
+        for (int i = 0; i < rows.size(); i++) {
+            MenuItemImportRow row = rows.get(i);
+            MenuItemImportRowResult result = MenuItemImportRowResult.builder()
+                    .index(i)
+                    .dishId(row.getDishId())
+                    .build();
+            results.add(result);
+
+            ExistingItem existing = row.getDishId() == null ? null : existingByDish.get(row.getDishId());
+            String error = validate(row, existing, dishIds, categoryIds, seenDishIds);
+            if (error != null) {
+                result.setResult(MenuItemImportRowResult.FAILED);
+                result.setError(error);
+                continue;
+            }
+
+            if (existing == null) {
+                boolean active = !Boolean.FALSE.equals(row.getIsActive());
+                inserts.add(new Object[]{row.getDishId(), menu.getId(), row.getCategoryId(), row.getPrice(), active, now, now});
+                result.setResult(MenuItemImportRowResult.CREATED);
+            } else {
+                updates.add(new Object[]{row.getPrice(), row.getCategoryId(), row.getIsActive(), now, existing.id()});
+                if (existing.active() && Boolean.FALSE.equals(row.getIsActive())) {
+                    deactivatedIds.add(existing.id());
+                }
+                result.setResult(MenuItemImportRowResult.UPDATED);
+                result.setMenuItemId(existing.id());
+            }
+        }
+
+        if (inserts.isEmpty() && updates.isEmpty()) {
+            return results;
+        }
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SQL, inserts);
+            // Lấy ID của các món vừa thêm bằng một câu truy vấn thay vì đọc generated key từng dòng
+            Map<Integer, ExistingItem> created = loadExistingItems(menu.getId());
+            results.stream()
+                    .filter(result -> MenuItemImportRowResult.CREATED.equals(result.getResult()))
+                    .forEach(result -> result.setMenuItemId(created.get(result.getDishId()).id()));
+        }
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_SQL, updates);
+        }
+
+        // Giống khi tắt từng món: hủy các OrderItem đang chờ của món bị vô hiệu hóa
+        for (Integer menuItemId : deactivatedIds) {
+            orderItemService.cancelPendingOrderItemsByMenuItem(menuItemRepository.getReferenceById(menuItemId));
+        }
+
+        activityLogService.logActivity(
+                menu,
+                TrackedResourceType.Action.UPDATE,
+                String.valueOf(menu.getId()),
+                TrackedResourceType.MENUITEM,
+                String.format("Nhập hàng loạt vào thực đơn '%s': thêm %d món, cập nhật %d món",
+                        menu.getName(), inserts.size(), updates.size()));
+        eventPublisher.publishEvent(new MenuCatalogChangedEvent());
+        return results;
+    }
+
+    private String validate(MenuItemImportRow row, ExistingItem existing, Set<Integer> dishIds, Set<Long> categoryIds, Set<Integer> seenDishIds) {
+        if (row.getDishId() == null || !dishIds.contains(row.getDishId())) {
+            return "Món ăn không tồn tại";
+        }
+        if (!seenDishIds.add(row.getDishId())) {
+            return "Món ăn bị lặp trong danh sách nhập";
+        }
+        if (row.getPrice() == null || row.getPrice().signum() < 0) {
+            return "Giá không hợp lệ";
+        }
+        if (row.getPrice().compareTo(MAX_PRICE) > 0) {
+            return "Giá phải nhỏ hơn hoặc bằng 2 triệu";
+        }
+        if (row.getCategoryId() != null && !categoryIds.contains(row.getCategoryId())) {
+            return "Danh mục không tồn tại";
+        }
+        if (existing == null && row.getCategoryId() == null) {
+            return "Danh mục không được để trống khi thêm món mới";
+        }
+        return null;
+    }
+
+    private Map<Integer, ExistingItem> loadExistingItems(Integer menuId) {
+        Map<Integer, ExistingItem> items = new HashMap<>();
+        for (Object[] row : menuItemRepository.findDishAndIdsByMenuId(menuId)) {
+            items.put((Integer) row[0], new ExistingItem((Integer) row[1], Boolean.TRUE.equals(row[2])));
+        }
+        return items;
+    }
+}
@@ -6,9 +6,13 @@ import com.laklu.pos.entities.Menu;
 import com.laklu.pos.entities.MenuItem;
 import com.laklu.pos.exceptions.httpExceptions.NotFoundException;
 import com.laklu.pos.repositories.MenuItemRepository;
+import com.laklu.pos.repositories.MenuItemSpecifications;
 import lombok.AllArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 
 import java.util.Arrays;
@@ -20,6 +24,7 @@ import java.util.Optional;
 public class MenuItemService {
 
     private final MenuItemRepository menuItemRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     public List<MenuItem> getAll() {
         return menuItemRepository.findAll();
@@ -30,15 +35,20 @@ public class MenuItemService {
     }
 
     public MenuItem createMenuItem(MenuItem menuItem) {
-        return menuItemRepository.save(menuItem);
+        MenuItem savedMenuItem = menuItemRepository.save(menuItem);
+        eventPublisher.publishEvent(new MenuCatalogChangedEvent());
+        return savedMenuItem;
     }
 
     public MenuItem updateMenuItem(MenuItem menuItem) {
-        return menuItemRepository.save(menuItem);
+        MenuItem savedMenuItem = menuItemRepository.save(menuItem);
+        eventPublisher.publishEvent(new MenuCatalogChangedEvent());
+        return savedMenuItem;
     }
 
     public void deleteMenuItem(MenuItem menuItem) {
         menuItemRepository.delete(menuItem);
+        eventPublisher.publishEvent(new MenuCatalogChangedEvent());
     }
 
 
@@ -47,6 +57,13 @@ public class MenuItemService {
                 .orElseThrow(NotFoundException::new);
     }
 
+    /**
+     * Tham chiếu tới MenuItem mà không truy vấn DB, dùng khi đã có bản chụp của món (MenuItemSnapshotCache)
+     */
+    public MenuItem getReference(Integer id) {
+        return menuItemRepository.getReferenceById(id);
+    }
+
     public List<MenuItem>  findAllByIds(List<Integer> menuItemIds) {
         return menuItemRepository.findAllById(menuItemIds);
     }
@@ -60,180 +77,38 @@ public class MenuItemService {
     public boolean existsByMenuAndDish(Menu menu, Dish dish) {
         return menuItemRepository.existsByMenuAndDish(menu, dish);
     }
-    
-    /**
-     * Lấy danh sách các MenuItem theo Menu
-     * @param menu Menu cần tìm
-     * @return Danh sách các MenuItem thuộc menu
-     */
-    public List<MenuItem> findByMenu(Menu menu) {
-        return menuItemRepository.findByMenu(menu);
-    }
-    
-    /**
-     * Lấy danh sách các MenuItem theo Menu với trạng thái active
-     * @param menu Menu cần tìm
-     * @param isActive Trạng thái active cần tìm
-     * @return Danh sách các MenuItem thuộc menu với trạng thái active
-     */
-    public List<MenuItem> findByMenuAndIsActive(Menu menu, Boolean isActive) {
-        return menuItemRepository.findByMenuAndIsActive(menu, isActive);
-    }
-    
-    /**
-     * Lấy danh sách các MenuItem theo Menu và Category
-     * @param menu Menu cần tìm
-     * @param category Category cần tìm
-     * @return Danh sách các MenuItem thuộc menu và category
-     */
-    public List<MenuItem> findByMenuAndCategory(Menu menu, Category category) {
-        return menuItemRepository.findByMenuAndCategory(menu, category);
-    }
-    
-    /**
-     * Lấy danh sách các MenuItem theo Menu, Category và trạng thái active
-     * @param menu Menu cần tìm
-     * @param category Category cần tìm
-     * @param isActive Trạng thái active cần tìm
-     * @return Danh sách các MenuItem thuộc menu và category với trạng thái active
-     */
-    public List<MenuItem> findByMenuAndCategoryAndIsActive(Menu menu, Category category, Boolean isActive) {
-        return menuItemRepository.findByMenuAndCategoryAndIsActive(menu, category, isActive);
-    }
-    
-    /**
-     * Lấy danh sách các MenuItem theo Menu với phân trang
-     * @param menu Menu cần tìm
-     * @param pageable Thông tin phân trang
-     * @return Page chứa danh sách MenuItem thuộc menu với phân trang
-     */
-    public Page<MenuItem> findByMenu(Menu menu, Pageable pageable) {
-        return menuItemRepository.findByMenu(menu, pageable);
-    }
-    
-    /**
-     * Lấy danh sách các MenuItem theo Menu với trạng thái active với phân trang
-     * @param menu Menu cần tìm
-     * @param isActive Trạng thái active cần tìm
-     * @param pageable Thông tin phân trang
-     * @return Page chứa danh sách MenuItem thuộc menu với trạng thái active với phân trang
-     */
-    public Page<MenuItem> findByMenuAndIsActive(Menu menu, Boolean isActive, Pageable pageable) {
-        return menuItemRepository.findByMenuAndIsActive(menu, isActive, pageable);
-    }
-    
-    /**
-     * Lấy danh sách các MenuItem theo Menu và Category với phân trang
-     * @param menu Menu cần tìm
-     * @param category Category cần tìm
-     * @param pageable Thông tin phân trang
-     * @return Page chứa danh sách MenuItem thuộc menu và category với phân trang
-     */
-    public Page<MenuItem> findByMenuAndCategory(Menu menu, Category category, Pageable pageable) {
-        return menuItemRepository.findByMenuAndCategory(menu, category, pageable);
-    }
-    
-    /**
-     * Lấy danh sách các MenuItem theo Menu, Category và trạng thái active với phân trang
-     * @param menu Menu cần tìm
-     * @param category Category cần tìm
-     * @param isActive Trạng thái active cần tìm
-     * @param pageable Thông tin phân trang
-     * @return Page chứa danh sách MenuItem thuộc menu và category với trạng thái active với phân trang
-     */
-    public Page<MenuItem> findByMenuAndCategoryAndIsActive(Menu menu, Category category, Boolean isActive, Pageable pageable) {
-        return menuItemRepository.findByMenuAndCategoryAndIsActive(menu, category, isActive, pageable);
-    }
-    
-    /**
-     * Tìm kiếm các MenuItem theo Menu và tên món ăn (Dish)
-     * @param menu Menu cần tìm
-     * @param dishName Tên món ăn cần tìm
-     * @return Danh sách các MenuItem thuộc menu có tên món ăn chứa dishName
-     */
-    public List<MenuItem> findByMenuAndDishNameContainingIgnoreCase(Menu menu, String dishName) {
-        return menuItemRepository.findByMenuAndDishNameContainingIgnoreCase(menu, dishName);
-    }
-    
-    /**
-     * Tìm kiếm các MenuItem theo Menu và tên món ăn (Dish) có phân trang
-     * @param menu Menu cần tìm
-     * @param dishName Tên món ăn cần tìm
-     * @param pageable Thông tin phân trang
-     * @return Page chứa danh sách MenuItem thuộc menu có tên món ăn chứa dishName với phân trang
-     */
-    public Page<MenuItem> findByMenuAndDishNameContainingIgnoreCase(Menu menu, String dishName, Pageable pageable) {
-        return menuItemRepository.findByMenuAndDishNameContainingIgnoreCase(menu, dishName, pageable);
-    }
-    
-    /**
-     * Tìm kiếm các MenuItem theo Menu, Category và tên món ăn (Dish)
-     * @param menu Menu cần tìm
-     * @param category Category cần tìm
-     * @param dishName Tên món ăn cần tìm
-     * @return Danh sách các MenuItem thuộc menu và category có tên món ăn chứa dishName
-     */
-    public List<MenuItem> findByMenuAndCategoryAndDishNameContainingIgnoreCase(Menu menu, Category category, String dishName) {
-        return menuItemRepository.findByMenuAndCategoryAndDishNameContainingIgnoreCase(menu, category, dishName);
-    }
-    
-    /**
-     * Tìm kiếm các MenuItem theo Menu, Category và tên món ăn (Dish) có phân trang
-     * @param menu Menu cần tìm
-     * @param category Category cần tìm
-     * @param dishName Tên món ăn cần tìm
-     * @param pageable Thông tin phân trang
-     * @return Page chứa danh sách MenuItem thuộc menu và category có tên món ăn chứa dishName với phân trang
-     */
-    public Page<MenuItem> findByMenuAndCategoryAndDishNameContainingIgnoreCase(Menu menu, Category category, String dishName, Pageable pageable) {
-        return menuItemRepository.findByMenuAndCategoryAndDishNameContainingIgnoreCase(menu, category, dishName, pageable);
-    }
-    
-    /**
-     * Tìm kiếm các MenuItem theo Menu, trạng thái active và tên món ăn (Dish)
-     * @param menu Menu cần tìm
-     * @param isActive Trạng thái active cần tìm
-     * @param dishName Tên món ăn cần tìm
-     * @return Danh sách các MenuItem thuộc menu có trạng thái active và tên món ăn chứa dishName
-     */
-    public List<MenuItem> findByMenuAndIsActiveAndDishNameContainingIgnoreCase(Menu menu, Boolean isActive, String dishName) {
-        return menuItemRepository.findByMenuAndIsActiveAndDishNameContainingIgnoreCase(menu, isActive, dishName);
-    }
-    
+
     /**
-     * Tìm kiếm các MenuItem theo Menu, trạng thái active và tên món ăn (Dish) có phân trang
+     * Tìm các món trong thực đơn theo các điều kiện tùy chọn, dish và category được nạp trong cùng câu truy vấn
      * @param menu Menu cần tìm
-     * @param isActive Trạng thái active cần tìm
-     * @param dishName Tên món ăn cần tìm
+     * @param category Category cần tìm, null thì không lọc
+     * @param isActive Trạng thái active cần tìm, null thì không lọc
+     * @param dishName Tên món ăn cần tìm (chứa, không phân biệt hoa thường), null thì không lọc
      * @param pageable Thông tin phân trang
-     * @return Page chứa danh sách MenuItem thuộc menu có trạng thái active và tên món ăn chứa dishName với phân trang
+     * @return Page chứa danh sách MenuItem thỏa mãn các điều kiện
      */
-    public Page<MenuItem> findByMenuAndIsActiveAndDishNameContainingIgnoreCase(Menu menu, Boolean isActive, String dishName, Pageable pageable) {
-        return menuItemRepository.findByMenuAndIsActiveAndDishNameContainingIgnoreCase(menu, isActive, dishName, pageable);
+    public Page<MenuItem> search(Menu menu, Category category, Boolean isActive, String dishName, Pageable pageable) {
+        return menuItemRepository.findAll(buildSpecification(menu, category, isActive, dishName), pageable);
     }
-    
+
     /**
-     * Tìm kiếm các MenuItem theo Menu, Category, trạng thái active và tên món ăn (Dish)
-     * @param menu Menu cần tìm
-     * @param category Category cần tìm
-     * @param isActive Trạng thái active cần tìm
-     * @param dishName Tên món ăn cần tìm
-     * @return Danh sách các MenuItem thuộc menu, category có trạng thái active và tên món ăn chứa dishName
+     * Như search nhưng không phân trang
      */
-    public List<MenuItem> findByMenuAndCategoryAndIsActiveAndDishNameContainingIgnoreCase(Menu menu, Category category, Boolean isActive, String dishName) {
-        return menuItemRepository.findByMenuAndCategoryAndIsActiveAndDishNameContainingIgnoreCase(menu, category, isActive, dishName);
+    public List<MenuItem> search(Menu menu, Category category, Boolean isActive, String dishName, Sort sort) {
+        return menuItemRepository.findAll(buildSpecification(menu, category, isActive, dishName), sort);
     }
-    
-    /**
-     * Tìm kiếm các MenuItem theo Menu, Category, trạng thái active và tên món ăn (Dish) có phân trang
-     * @param menu Menu cần tìm
-     * @param category Category cần tìm
-     * @param isActive Trạng thái active cần tìm
-     * @param dishName Tên món ăn cần tìm
-     * @param pageable Thông tin phân trang
-     * @return Page chứa danh sách MenuItem thuộc menu, category có trạng thái active và tên món ăn chứa dishName với phân trang
-     */
-    public Page<MenuItem> findByMenuAndCategoryAndIsActiveAndDishNameContainingIgnoreCase(Menu menu, Category category, Boolean isActive, String dishName, Pageable pageable) {
-        return menuItemRepository.findByMenuAndCategoryAndIsActiveAndDishNameContainingIgnoreCase(menu, category, isActive, dishName, pageable);
+
+    private Specification<MenuItem> buildSpecification(Menu menu, Category category, Boolean isActive, String dishName) {
+        Specification<MenuItem> specification = MenuItemSpecifications.inMenu(menu);
+        if (category != null) {
+            specification = specification.and(MenuItemSpecifications.inCategory(category));
+        }
+        if (isActive != null) {
+            specification = specification.and(MenuItemSpecifications.isActive(isActive));
+        }
+        if (dishName != null) {
+            specification = specification.and(MenuItemSpecifications.dishNameContains(dishName));
+        }
+        return specification.and(MenuItemSpecifications.fetchDetails());
     }
 }
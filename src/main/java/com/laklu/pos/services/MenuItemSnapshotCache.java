@@ -0,0 +1,127 @@
+package com.laklu.pos.services;
+
+import com.laklu.pos.dataObjects.MenuItemSnapshot;
+import com.laklu.pos.entities.Menu;
+import com.laklu.pos.exceptions.httpExceptions.NotFoundException;
+import com.laklu.pos.repositories.MenuItemRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bộ nhớ đệm đọc xuyên (read-through) các món trong thực đơn cho luồng gọi món, tính tiền và màn hình bếp.
+ * Lần đọc đầu nạp toàn bộ món của thực đơn đang bật bằng một câu truy vấn, món ngoài thực đơn đang bật
+ * được nạp khi cần và gộp vào bảng. Bảng là mảng ID đã sắp xếp (tra bằng tìm kiếm nhị phân trên int)
+ * cùng mảng bản chụp, không đổi sau khi dựng nên đọc không cần khóa; mỗi thay đổi thực đơn
+ * (MenuCatalogChangedEvent) tăng version và bỏ bảng cũ.
+ */
+@Service
+@RequiredArgsConstructor
+public class MenuItemSnapshotCache {
+
+    private final MenuItemRepository menuItemRepository;
+
+    private final AtomicLong version = new AtomicLong();
+    private volatile SnapshotTable table;
+
+    private static final class SnapshotTable {
+        private final long version;
+        private final int[] ids;
+        private final MenuItemSnapshot[] items;
+
+        private SnapshotTable(long version, Collection<MenuItemSnapshot> snapshots) {
+            MenuItemSnapshot[] sorted = snapshots.toArray(new MenuItemSnapshot[0]);
+            Arrays.sort(sorted, Comparator.comparingInt(MenuItemSnapshot::id));
+            this.version = version;
+            this.items = sorted;
+            this.ids = Arrays.stream(sorted).mapToInt(MenuItemSnapshot::id).toArray();
+        }
+
+        private MenuItemSnapshot get(int id) {
+            int position = Arrays.binarySearch(ids, id);
+            return position >= 0 ? items[position] : null;
+        }
+
+        private SnapshotTable with(Collection<MenuItemSnapshot> added) {
+            Map<Integer, MenuItemSnapshot> merged = new HashMap<>();
+            for (MenuItemSnapshot item : items) {
+                merged.put(item.id(), item);
+            }
+            for (MenuItemSnapshot item : added) {
+                merged.put(item.id(), item);
+            }
+            return new SnapshotTable(version, merged.values());
+        }
+    }
+
+    public Optional<MenuItemSnapshot> find(int id) {
+        return Optional.ofNullable(findAll(List.of(id)).get(id));
+    }
+
+    public MenuItemSnapshot findOrFail(int id) {
+        return find(id).orElseThrow(NotFoundException::new);
+    }
+
+    /**
+     * Lấy bản chụp của nhiều món, các món chưa có trong bộ nhớ đệm được nạp chung một câu truy vấn
+     *
+     * @return ID món -> bản chụp, món không tồn tại thì không có trong kết quả
+     */
+    public Map<Integer, MenuItemSnapshot> findAll(Collection<Integer> ids) {
+        long current = version.get();
+        SnapshotTable snapshotTable = currentTable(current);
+
+        Map<Integer, MenuItemSnapshot> result = new HashMap<>();
+        Set<Integer> missing = new HashSet<>();
+        for (Integer id : ids) {
+            if (id == null) {
+                continue;
+            }
+            MenuItemSnapshot snapshot = snapshotTable.get(id);
+            if (snapshot != null) {
+                result.put(id, snapshot);
+            } else {
+                missing.add(id);
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        List<MenuItemSnapshot> loaded = menuItemRepository.findSnapshotsByIdIn(missing);
+        loaded.forEach(snapshot -> result.put(snapshot.id(), snapshot));
+        if (!loaded.isEmpty()) {
+            publish(current, snapshotTable.with(loaded));
+        }
+        return result;
+    }
+
+    /**
+     * Bỏ bảng sau khi giao dịch thay đổi thực đơn, món hoặc món ăn commit (hoặc ngay lập tức nếu không có giao dịch)
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMenuCatalogChanged(MenuCatalogChangedEvent event) {
+        version.incrementAndGet();
+        table = null;
+    }
+
+    private SnapshotTable currentTable(long current) {
+        SnapshotTable cached = this.table;
+        if (cached != null && cached.version == current) {
+            return cached;
+        }
+        SnapshotTable built = new SnapshotTable(current, menuItemRepository.findSnapshotsByMenuStatus(Menu.MenuStatus.ENABLE));
+        publish(current, built);
+        return built;
+    }
+
+    private void publish(long current, SnapshotTable built) {
+        // Có thay đổi trong lúc nạp thì không lưu lại, lượt đọc sau sẽ nạp dữ liệu mới
+        if (version.get() == current) {
+            this.table = built;
+        }
+    }
+}
@@ -5,9 +5,11 @@ import com.laklu.pos.exceptions.httpExceptions.NotFoundException;
 import com.laklu.pos.repositories.MenuRepository;
 import com.laklu.pos.validator.MenuNameMustBeUnique;
 import lombok.AllArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,6 +19,7 @@ public class MenuService {
 
     private final MenuRepository menuRepository;
     private final OrderItemService orderItemService;
+    private final ApplicationEventPublisher eventPublisher;
 
     public List<Menu> getAll() {
         return menuRepository.findAll();
@@ -35,20 +38,42 @@ public class MenuService {
         if (menu.getStatus() == null) {
             menu.setStatus(Menu.MenuStatus.ENABLE);
         }
-        return menuRepository.save(menu);
+        Menu savedMenu = menuRepository.save(menu);
+        eventPublisher.publishEvent(new MenuCatalogChangedEvent());
+        return savedMenu;
     }
 
     public Menu updateMenu(Menu menu) {
-        return menuRepository.save(menu);
+        Menu savedMenu = menuRepository.save(menu);
+        eventPublisher.publishEvent(new MenuCatalogChangedEvent());
+        return savedMenu;
     }
 
+    /**
+     * Tắt toàn bộ thực đơn bằng một câu UPDATE thay vì nạp và lưu từng thực đơn
+     */
     @Transactional
     public void disableAllMenus() {
-        List<Menu> menus = menuRepository.findAll();
-        for (Menu menu : menus) {
-            menu.setStatus(Menu.MenuStatus.DISABLE);
+        menuRepository.disableAll(Menu.MenuStatus.DISABLE, LocalDateTime.now());
+        eventPublisher.publishEvent(new MenuCatalogChangedEvent());
+    }
+
+    /**
+     * Chuyển thực đơn đang bật sang thực đơn được chọn (ví dụ đổi từ thực đơn trưa sang tối).
+     * Tắt các thực đơn khác và bật thực đơn này trong cùng một câu UPDATE, sau khi commit version danh mục
+     * được tăng nên snapshot và ETag của mọi máy đều đổi cùng lúc.
+     * Persistence context bị xóa sau câu UPDATE nên menu truyền vào được cập nhật trạng thái trực tiếp
+     *
+     * @return true nếu có thực đơn đổi trạng thái
+     */
+    @Transactional
+    public boolean activateMenu(Menu menu) {
+        int changed = menuRepository.activateOnly(menu.getId(), Menu.MenuStatus.ENABLE, Menu.MenuStatus.DISABLE, LocalDateTime.now());
+        menu.setStatus(Menu.MenuStatus.ENABLE);
+        if (changed > 0) {
+            eventPublisher.publishEvent(new MenuCatalogChangedEvent());
         }
-        menuRepository.saveAll(menus);
+        return changed > 0;
     }
 
     public Menu findOrFail(Integer id) {
@@ -57,6 +82,7 @@ public class MenuService {
 
     public void deleteMenu(Menu menu) {
         menuRepository.delete(menu);
+        eventPublisher.publishEvent(new MenuCatalogChangedEvent());
     }
 
     public Optional<Menu> findByName(String name) {
@@ -1,5 +1,6 @@
 package com.laklu.pos.services;
 
+import com.laklu.pos.dataObjects.MenuItemSnapshot;
 import com.laklu.pos.dataObjects.request.NewOrderItemRequest;
 import com.laklu.pos.dataObjects.request.UpdateOrderItemQuantity;
 import com.laklu.pos.dataObjects.request.UpdateStatusOrderItemRequest;
@@ -20,9 +21,11 @@ import jakarta.transaction.Transactional;
 import lombok.AllArgsConstructor;
 import org.springframework.stereotype.Service;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 @AllArgsConstructor
@@ -30,6 +33,7 @@ public class OrderItemService {
 
     private final OrderItemRepository orderItemRepository;
     private final MenuItemService menuItemService;
+    private final MenuItemSnapshotCache menuItemSnapshotCache;
     private final ActivityLogService activityLogService;
     private final ProfileService profileService;
     private final OrderRepository orderRepository;
@@ -39,9 +43,14 @@ public class OrderItemService {
         orderItemRepository.saveAll(orderItems);
     }
 
-    public void updateOrderItemsStatus(List<OrderItem> orderItems) {
-        orderItems.forEach(item -> item.setUpdatedAt(LocalDateTime.now()));
-        orderItemRepository.saveAll(orderItems);
+    /**
+     * Hủy toàn bộ món thuộc các đơn hàng bằng một câu lệnh UPDATE duy nhất
+     * @param orderIds Danh sách ID đơn hàng
+     * @return Số món bị hủy
+     */
+    @Transactional
+    public int cancelAllByOrderIds(List<Integer> orderIds) {
+        return orderItemRepository.updateStatusByOrderIds(orderIds, OrderItemStatus.CANCELLED, LocalDateTime.now());
     }
 
     public OrderItem findOrFail(Integer id) {
@@ -54,25 +63,36 @@ public class OrderItemService {
         return orderItemRepository.findById(id);
     }
 
+    public List<OrderItem> findByOrderId(Integer orderId) {
+        return orderItemRepository.findByOrderId(orderId);
+    }
+
     public OrderItem createNewItemByOrderId(Order order, NewOrderItemRequest newOrderItemRequest) {
-        MenuItem menuItem = menuItemService.findOrFail(newOrderItemRequest.getMenuItemId());
+        MenuItemSnapshot snapshot = menuItemSnapshotCache.findOrFail(newOrderItemRequest.getMenuItemId());
+        MenuItem menuItem = menuItemService.getReference(snapshot.id());
 
         Optional<OrderItem> existingOrderItem = orderItemRepository.findByOrderAndMenuItem(order, menuItem);
         if (existingOrderItem.isPresent()) {
             OrderItem orderItem = existingOrderItem.get();
+            BigDecimal lineTotalBefore = orderItem.calculateLineTotal();
             int newQuantity = orderItem.getQuantity() + newOrderItemRequest.getQuantity();
             orderItem.setQuantity(newQuantity);
             orderItem.setUpdatedAt(LocalDateTime.now());
-            return orderItemRepository.save(orderItem);
+            OrderItem savedItem = orderItemRepository.save(orderItem);
+            applySubtotalChange(order, lineTotalBefore, savedItem.calculateLineTotal());
+            return savedItem;
         }else{
             OrderItem orderItem = OrderItem.builder()
                     .menuItem(menuItem)
                     .order(order)
+                    .unitPrice(snapshot.price())
                     .quantity(newOrderItemRequest.getQuantity())
                     .status(OrderItemStatus.DELIVERED)
                     .build();
 
-            return orderItemRepository.save(orderItem);
+            OrderItem savedItem = orderItemRepository.save(orderItem);
+            applySubtotalChange(order, BigDecimal.ZERO, savedItem.calculateLineTotal());
+            return savedItem;
         }
     }
 
@@ -85,9 +105,12 @@ public class OrderItemService {
         if (!rule.isValid()) {
             throw new RuleNotValidException(rule.getMessage());
         }
+        BigDecimal lineTotalBefore = orderItem.calculateLineTotal();
         orderItem.setStatus(newStatus);
 
-        return orderItemRepository.save(orderItem);
+        OrderItem savedItem = orderItemRepository.save(orderItem);
+        applySubtotalChange(savedItem.getOrder(), lineTotalBefore, savedItem.calculateLineTotal());
+        return savedItem;
     }
 
     public OrderItem updateOrderItemQuantity(OrderItem orderItem, UpdateOrderItemQuantity updateOrderItemQuantity) {
@@ -95,8 +118,11 @@ public class OrderItemService {
         if (orderItem.getStatus() != OrderItemStatus.PENDING && orderItem.getStatus() != OrderItemStatus.DELIVERED) {
             throw new RuleNotValidException("Chỉ có thể cập nhật số lượng khi trạng thái là PENDING hoặc DELIVERED");
         }
+        BigDecimal lineTotalBefore = orderItem.calculateLineTotal();
         orderItem.setQuantity(updateOrderItemQuantity.getQuantity());
-        return orderItemRepository.save(orderItem);
+        OrderItem savedItem = orderItemRepository.save(orderItem);
+        applySubtotalChange(savedItem.getOrder(), lineTotalBefore, savedItem.calculateLineTotal());
+        return savedItem;
     }
 
     @Transactional
@@ -156,6 +182,8 @@ public class OrderItemService {
                 logDetails
         );
 
+        // Đơn đang được quản lý trong giao dịch nên subtotal sẽ được lưu khi commit
+        order.addToSubtotal(orderItem.calculateLineTotal().negate());
         orderItemRepository.delete(orderItem);
     }
 
@@ -167,12 +195,43 @@ public class OrderItemService {
         }
 
         for (OrderItem orderItem : orderItems) {
+            BigDecimal lineTotalBefore = orderItem.calculateLineTotal();
             orderItem.setStatus(status);
+            orderItem.getOrder().addToSubtotal(orderItem.calculateLineTotal().subtract(lineTotalBefore));
         }
 
         return orderItemRepository.saveAll(orderItems);
     }
 
+    /**
+     * Chuyển trạng thái hàng loạt theo bảng chuyển trạng thái của ValidOrderItemStatus bằng một câu lệnh UPDATE.
+     * Món không ở trạng thái nguồn hợp lệ sẽ được bỏ qua
+     * @param orderItemIds Danh sách ID món
+     * @param newStatus Trạng thái mới
+     * @return Số món được cập nhật
+     */
+    @Transactional
+    public int transitionOrderItemsStatus(List<Integer> orderItemIds, OrderItemStatus newStatus) {
+        Set<OrderItemStatus> sourceStatuses = ValidOrderItemStatus.allowedSourcesFor(newStatus);
+        if (sourceStatuses.isEmpty()) {
+            throw new RuleNotValidException("Không thể chuyển trạng thái món sang " + newStatus);
+        }
+
+        if (newStatus == OrderItemStatus.CANCELLED) {
+            // Khóa các món sẽ bị hủy để hai yêu cầu hủy cùng món không trừ subtotal hai lần,
+            // rồi chỉ trừ và hủy đúng các món đã khóa
+            List<Integer> lockedIds = orderItemRepository.lockIdsByStatusIn(orderItemIds,
+                    sourceStatuses.stream().map(Enum::name).toList());
+            if (lockedIds.isEmpty()) {
+                return 0;
+            }
+            orderRepository.subtractLineTotalsOf(lockedIds);
+            return orderItemRepository.transitionStatus(lockedIds, sourceStatuses, newStatus, LocalDateTime.now());
+        }
+
+        return orderItemRepository.transitionStatus(orderItemIds, sourceStatuses, newStatus, LocalDateTime.now());
+    }
+
     /**
      * Hủy tất cả OrderItem đang ở trạng thái PENDING liên quan đến một MenuItem
      * @param menuItem MenuItem cần hủy các OrderItem liên quan
@@ -186,6 +245,7 @@ public class OrderItemService {
             menuItem, OrderItemStatus.PENDING, oneDayAgo);
 
         for (OrderItem orderItem : pendingOrderItems) {
+            orderItem.getOrder().addToSubtotal(orderItem.calculateLineTotal().negate());
             orderItem.setStatus(OrderItemStatus.CANCELLED);
             orderItem.setUpdatedAt(LocalDateTime.now());
 
@@ -214,7 +274,21 @@ public class OrderItemService {
     }
 
     public OrderItem cancelIgnoreStatus(OrderItem orderItem) {
+        BigDecimal lineTotalBefore = orderItem.calculateLineTotal();
         orderItem.setStatus(OrderItemStatus.CANCELLED);
-        return orderItemRepository.save(orderItem);
+        OrderItem savedItem = orderItemRepository.save(orderItem);
+        applySubtotalChange(savedItem.getOrder(), lineTotalBefore, BigDecimal.ZERO);
+        return savedItem;
+    }
+
+    /**
+     * Cập nhật subtotal của đơn theo chênh lệch thành tiền của món trước và sau khi thay đổi
+     */
+    private void applySubtotalChange(Order order, BigDecimal lineTotalBefore, BigDecimal lineTotalAfter) {
+        if (order.getSubtotal() == null || lineTotalBefore.compareTo(lineTotalAfter) == 0) {
+            return;
+        }
+        order.addToSubtotal(lineTotalAfter.subtract(lineTotalBefore));
+        orderRepository.save(order);
     }
 }
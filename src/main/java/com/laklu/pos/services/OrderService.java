@@ -1,5 +1,6 @@
 package com.laklu.pos.services;
 
+import com.laklu.pos.dataObjects.MenuItemSnapshot;
 import com.laklu.pos.dataObjects.request.*;
 import com.laklu.pos.dataObjects.response.OrderResponse;
 import com.laklu.pos.entities.*;
@@ -9,12 +10,15 @@ import com.laklu.pos.exceptions.RuleNotValidException;
 import com.laklu.pos.exceptions.httpExceptions.NotFoundException;
 import com.laklu.pos.mapper.OrderMapper;
 import com.laklu.pos.repositories.OrderRepository;
+import com.laklu.pos.uiltis.BusinessDay;
 import com.laklu.pos.validator.OrderExistRule;
 import com.laklu.pos.validator.OrderStatusTransitionRule;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -22,8 +26,13 @@ import org.springframework.data.domain.Pageable;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -33,6 +42,7 @@ public class OrderService {
     private final OrderRepository orderRepository;
     private final ReservationService reservationService;
     private final MenuItemService menuItemService;
+    private final MenuItemSnapshotCache menuItemSnapshotCache;
     private final OrderItemService orderItemService;
     private final OrderMapper orderMapper;
     private final TableService tableService;
@@ -72,15 +82,17 @@ public class OrderService {
 
         List<OrderItem> orderItems = new ArrayList<>();
         for (NewOrderItemRequest orderItemRequest : newOrderRequest.getOrderItems()) {
-            MenuItem menuItem = menuItemService.findOrFail(orderItemRequest.getMenuItemId());
+            MenuItemSnapshot menuItem = menuItemSnapshotCache.findOrFail(orderItemRequest.getMenuItemId());
             OrderItem orderItem = OrderItem.builder()
                     .order(order)
-                    .menuItem(menuItem)
+                    .menuItem(menuItemService.getReference(menuItem.id()))
+                    .unitPrice(menuItem.price())
                     .quantity(orderItemRequest.getQuantity())
                     .status(OrderItemStatus.PENDING)
                     .build();
 
             orderItems.add(orderItem);
+            order.addToSubtotal(orderItem.calculateLineTotal());
         }
         orderItemService.saveAll(orderItems);
 
@@ -100,38 +112,59 @@ public class OrderService {
             throw new IllegalArgumentException("Không có món để tách đơn");
         }
 
-        List<OrderItem> originalItems = originalOrder.getOrderItems();
-        List<OrderItem> newOrderItems = new ArrayList<>();
+        // Đánh chỉ mục món theo ID để tra cứu O(1) thay vì duyệt danh sách cho mỗi yêu cầu tách
+        Map<Integer, OrderItem> originalItemsById = new HashMap<>();
+        for (OrderItem item : originalOrder.getOrderItems()) {
+            originalItemsById.put(item.getId(), item);
+        }
 
+        // Gộp các yêu cầu tách cùng một món và kiểm tra toàn bộ trước khi thay đổi dữ liệu
+        Map<Integer, Integer> splitQuantities = new LinkedHashMap<>();
         for (OrderItemSplitRequest splitRequest : itemsToSplit) {
-            OrderItem originalItem = originalOrder.getOrderItems().stream()
-                    .filter(item -> item.getId().equals(splitRequest.getOrderItemId()))
-                    .findFirst()
-                    .orElseThrow(() -> new RuleNotValidException("Không tìm thấy món với ID "
-                            + splitRequest.getOrderItemId() + " trong đơn hàng"));
-
-            int splitQuantity = splitRequest.getQuantity();
-            if (splitQuantity > originalItem.getQuantity()) {
+            if (!originalItemsById.containsKey(splitRequest.getOrderItemId())) {
+                throw new RuleNotValidException("Không tìm thấy món với ID "
+                        + splitRequest.getOrderItemId() + " trong đơn hàng");
+            }
+            splitQuantities.merge(splitRequest.getOrderItemId(), splitRequest.getQuantity(), Integer::sum);
+        }
+
+        for (Map.Entry<Integer, Integer> entry : splitQuantities.entrySet()) {
+            OrderItem originalItem = originalItemsById.get(entry.getKey());
+            if (entry.getValue() > originalItem.getQuantity()) {
                 throw new IllegalArgumentException("Số lượng món "
                         + originalItem.getMenuItem().getDish().getName()
                         + " muốn tách phải bằng hoặc nhỏ hơn"
                         + originalItem.getQuantity());
             }
+        }
+
+        List<OrderItem> newOrderItems = new ArrayList<>(splitQuantities.size());
+        Set<Integer> removedItemIds = new HashSet<>();
+        for (Map.Entry<Integer, Integer> entry : splitQuantities.entrySet()) {
+            OrderItem originalItem = originalItemsById.get(entry.getKey());
+            int splitQuantity = entry.getValue();
 
             OrderItem newItem = OrderItem.builder()
                     .menuItem(originalItem.getMenuItem())
+                    .unitPrice(originalItem.resolveUnitPrice())
                     .quantity(splitQuantity)
                     .status(OrderItemStatus.DELIVERED)
                     .build();
             newOrderItems.add(newItem);
 
             if (splitQuantity == originalItem.getQuantity()) {
-                originalItems.remove(originalItem);
+                removedItemIds.add(originalItem.getId());
             } else {
                 originalItem.setQuantity(originalItem.getQuantity() - splitQuantity);
             }
         }
 
+        // Xóa các món đã tách hết trong một lần duyệt
+        if (!removedItemIds.isEmpty()) {
+            originalOrder.getOrderItems().removeIf(item -> removedItemIds.contains(item.getId()));
+        }
+        originalOrder.recalculateSubtotal();
+
         if (newOrderItems.isEmpty()) {
             throw new RuleNotValidException("Không có món để tách đơn");
         }
@@ -182,24 +215,29 @@ public class OrderService {
             throw new RuleNotValidException("Không thể gộp đơn đã thanh toán hoặc hủy");
         }
 
-        List<OrderItem> mergedItems = new ArrayList<>();
+        // Gộp món theo menuItemId và giá đã chụp bằng map để mỗi món chỉ tra cứu O(1).
+        // Món đã hủy không được chuyển sang đơn mới để không bị tính tiền
+        Map<String, OrderItem> mergedItemsByKey = new LinkedHashMap<>();
         for (Order order : ordersToMerge) {
             for (OrderItem item : order.getOrderItems()) {
-                OrderItem existingItem = mergedItems.stream()
-                        .filter(i -> i.getMenuItem().getId().equals(item.getMenuItem().getId()))
-                        .findFirst()
-                        .orElse(null);
+                if (item.getStatus() == OrderItemStatus.CANCELLED) {
+                    continue;
+                }
+                String key = item.getMenuItem().getId() + ":" + item.resolveUnitPrice().stripTrailingZeros().toPlainString();
+                OrderItem existingItem = mergedItemsByKey.get(key);
                 if (existingItem != null) {
                     existingItem.setQuantity(existingItem.getQuantity() + item.getQuantity());
                 } else {
-                    mergedItems.add(OrderItem.builder()
+                    mergedItemsByKey.put(key, OrderItem.builder()
                             .menuItem(item.getMenuItem())
+                            .unitPrice(item.resolveUnitPrice())
                             .quantity(item.getQuantity())
                             .status(OrderItemStatus.DELIVERED)
                             .build());
                 }
             }
         }
+        List<OrderItem> mergedItems = new ArrayList<>(mergedItemsByKey.values());
 
         Order mergedOrder = Order.builder()
                 .reservation(ordersToMerge.get(0).getReservation()) // Lấy reservation từ order đầu tiên
@@ -209,14 +247,13 @@ public class OrderService {
                 .build();
 
         mergedItems.forEach(item -> item.setOrder(mergedOrder));
-        ordersToMerge.forEach(order -> {
-            order.setStatus(OrderStatus.CANCELLED); // Đặt trạng thái CANCELLED cho order cũ
-            order.getOrderItems().forEach(item -> item.setStatus(OrderItemStatus.CANCELLED)); // Hủy các món trong order cũ
-        });
-
-        orderRepository.saveAll(ordersToMerge);
         orderRepository.save(mergedOrder);
 
+        // Hủy các order cũ và toàn bộ món của chúng bằng UPDATE hàng loạt thay vì lưu từng entity
+        List<Integer> oldOrderIds = ordersToMerge.stream().map(Order::getId).toList();
+        orderItemService.cancelAllByOrderIds(oldOrderIds);
+        orderRepository.cancelByIds(oldOrderIds, LocalDateTime.now());
+
         OrderResponse response = orderMapper.toOrderResponse(mergedOrder);
         Table table = tableService.getTableNumberByReservationId(mergedOrder.getReservation().getId());
         response.setTableNumber(table.getTableNumber());
@@ -234,6 +271,7 @@ public class OrderService {
                 .orElseThrow(NotFoundException::new);
     }
 
+    @Transactional
     public Order updateOrderStatus(Order order, UpdateStatusOrderRequest request) {
         OrderStatus newStatus = OrderStatus.valueOf(request.getStatus());
         OrderStatus currentStatus = order.getStatus();
@@ -245,14 +283,21 @@ public class OrderService {
         }
 
         if (newStatus == OrderStatus.CANCELLED) {
-            order.getOrderItems().forEach(item -> item.setStatus(OrderItemStatus.CANCELLED));
-            orderItemService.updateOrderItemsStatus(order.getOrderItems());
+            // Hủy đơn và toàn bộ món bằng UPDATE hàng loạt thay vì lưu từng món
+            List<Integer> orderIds = List.of(order.getId());
+            orderItemService.cancelAllByOrderIds(orderIds);
+            orderRepository.cancelByIds(orderIds, LocalDateTime.now());
+            return findOrFail(order.getId());
         }
         order.setStatus(newStatus);
         order.setUpdatedAt(LocalDateTime.now());
         return orderRepository.save(order);
     }
 
+    public List<Order> findChangedSince(LocalDateTime since) {
+        return orderRepository.findChangedSince(since);
+    }
+
     public Order getOrderExist(Integer id) {
         Order orderExist = findOrFail(id);
         OrderExistRule rule = new OrderExistRule(orderExist);
@@ -287,45 +332,25 @@ public class OrderService {
     }
 
     /**
-     * Lấy danh sách đơn hàng từ 4h chiều đến 3h sáng hôm sau với trạng thái PENDING
-     * @param today Ngày hiện tại
-     * @return Danh sách đơn hàng đã sắp xếp theo thời gian tạo tăng dần
+     * Lấy các đơn hàng đang chờ của một ngày kinh doanh, sắp theo thời gian tạo tăng dần
+     *
+     * @param businessDay Ngày kinh doanh (đơn tạo trước giờ chốt ngày thuộc ngày hôm trước)
      */
-    public List<Order> getEveningToDawnOrders(LocalDate today) {
-        LocalDateTime currentTime = LocalDateTime.now();
-        LocalDate queryDate = today;
-
-        /* Tạm thời comment đoạn này lại
-        // Nếu thời gian hiện tại là từ 0h đến 3h sáng, cần lấy đơn hàng từ ngày hôm trước
-        if (currentTime.getHour() >= 0 && currentTime.getHour() < 3) {
-            // Nếu today là ngày hiện tại (không được chỉ định rõ), thì phải lấy đơn từ ngày hôm trước
-            if (today.equals(LocalDate.now())) {
-                queryDate = today.minusDays(1);
-            }
-        }
-
-        // Thời gian bắt đầu (16:00 chiều của ngày được tính)
-        LocalDateTime startTime = queryDate.atTime(16, 0);
-        // Thời gian kết thúc (03:00 sáng của ngày hôm sau)
-        LocalDateTime endTime = queryDate.plusDays(1).atTime(3, 0);
-        */
-
-        // Lấy toàn bộ orders trong ngày (từ 00:00 đến 23:59:59)
-        LocalDateTime startTime = queryDate.atStartOfDay();
-        LocalDateTime endTime = queryDate.atTime(23, 59, 59);
-
-        Specification<Order> spec = Specification.where((root, query, cb) ->
-            cb.and(
-                cb.between(root.get("createdAt"), startTime, endTime),
-                cb.equal(root.get("status"), OrderStatus.PENDING)
-            )
-        );
-
-        // Sắp xếp theo thời gian tạo tăng dần (cái nào tạo trước đứng trước)
-        Sort sortOrder = Sort.by("createdAt").ascending();
-        Pageable pageable = PageRequest.of(0, Integer.MAX_VALUE, sortOrder);
+    public List<Order> getEveningToDawnOrders(LocalDate businessDay) {
+        return orderRepository.findByBusinessDayAndStatusOrderByCreatedAtAsc(businessDay, OrderStatus.PENDING);
+    }
 
-        return orderRepository.findAll(spec, pageable).getContent();
+    /**
+     * Tính ngày kinh doanh cho các đơn hàng tạo trước khi có cột business_day
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void backfillBusinessDay() {
+        Map<LocalDate, List<Integer>> idsByDay = orderRepository.findCreatedAtWithoutBusinessDay().stream()
+                .collect(Collectors.groupingBy(
+                        row -> BusinessDay.of((LocalDateTime) row[1]),
+                        Collectors.mapping(row -> (Integer) row[0], Collectors.toList())));
+        idsByDay.forEach((businessDay, ids) -> orderRepository.updateBusinessDay(ids, businessDay));
     }
 
     public Order deleteOrder(Order orderExist) {
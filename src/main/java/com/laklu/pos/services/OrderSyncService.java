@@ -0,0 +1,206 @@
+package com.laklu.pos.services;
+
+import com.laklu.pos.dataObjects.request.NewOrderItemRequest;
+import com.laklu.pos.dataObjects.request.NewOrderRequest;
+import com.laklu.pos.dataObjects.request.OrderSyncOperation;
+import com.laklu.pos.dataObjects.request.UpdateOrderItemQuantity;
+import com.laklu.pos.dataObjects.request.UpdateStatusOrderItemRequest;
+import com.laklu.pos.dataObjects.response.OrderResponse;
+import com.laklu.pos.dataObjects.response.OrderSyncOperationResult;
+import com.laklu.pos.dataObjects.response.OrderSyncResult;
+import com.laklu.pos.entities.Order;
+import com.laklu.pos.entities.OrderItem;
+import com.laklu.pos.entities.User;
+import com.laklu.pos.enums.OrderItemStatus;
+import com.laklu.pos.enums.OrderSyncOperationType;
+import com.laklu.pos.exceptions.RuleNotValidException;
+import com.laklu.pos.mapper.OrderItemMapper;
+import com.laklu.pos.mapper.OrderMapper;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Áp dụng nhật ký thao tác offline của tablet.
+ * Mỗi order được áp dụng trong một giao dịch riêng, lỗi ở một order không ảnh hưởng các order khác.
+ */
+@Service
+@RequiredArgsConstructor
+public class OrderSyncService {
+
+    private static final String SCOPE = "order.sync";
+
+    private final OrderService orderService;
+    private final OrderItemService orderItemService;
+    private final IdempotencyService idempotencyService;
+    private final OrderMapper orderMapper;
+    private final OrderItemMapper orderItemMapper;
+
+    /**
+     * Nhóm các thao tác theo order, giữ nguyên thứ tự client gửi lên.
+     * Nếu mọi thao tác trong nhóm đều có clientTimestamp thì sắp xếp lại theo thời điểm đó.
+     * @param operations Nhật ký thao tác
+     * @return Danh sách nhóm thao tác theo từng order
+     */
+    public List<List<OrderSyncOperation>> groupByOrder(List<OrderSyncOperation> operations) {
+        Map<String, List<OrderSyncOperation>> groups = new LinkedHashMap<>();
+        for (OrderSyncOperation operation : operations) {
+            if (operation.getOrderId() == null && (operation.getClientOrderRef() == null || operation.getClientOrderRef().isBlank())) {
+                throw new RuleNotValidException("Thao tác " + operation.getOperationId() + " thiếu orderId hoặc clientOrderRef");
+            }
+            groups.computeIfAbsent(operation.getGroupKey(), key -> new ArrayList<>()).add(operation);
+        }
+
+        for (List<OrderSyncOperation> group : groups.values()) {
+            if (group.stream().allMatch(operation -> operation.getClientTimestamp() != null)) {
+                group.sort(Comparator.comparing(OrderSyncOperation::getClientTimestamp));
+            }
+        }
+        return new ArrayList<>(groups.values());
+    }
+
+    /**
+     * Áp dụng toàn bộ thao tác của một order trong một giao dịch.
+     * Thao tác đã áp dụng trước đó (trùng operationId) được bỏ qua và trả về kết quả cũ.
+     * @param operations Các thao tác của cùng một order
+     * @param staff Nhân viên thực hiện đồng bộ
+     * @return Kết quả từng thao tác và trạng thái cuối cùng của order
+     */
+    @Transactional
+    public OrderSyncResult applyOrderOperations(List<OrderSyncOperation> operations, User staff) {
+        OrderSyncOperation first = operations.get(0);
+        Order order = first.getOrderId() != null ? orderService.getOrderExist(first.getOrderId()) : null;
+        List<OrderSyncOperationResult> results = new ArrayList<>(operations.size());
+
+        for (OrderSyncOperation operation : operations) {
+            Optional<OrderSyncOperationResult> applied = idempotencyService
+                    .findStoredResponse(SCOPE, operation.getOperationId(), OrderSyncOperationResult.class);
+            if (applied.isPresent()) {
+                OrderSyncOperationResult duplicate = applied.get();
+                duplicate.setResult(OrderSyncOperationResult.DUPLICATE);
+                if (order == null && duplicate.getOrderId() != null) {
+                    order = orderService.findOrFail(duplicate.getOrderId());
+                }
+                results.add(duplicate);
+                continue;
+            }
+
+            OrderSyncOperationType type = operation.getOperationType();
+            Integer orderItemId = null;
+            if (type == OrderSyncOperationType.CREATE_ORDER) {
+                order = createOrder(operation, order, staff);
+            } else {
+                if (order == null) {
+                    throw new RuleNotValidException("Không tìm thấy đơn hàng cho thao tác " + operation.getOperationId());
+                }
+                orderItemId = applyItemOperation(operation, type, order).getId();
+            }
+
+            OrderSyncOperationResult result = OrderSyncOperationResult.builder()
+                    .operationId(operation.getOperationId())
+                    .type(type.name())
+                    .result(OrderSyncOperationResult.APPLIED)
+                    .orderId(order.getId())
+                    .orderItemId(orderItemId)
+                    .build();
+            idempotencyService.storeResponse(SCOPE, operation.getOperationId(), result);
+            results.add(result);
+        }
+
+        return OrderSyncResult.builder()
+                .clientOrderRef(first.getClientOrderRef())
+                .orderId(order != null ? order.getId() : null)
+                .success(true)
+                .operations(results)
+                .order(order != null ? toOrderResponse(order) : null)
+                .build();
+    }
+
+    /**
+     * Lấy trạng thái hiện tại của các order có thay đổi sau mốc since
+     */
+    @Transactional
+    public List<OrderResponse> getChangesSince(LocalDateTime since) {
+        return orderService.findChangedSince(since).stream()
+                .map(this::toOrderResponse)
+                .toList();
+    }
+
+    public OrderSyncResult failedResult(List<OrderSyncOperation> operations, Object error) {
+        OrderSyncOperation first = operations.get(0);
+        return OrderSyncResult.builder()
+                .clientOrderRef(first.getClientOrderRef())
+                .orderId(first.getOrderId())
+                .success(false)
+                .error(error)
+                .operations(List.of())
+                .build();
+    }
+
+    private Order createOrder(OrderSyncOperation operation, Order existingOrder, User staff) {
+        if (existingOrder != null) {
+            throw new RuleNotValidException("Đơn hàng đã tồn tại, không thể tạo lại ở thao tác " + operation.getOperationId());
+        }
+        if (operation.getReservationId() == null || operation.getOrderItems() == null || operation.getOrderItems().isEmpty()) {
+            throw new RuleNotValidException("Thao tác tạo đơn " + operation.getOperationId() + " thiếu thông tin đặt bàn hoặc danh sách món");
+        }
+        return orderService.createOrder(new NewOrderRequest(operation.getReservationId(), operation.getOrderItems()), staff);
+    }
+
+    private OrderItem applyItemOperation(OrderSyncOperation operation, OrderSyncOperationType type, Order order) {
+        switch (type) {
+            case ADD_ITEM -> {
+                if (operation.getMenuItemId() == null || operation.getQuantity() == null) {
+                    throw new RuleNotValidException("Thao tác thêm món " + operation.getOperationId() + " thiếu món hoặc số lượng");
+                }
+                return orderItemService.createNewItemByOrderId(order,
+                        new NewOrderItemRequest(operation.getMenuItemId(), operation.getQuantity()));
+            }
+            case UPDATE_QUANTITY -> {
+                if (operation.getQuantity() == null) {
+                    throw new RuleNotValidException("Thao tác cập nhật số lượng " + operation.getOperationId() + " thiếu số lượng");
+                }
+                OrderItem orderItem = findOrderItemOfOrder(operation, order);
+                return orderItemService.updateOrderItemQuantity(orderItem, new UpdateOrderItemQuantity(operation.getQuantity()));
+            }
+            case UPDATE_STATUS -> {
+                OrderItem orderItem = findOrderItemOfOrder(operation, order);
+                return orderItemService.updateOrderItemStatus(orderItem,
+                        new UpdateStatusOrderItemRequest(parseItemStatus(operation).name()));
+            }
+            default -> throw new RuleNotValidException("Loại thao tác không hợp lệ!");
+        }
+    }
+
+    private OrderItem findOrderItemOfOrder(OrderSyncOperation operation, Order order) {
+        if (operation.getOrderItemId() == null) {
+            throw new RuleNotValidException("Thao tác " + operation.getOperationId() + " thiếu món cần cập nhật");
+        }
+        OrderItem orderItem = orderItemService.findOrFail(operation.getOrderItemId());
+        if (!orderItem.getOrder().getId().equals(order.getId())) {
+            throw new RuleNotValidException("Món " + operation.getOrderItemId() + " không thuộc đơn hàng " + order.getId());
+        }
+        return orderItem;
+    }
+
+    private OrderItemStatus parseItemStatus(OrderSyncOperation operation) {
+        if (operation.getStatus() != null) {
+            for (OrderItemStatus status : OrderItemStatus.values()) {
+                if (status.name().equalsIgnoreCase(operation.getStatus())) {
+                    return status;
+                }
+            }
+        }
+        throw new RuleNotValidException("Trạng thái món ăn đang đặt không hợp lệ!");
+    }
+
+    private OrderResponse toOrderResponse(Order order) {
+        OrderResponse response = orderMapper.toOrderResponse(order);
+        // Đọc lại món từ DB vì order vừa tạo trong giao dịch chưa có danh sách món
+        response.setOrderItems(orderItemMapper.toResponseList(orderItemService.findByOrderId(order.getId())));
+        return response;
+    }
+}
@@ -27,6 +27,8 @@ public class PaymentService {
     private final OrderRepository orderRepository;
     private final ReservationRepository reservationRepository;
     private final VoucherRepository voucherRepository;
+    private final TableOccupancyService tableOccupancyService;
+    private final CustomerService customerService;
     private static final String SEPAY_QR_URL = "https://qr.sepay.vn/img";
     private static final String PREFIX = "LL";
     private static final BigDecimal DEFAULT_VAT_RATE = BigDecimal.ZERO;
@@ -230,13 +232,18 @@ public class PaymentService {
                         || order.getStatus() == OrderStatus.CANCELLED);
 
         if (allOrdersCompleted) {
+            boolean firstCompletion = rsv.getStatus() != Reservation.Status.COMPLETED;
             rsv.setCheckOut(LocalDateTime.now());
             rsv.setStatus(Reservation.Status.COMPLETED);
             reservationRepository.save(rsv);
+            if (firstCompletion) {
+                customerService.recordVisit(rsv);
+            }
         } else {
             rsv.setStatus(Reservation.Status.CONFIRMED);
             reservationRepository.save(rsv);
         }
+        tableOccupancyService.refreshReservation(rsv.getId());
     }
 
     private BigDecimal applyVoucherDiscount(BigDecimal totalAmount, Voucher voucher) {
@@ -251,19 +258,29 @@ public class PaymentService {
     }
 
     private BigDecimal calculateSubTotal(Order order) {
-        return order.getOrderItems().stream()
-                .map(orderItem -> orderItem.getMenuItem().getPrice()
-                        .multiply(BigDecimal.valueOf(orderItem.getQuantity())))
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        if (order.getSubtotal() == null) {
+            // Đơn tạo trước khi có cột subtotal: tính một lần từ danh sách món rồi lưu lại
+            order.recalculateSubtotal();
+            orderRepository.save(order);
+        }
+        return order.getSubtotal();
     }
 
+    @Transactional
     public void cancelPayment(int paymentId) {
         Payment payment = findOrFail(paymentId);
+        Reservation reservation = payment.getOrder().getReservation();
+        boolean wasPaid = payment.getPaymentStatus() == PaymentStatus.PAID;
+        boolean wasCompleted = reservation.getStatus() == Reservation.Status.COMPLETED;
         payment.setPaymentStatus(PaymentStatus.CANCELLED);
         payment.getOrder().setStatus(OrderStatus.CONFIRMED);
-        payment.getOrder().getReservation().setStatus(Reservation.Status.CONFIRMED);
+        reservation.setStatus(Reservation.Status.CONFIRMED);
         payment.setUpdatedAt(LocalDateTime.now());
         paymentRepository.save(payment);
+        if (wasCompleted) {
+            customerService.reverseVisit(reservation, wasPaid ? payment.getAmountPaid() : BigDecimal.ZERO);
+        }
+        tableOccupancyService.refreshReservation(payment.getOrder().getReservation().getId());
     }
 
     @Transactional
@@ -1,5 +1,6 @@
 package com.laklu.pos.services;
 
+import com.laklu.pos.dataObjects.FileUpload;
 import com.laklu.pos.entities.Attachment;
 import com.laklu.pos.entities.Profile;
 import com.laklu.pos.entities.User;
@@ -9,7 +10,6 @@ import com.laklu.pos.repositories.ProfileRepository;
 import lombok.AllArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.util.List;
@@ -82,9 +82,10 @@ public class ProfileService {
         
         // Xóa các attachment cũ của profile
         if (profile.getAttachments() != null && !profile.getAttachments().isEmpty()) {
-            // Lưu lại các ID cần xóa
+            // Lưu lại các ID cần xóa, bỏ qua attachment vẫn được dùng làm avatar mới
             List<Long> oldAttachmentIds = profile.getAttachments().stream()
                     .map(Attachment::getId)
+                    .filter(id -> !attachmentIds.contains(id))
                     .toList();
             
             // Xóa liên kết trong bảng trung gian
@@ -109,8 +110,11 @@ public class ProfileService {
     }
     
     @Transactional
-    public Profile uploadAndUpdateAvatar(Integer profileId, MultipartFile file) throws IOException {
+    public Profile uploadAndUpdateAvatar(Integer profileId, FileUpload file) throws IOException {
         Profile profile = findOrFail(profileId);
+
+        // Lưu file mới trước khi xóa avatar cũ: tải lại cùng một ảnh chỉ thêm bản ghi, file trên đĩa được giữ nguyên
+        Attachment attachment = attachmentService.saveFile(file);
         
         // Xóa các attachment cũ của profile
         if (profile.getAttachments() != null && !profile.getAttachments().isEmpty()) {
@@ -129,9 +133,6 @@ public class ProfileService {
             }
         }
         
-        // Lưu file và nhận lại attachment
-        Attachment attachment = attachmentService.saveFile(file);
-        
         // Liên kết attachment với profile, sử dụng List.of() để tạo danh sách từ một phần tử
         attachmentService.saveAttachment(profile, List.of(attachment.getId()), true);
         
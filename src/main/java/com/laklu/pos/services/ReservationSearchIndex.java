@@ -0,0 +1,190 @@
+package com.laklu.pos.services;
+
+import com.laklu.pos.repositories.ReservationRepository;
+import com.laklu.pos.uiltis.Ultis;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Chỉ mục tìm kiếm đặt bàn theo tên khách (đã bỏ dấu) và số điện thoại, nằm trong bộ nhớ.
+ * Mỗi chuỗi được tách thành các cụm 3 ký tự (trigram), mỗi trigram giữ danh sách ID đặt bàn chứa nó.
+ * Khi tìm, chỉ duyệt danh sách của trigram hiếm nhất trong từ khóa rồi kiểm tra lại từng ứng viên,
+ * nên không phải quét toàn bộ lịch sử đặt bàn như LIKE '%...%'.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ReservationSearchIndex {
+
+    private static final int GRAM = 3;
+
+    // Từ khóa chỉ được tìm theo số điện thoại khi trông như số điện thoại: chữ số kèm khoảng trắng, +, -, .
+    // và có ít nhất MIN_PHONE_DIGITS chữ số, để "Nguyen 1" không khớp mọi số điện thoại có chữ số 1
+    private static final Pattern PHONE_KEYWORD = Pattern.compile("[\\d\\s+.\\-]+");
+    private static final int MIN_PHONE_DIGITS = 3;
+
+    private final ReservationRepository reservationRepository;
+
+    private final Map<Integer, Entry> entries = new HashMap<>();
+    private final Map<String, IntList> postings = new HashMap<>();
+    private volatile boolean ready = false;
+
+    private record Entry(String name, String phone, LocalDateTime checkIn) {
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        entries.clear();
+        postings.clear();
+        List<Object[]> rows = reservationRepository.findSearchableFields();
+        for (Object[] row : rows) {
+            put((Integer) row[0], (String) row[1], (String) row[2], (LocalDateTime) row[3]);
+        }
+        ready = true;
+        log.info("Đã dựng chỉ mục tìm kiếm cho {} đặt bàn với {} trigram", entries.size(), postings.size());
+    }
+
+    /**
+     * Cập nhật chỉ mục cho một đặt bàn, nếu đang trong giao dịch thì chỉ cập nhật sau khi commit
+     */
+    public void index(Integer reservationId, String customerName, String customerPhone, LocalDateTime checkIn) {
+        if (reservationId == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    put(reservationId, customerName, customerPhone, checkIn);
+                }
+            });
+        } else {
+            put(reservationId, customerName, customerPhone, checkIn);
+        }
+    }
+
+    /**
+     * Tìm các đặt bàn có tên hoặc số điện thoại chứa từ khóa
+     *
+     * @param keyword Từ khóa, không phân biệt dấu và hoa thường
+     * @return ID đặt bàn, sắp theo thời gian check in giảm dần
+     */
+    public synchronized List<Integer> search(String keyword) {
+        String name = Ultis.normalizeSearchText(keyword);
+        if (name.isEmpty()) {
+            return List.of();
+        }
+        String phone = PHONE_KEYWORD.matcher(keyword.trim()).matches() ? Ultis.digitsOnly(keyword) : "";
+
+        Set<Integer> matched = new HashSet<>();
+        collectMatches(name, false, matched);
+        if (phone.length() >= MIN_PHONE_DIGITS) {
+            collectMatches(phone, true, matched);
+        }
+
+        List<Integer> result = new ArrayList<>(matched);
+        result.sort(Comparator.comparing((Integer id) -> entries.get(id).checkIn(),
+                Comparator.nullsLast(Comparator.reverseOrder())));
+        return result;
+    }
+
+    private void collectMatches(String keyword, boolean phone, Set<Integer> matched) {
+        if (keyword.length() < GRAM) {
+            // Từ khóa quá ngắn để dùng trigram thì duyệt trực tiếp trong bộ nhớ
+            entries.forEach((id, entry) -> {
+                if (field(entry, phone).contains(keyword)) {
+                    matched.add(id);
+                }
+            });
+            return;
+        }
+
+        IntList rarest = null;
+        for (String gram : grams(keyword, phone)) {
+            IntList posting = postings.get(gram);
+            if (posting == null) {
+                return;
+            }
+            if (rarest == null || posting.size() < rarest.size()) {
+                rarest = posting;
+            }
+        }
+        for (int i = 0; rarest != null && i < rarest.size(); i++) {
+            int id = rarest.get(i);
+            Entry entry = entries.get(id);
+            // Danh sách có thể còn ID cũ sau khi đổi tên/số điện thoại, nên luôn kiểm tra lại
+            if (entry != null && field(entry, phone).contains(keyword)) {
+                matched.add(id);
+            }
+        }
+    }
+
+    private synchronized void put(Integer reservationId, String customerName, String customerPhone, LocalDateTime checkIn) {
+        Entry entry = new Entry(Ultis.normalizeSearchText(customerName), Ultis.digitsOnly(customerPhone), checkIn);
+        Entry previous = entries.put(reservationId, entry);
+        Set<String> previousGrams = new HashSet<>();
+        if (previous != null) {
+            previousGrams.addAll(grams(previous.name(), false));
+            previousGrams.addAll(grams(previous.phone(), true));
+        }
+        Set<String> grams = new HashSet<>(grams(entry.name(), false));
+        grams.addAll(grams(entry.phone(), true));
+        for (String gram : grams) {
+            if (!previousGrams.contains(gram)) {
+                postings.computeIfAbsent(gram, key -> new IntList()).add(reservationId);
+            }
+        }
+    }
+
+    private static String field(Entry entry, boolean phone) {
+        return phone ? entry.phone() : entry.name();
+    }
+
+    /**
+     * Trigram của tên và số điện thoại được tách riêng bằng tiền tố để không lẫn vào nhau
+     */
+    private static Set<String> grams(String text, boolean phone) {
+        Set<String> grams = new HashSet<>();
+        String prefix = phone ? "p:" : "n:";
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            grams.add(prefix + text.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    /**
+     * Danh sách int tăng dần kích thước, gọn hơn nhiều so với Set<Integer> khi có hàng trăm nghìn đặt bàn
+     */
+    private static class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int get(int index) {
+            return values[index];
+        }
+
+        int size() {
+            return size;
+        }
+    }
+}
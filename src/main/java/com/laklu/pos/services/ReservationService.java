@@ -1,6 +1,7 @@
 package com.laklu.pos.services;
 
 import com.laklu.pos.dataObjects.request.UpdateReservationDTO;
+import com.laklu.pos.entities.Customer;
 import com.laklu.pos.entities.Reservation;
 import com.laklu.pos.entities.ReservationTable;
 import com.laklu.pos.entities.Table;
@@ -12,6 +13,7 @@ import com.laklu.pos.mapper.ReservationMapper;
 import com.laklu.pos.repositories.ReservationRepository;
 import com.laklu.pos.repositories.ReservationTableRepository;
 import com.laklu.pos.repositories.TableRepository;
+import com.laklu.pos.uiltis.BusinessDay;
 import com.laklu.pos.validator.RuleValidator;
 import com.laklu.pos.validator.TablesMustBeAvailable;
 import jakarta.transaction.Transactional;
@@ -20,9 +22,12 @@ import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.springframework.scheduling.annotation.Scheduled;
 
@@ -30,7 +35,11 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import com.laklu.pos.repositories.OrderRepository;
@@ -47,18 +56,30 @@ public class ReservationService implements ReservationByDateResolver {
     ReservationTableRepository reservationTableRepository;
     ReservationMapper reservationMapper;
     OrderRepository orderRepository;
+    TableOccupancyService tableOccupancyService;
+    ReservationTimeoutService reservationTimeoutService;
+    ReservationSearchIndex reservationSearchIndex;
+    CustomerService customerService;
 
     @Transactional
     public Reservation createReservation(ReservationRequest request) {
         Reservation reservation = reservationMapper.toEntity(request);
+        reservation.setExpectedDurationMinutes(tableOccupancyService.resolveDurationMinutes(request.getExpectedDurationMinutes()));
+        reservation.setCustomerId(customerService.resolveCustomer(request.getCustomerName(), request.getCustomerPhone())
+                .map(Customer::getId).orElse(null));
 
         List<Table> tables = tableRepository.findAllById(request.getTableIds());
 
-        RuleValidator.validate(new TablesMustBeAvailable(tables, request.getCheckIn().toLocalDate(), this));
+        RuleValidator.validate(new TablesMustBeAvailable(tables, reservation.getCheckIn(),
+                tableOccupancyService.resolveEnd(reservation.getCheckIn(), reservation.getExpectedDurationMinutes()),
+                null, tableOccupancyService));
 
         reservation = reservationRepository.save(reservation);
+        reservationSearchIndex.index(reservation.getId(), reservation.getCustomerName(), reservation.getCustomerPhone(), reservation.getCheckIn());
 
         this.createReservationTables(reservation, tables, reservation.getReservationTime());
+        tableOccupancyService.refreshReservation(reservation.getId());
+        reservationTimeoutService.scheduleTimeout(reservation);
 
         return reservation;
     }
@@ -71,18 +92,45 @@ public class ReservationService implements ReservationByDateResolver {
 
     public Reservation updateReservationInfo(Integer reservationId, UpdateReservationDTO request) {
         Reservation reservation = findOrFail(reservationId);
+        LocalDateTime previousCheckIn = reservation.getCheckIn();
+        Integer previousDuration = reservation.getExpectedDurationMinutes();
 
         reservationMapper.updateReservation(request, reservation);
 
-        return reservationRepository.save(reservation);
+        if (request.getCustomerPhone() != null || request.getCustomerName() != null) {
+            reservation.setCustomerId(customerService.resolveCustomer(reservation.getCustomerName(), reservation.getCustomerPhone())
+                    .map(Customer::getId).orElse(null));
+        }
+
+        // Đổi giờ hoặc thời lượng thì các bàn đang giữ phải còn trống trong khung giờ mới
+        boolean slotChanged = !Objects.equals(previousCheckIn, reservation.getCheckIn())
+                || !Objects.equals(previousDuration, reservation.getExpectedDurationMinutes());
+        if (slotChanged && reservation.getCheckIn() != null) {
+            List<Table> tables = reservation.getReservationTables().stream()
+                    .map(ReservationTable::getTable)
+                    .toList();
+            RuleValidator.validate(new TablesMustBeAvailable(tables, reservation.getCheckIn(),
+                    tableOccupancyService.resolveEnd(reservation.getCheckIn(), reservation.getExpectedDurationMinutes()),
+                    reservation.getId(), tableOccupancyService));
+        }
+
+        Reservation savedReservation = reservationRepository.save(reservation);
+        tableOccupancyService.refreshReservation(savedReservation.getId());
+        reservationTimeoutService.scheduleTimeout(savedReservation);
+        reservationSearchIndex.index(savedReservation.getId(), savedReservation.getCustomerName(),
+                savedReservation.getCustomerPhone(), savedReservation.getCheckIn());
+        return savedReservation;
     }
 
     public Reservation addTablesToReservation(Reservation reservation, List<Integer> tableIds) {
         List<Table> tables = tableRepository.findAllExceptInReservation(tableIds, reservation);
 
-        RuleValidator.validate(new TablesMustBeAvailable(tables, reservation.getCheckIn().toLocalDate(), this));
+        RuleValidator.validate(new TablesMustBeAvailable(tables, reservation.getCheckIn(),
+                tableOccupancyService.resolveEnd(reservation.getCheckIn(), reservation.getExpectedDurationMinutes()),
+                reservation.getId(), tableOccupancyService));
 
         this.createReservationTables(reservation, tables, LocalDateTime.now());
+        tableOccupancyService.refreshReservation(reservation.getId());
 
         return reservation;
     }
@@ -97,6 +145,7 @@ public class ReservationService implements ReservationByDateResolver {
 
         // Đảm bảo thay đổi được commit
         reservationRepository.flush();
+        tableOccupancyService.refreshReservation(reservation.getId());
     }
 
     public Optional<Reservation> findReservationById(Integer id) {
@@ -131,12 +180,14 @@ public class ReservationService implements ReservationByDateResolver {
         Sort sort = Sort.by(Sort.Order.desc("checkIn"));
 
         Pageable pageable = PageRequest.of(page, size, sort);
-        return reservationRepository.findAllReservations(pageable);
+        return withTables(reservationRepository.findAllReservations(pageable));
     }
 
     public void updateReservationStatus(Reservation rsv, Reservation.Status status) {
         rsv.setStatus(status);
         reservationRepository.save(rsv);
+        tableOccupancyService.refreshReservation(rsv.getId());
+        reservationTimeoutService.scheduleTimeout(rsv);
     }
 
     public Page<Reservation> findByDateAndStatus(LocalDateTime start, LocalDateTime end, Reservation.Status status, int page, int size) {
@@ -144,7 +195,7 @@ public class ReservationService implements ReservationByDateResolver {
         Sort sort = Sort.by(Sort.Order.desc("checkIn"));
 
         Pageable pageable = PageRequest.of(page, size, sort);
-        return reservationRepository.findByCheckInBetweenAndStatus(start, end, status, pageable);
+        return withTables(reservationRepository.findByCheckInBetweenAndStatus(start, end, status, pageable));
     }
 
     public Page<Reservation> findByDate(LocalDateTime start, LocalDateTime end, int page, int size) {
@@ -152,7 +203,7 @@ public class ReservationService implements ReservationByDateResolver {
         Sort sort = Sort.by(Sort.Order.desc("checkIn"));
 
         Pageable pageable = PageRequest.of(page, size, sort);
-        return reservationRepository.findByCheckInBetween(start, end, pageable);
+        return withTables(reservationRepository.findByCheckInBetween(start, end, pageable));
     }
 
     public Page<Reservation> findByStatus(Reservation.Status status, int page, int size) {
@@ -160,7 +211,15 @@ public class ReservationService implements ReservationByDateResolver {
         Sort sort = Sort.by(Sort.Order.desc("checkIn"));
 
         Pageable pageable = PageRequest.of(page, size, sort);
-        return reservationRepository.findByStatus(status, pageable);
+        return withTables(reservationRepository.findByStatus(status, pageable));
+    }
+
+    public Page<Reservation> findByCustomer(Integer customerId, int page, int size) {
+        // Sắp xếp theo checkIn giảm dần
+        Sort sort = Sort.by(Sort.Order.desc("checkIn"));
+
+        Pageable pageable = PageRequest.of(page, size, sort);
+        return withTables(reservationRepository.findByCustomerId(customerId, pageable));
     }
 
     public Page<Reservation> searchByNameOrPhone(String keyword, int page, int size) {
@@ -168,7 +227,43 @@ public class ReservationService implements ReservationByDateResolver {
         Sort sort = Sort.by(Sort.Order.desc("checkIn"));
 
         Pageable pageable = PageRequest.of(page, size, sort);
-        return reservationRepository.searchByNameOrPhone(keyword, pageable);
+        if (!reservationSearchIndex.isReady()) {
+            return withTables(reservationRepository.searchByNameOrPhone(keyword, pageable));
+        }
+
+        // Tìm ID trong chỉ mục rồi chỉ nạp các đặt bàn của trang hiện tại
+        List<Integer> matchedIds = reservationSearchIndex.search(keyword);
+        int from = (int) Math.min(pageable.getOffset(), matchedIds.size());
+        int to = Math.min(from + pageable.getPageSize(), matchedIds.size());
+        List<Integer> pageIds = matchedIds.subList(from, to);
+
+        return new PageImpl<>(findWithTables(pageIds), pageable, matchedIds.size());
+    }
+
+    /**
+     * Nạp lại nội dung trang kèm danh sách bàn bằng một câu truy vấn thay vì mỗi đặt bàn một câu
+     */
+    private Page<Reservation> withTables(Page<Reservation> reservationPage) {
+        if (reservationPage.isEmpty()) {
+            return reservationPage;
+        }
+        List<Integer> ids = reservationPage.getContent().stream().map(Reservation::getId).toList();
+        return new PageImpl<>(findWithTables(ids), reservationPage.getPageable(), reservationPage.getTotalElements());
+    }
+
+    /**
+     * Nạp các đặt bàn kèm danh sách bàn, giữ nguyên thứ tự của ids
+     */
+    private List<Reservation> findWithTables(List<Integer> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Integer, Reservation> reservations = reservationRepository.findWithTablesByIdIn(ids).stream()
+                .collect(Collectors.toMap(Reservation::getId, Function.identity(), (first, second) -> first));
+        return ids.stream()
+                .map(reservations::get)
+                .filter(Objects::nonNull)
+                .toList();
     }
 
     /**
@@ -256,12 +351,13 @@ public class ReservationService implements ReservationByDateResolver {
 
         // Kiểm tra xem các bàn mới có đang được sử dụng không
         if (!actualNewTableIds.isEmpty()) {
-            LocalDate reservationDate = reservation.getCheckIn().toLocalDate();
-            boolean anyTableInUse = reservationTableRepository.areTablesInUseByOtherReservationOnDate(
-                    actualNewTableIds, reservation.getId(), reservationDate);
+            LocalDateTime from = reservation.getCheckIn();
+            LocalDateTime to = tableOccupancyService.resolveEnd(from, reservation.getExpectedDurationMinutes());
+            Set<Integer> occupiedTableIds = tableOccupancyService.resolveOccupiedTableIds(from, to, reservation.getId());
+            boolean anyTableInUse = actualNewTableIds.stream().anyMatch(occupiedTableIds::contains);
 
             if (anyTableInUse) {
-                throw new RuntimeException("Một hoặc nhiều bàn mới đang được sử dụng trong đặt bàn khác vào ngày " + reservationDate);
+                throw new RuntimeException("Một hoặc nhiều bàn mới đang được sử dụng trong đặt bàn khác từ " + from + " đến " + to);
             }
         }
 
@@ -307,75 +403,49 @@ public class ReservationService implements ReservationByDateResolver {
         // Lưu đặt bàn đã cập nhật
         log.info("Đã đổi từ bàn {} sang bàn {}", fromTableIds, toTableIds);
         reservationRepository.save(reservation);
+        tableOccupancyService.refreshReservation(reservation.getId());
     }
 
     /**
-     * Lấy danh sách đặt bàn có thời gian check in từ 4h chiều đến 3h sáng hôm sau
-     * Phương thức này tự động tính toán "ca làm việc hiện tại" dựa vào thời điểm gọi API
+     * Lấy danh sách đặt bàn trong ca tối (từ 4h chiều đến giờ chốt ngày hôm sau) của ngày kinh doanh hiện tại.
+     * Gọi vào rạng sáng vẫn trả về ca tối hôm trước vì thời điểm đó vẫn thuộc ngày kinh doanh hôm trước
      *
      * @param page Số trang
      * @param size Kích thước trang
-     * @return Danh sách đặt bàn có thời gian check in từ 4h chiều đến 3h sáng hôm sau
+     * @return Danh sách đặt bàn trong ca tối
      */
     public Page<Reservation> findEveningToEarlyMorning(int page, int size) {
-        LocalDateTime now = LocalDateTime.now();
-        LocalDate currentDay = now.toLocalDate();
-        LocalDateTime afternoonTime;
-        LocalDateTime earlyMorningTime;
-
-        // Kiểm tra xem thời điểm hiện tại có nằm trong khoảng 0h-3h sáng không
-        if (now.getHour() >= 0 && now.getHour() <= 3) {
-            // Nếu đang trong khoảng 0h-3h sáng, truy vấn dữ liệu từ 16h hôm trước đến 3h sáng hôm nay
-            afternoonTime = currentDay.minusDays(1).atTime(16, 0);
-            earlyMorningTime = currentDay.atTime(3, 0);
-        } else {
-            // Ngược lại, truy vấn dữ liệu từ 16h hôm nay đến 3h sáng hôm sau
-            afternoonTime = currentDay.atTime(16, 0);
-            earlyMorningTime = currentDay.plusDays(1).atTime(3, 0);
-        }
-
-        // Thời điểm cuối ngày
-        LocalDateTime endOfDay = afternoonTime.toLocalDate().atTime(23, 59, 59);
-
-        // Thời điểm đầu ngày
-        LocalDateTime startOfDay = earlyMorningTime.toLocalDate().atStartOfDay();
-
+        LocalDate businessDay = BusinessDay.current();
         Pageable pageable = PageRequest.of(page, size, Sort.by("checkIn").ascending());
 
-        // Lấy đặt bàn có thời gian check in nằm trong khoảng
-        return reservationRepository.findByCheckInBetweenOrCheckInBetween(
-                afternoonTime, endOfDay,
-                startOfDay, earlyMorningTime,
-                pageable);
+        return withTables(reservationRepository.findByBusinessDayAndCheckInGreaterThanEqual(
+                businessDay, BusinessDay.eveningStartOf(businessDay), pageable));
     }
 
     public Page<Reservation> findEveningToEarlyMorningActiveReservations(int page, int size) {
-        LocalDateTime now = LocalDateTime.now();
-        LocalDate currentDay = now.toLocalDate();
-        LocalDateTime afternoonTime;
-        LocalDateTime earlyMorningTime;
-
-        if (now.getHour() >= 0 && now.getHour() <= 3) {
-            afternoonTime = currentDay.minusDays(1).atTime(16, 0);
-            earlyMorningTime = currentDay.atTime(3, 0);
-        } else {
-            afternoonTime = currentDay.atTime(16, 0);
-            earlyMorningTime = currentDay.plusDays(1).atTime(3, 0);
-        }
-
-//        LocalDateTime endOfDay = afternoonTime.toLocalDate().atTime(23, 59, 59);
-//        LocalDateTime startOfDay = earlyMorningTime.toLocalDate().atStartOfDay();
-
-        LocalDateTime startOfDay = currentDay.atStartOfDay();
-        LocalDateTime endOfDay = currentDay.atTime(23, 59, 59);
-
+        LocalDate businessDay = BusinessDay.current();
         List<Reservation.Status> statuses = Arrays.asList(Reservation.Status.PENDING, Reservation.Status.CONFIRMED);
         Pageable pageable = PageRequest.of(page, size, Sort.by("checkIn").ascending());
 
-        return reservationRepository.findByCheckInBetweenAndStatusInOrCheckInBetweenAndStatusIn(
-                afternoonTime, endOfDay, statuses,
-                startOfDay, earlyMorningTime, statuses,
-                pageable);
+        return withTables(reservationRepository.findByBusinessDayAndStatusInAndCheckInGreaterThanEqual(
+                businessDay, statuses, BusinessDay.eveningStartOf(businessDay), pageable));
+    }
+
+    /**
+     * Tính ngày kinh doanh cho các đặt bàn tạo trước khi có cột business_day.
+     * Sau lần chạy đầu tiên chỉ còn một câu truy vấn rỗng
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void backfillBusinessDay() {
+        Map<LocalDate, List<Integer>> idsByDay = reservationRepository.findCheckInsWithoutBusinessDay().stream()
+                .collect(Collectors.groupingBy(
+                        row -> BusinessDay.of((LocalDateTime) row[1]),
+                        Collectors.mapping(row -> (Integer) row[0], Collectors.toList())));
+        idsByDay.forEach((businessDay, ids) -> reservationRepository.updateBusinessDay(ids, businessDay));
+        if (!idsByDay.isEmpty()) {
+            log.info("Đã tính ngày kinh doanh cho đặt bàn của {} ngày", idsByDay.size());
+        }
     }
 
     /**
@@ -389,37 +459,14 @@ public class ReservationService implements ReservationByDateResolver {
     }
 
     /**
-     * Scheduled task để kiểm tra và tự động hủy đặt bàn nếu khách hàng đến muộn sau 30 phút
+     * Lưới an toàn cho hẹn giờ hủy đặt bàn trễ hẹn, mỗi lượt chỉ gồm một câu SELECT ID, một câu khóa các đặt bàn trễ hẹn
+     * và một câu UPDATE
      * Chạy mỗi 5 phút
      */
     @Scheduled(fixedRate = 300000) // 5 phút = 300,000 milliseconds
     @Transactional
     public void cancelLateReservations() {
-        log.info("Bắt đầu kiểm tra đặt bàn trễ hẹn...");
-        LocalDateTime now = LocalDateTime.now();
-        
-        // Tìm tất cả đặt bàn có trạng thái PENDING với thời gian checkin trước thời điểm hiện tại
-        // và không quá 2 giờ trước để tránh hủy các đặt bàn đã quá cũ
-        LocalDateTime cutoffTime = now.minusHours(2);
-        List<Reservation> pendingReservations = reservationRepository.findByStatusAndCheckInBetween(
-                Reservation.Status.PENDING, 
-                cutoffTime, 
-                now);
-        
-        int cancelCount = 0;
-        for (Reservation reservation : pendingReservations) {
-            // Kiểm tra xem đã quá 30 phút kể từ thời gian check-in chưa
-            LocalDateTime lateThreshold = reservation.getCheckIn().plusMinutes(30);
-            
-            if (now.isAfter(lateThreshold)) {
-                log.info("Hủy đặt bàn ID {} của khách hàng {} vì đến muộn. Check-in dự kiến: {}", 
-                        reservation.getId(), reservation.getCustomerName(), reservation.getCheckIn());
-                
-                updateReservationStatus(reservation, Reservation.Status.CANCELLED);
-                cancelCount++;
-            }
-        }
-        
-        log.info("Đã hoàn thành kiểm tra. Tổng số đặt bàn bị hủy do trễ hẹn: {}", cancelCount);
+        List<Integer> cancelledIds = reservationTimeoutService.cancelLateReservations();
+        log.debug("Đã kiểm tra đặt bàn trễ hẹn, {} đặt bàn bị hủy", cancelledIds.size());
     }
 }
\ No newline at end of file
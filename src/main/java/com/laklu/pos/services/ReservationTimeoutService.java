@@ -0,0 +1,155 @@
+package com.laklu.pos.services;
+
+import com.laklu.pos.entities.Reservation;
+import com.laklu.pos.repositories.ReservationRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Tự động hủy đặt bàn khi khách đến muộn quá lateCancelMinutes phút so với giờ check in.
+ * Mỗi đặt bàn PENDING có một hẹn giờ riêng đúng thời điểm hết hạn thay vì chờ lượt quét định kỳ;
+ * lượt quét định kỳ (cancelLateReservations) chỉ còn là lưới an toàn, ví dụ cho hẹn giờ bị mất khi khởi động lại.
+ */
+@Service
+@Slf4j
+public class ReservationTimeoutService {
+
+    private final ReservationRepository reservationRepository;
+    private final TableOccupancyService tableOccupancyService;
+    private final TaskScheduler taskScheduler;
+    // Hẹn giờ chạy trên luồng của scheduler, gọi nội bộ nên không đi qua proxy @Transactional
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.reservation.late-cancel-minutes:30}")
+    private int lateCancelMinutes;
+
+    // Không hủy các đặt bàn đã quá cũ, chỉ xét check in trong khoảng lookback trước mốc trễ hẹn
+    @Value("${app.reservation.late-cancel-lookback-minutes:90}")
+    private int lookbackMinutes;
+
+    private final Map<Integer, ScheduledFuture<?>> timeouts = new ConcurrentHashMap<>();
+
+    public ReservationTimeoutService(ReservationRepository reservationRepository,
+                                     TableOccupancyService tableOccupancyService,
+                                     TaskScheduler taskScheduler,
+                                     PlatformTransactionManager transactionManager) {
+        this.reservationRepository = reservationRepository;
+        this.tableOccupancyService = tableOccupancyService;
+        this.taskScheduler = taskScheduler;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Đặt lại hẹn giờ hủy của một đặt bàn theo giờ check in và trạng thái hiện tại.
+     * Trong giao dịch thì chỉ đặt sau khi commit, giao dịch bị hoàn tác thì hẹn giờ cũ được giữ nguyên
+     */
+    public void scheduleTimeout(Reservation reservation) {
+        Integer reservationId = reservation.getId();
+        boolean pending = reservation.getStatus() == Reservation.Status.PENDING && reservation.getCheckIn() != null;
+        LocalDateTime checkIn = reservation.getCheckIn();
+        afterCommit(() -> {
+            if (pending) {
+                schedule(reservationId, checkIn);
+            } else {
+                cancelTimeout(reservationId);
+            }
+        });
+    }
+
+    private void schedule(Integer reservationId, LocalDateTime checkIn) {
+        LocalDateTime deadline = checkIn.plusMinutes(lateCancelMinutes);
+        ScheduledFuture<?> future = taskScheduler.schedule(
+                () -> onTimeout(reservationId),
+                deadline.atZone(ZoneId.systemDefault()).toInstant());
+        ScheduledFuture<?> previous = timeouts.put(reservationId, future);
+        if (previous != null) {
+            previous.cancel(false);
+        }
+    }
+
+    public void cancelTimeout(Integer reservationId) {
+        ScheduledFuture<?> previous = timeouts.remove(reservationId);
+        if (previous != null) {
+            previous.cancel(false);
+        }
+    }
+
+    /**
+     * Hủy tất cả đặt bàn PENDING đã trễ hẹn
+     *
+     * @return ID các đặt bàn thực sự bị hủy
+     */
+    public List<Integer> cancelLateReservations() {
+        LocalDateTime lateBefore = LocalDateTime.now().minusMinutes(lateCancelMinutes);
+        List<Integer> lateIds = reservationRepository.findPendingIdsByCheckInBetween(
+                lateBefore.minusMinutes(lookbackMinutes), lateBefore);
+        if (lateIds.isEmpty()) {
+            return lateIds;
+        }
+        return cancel(lateIds, lateBefore);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void scheduleUpcomingTimeouts() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Reservation> pending = reservationRepository.findByStatusAndCheckInGreaterThanEqual(
+                Reservation.Status.PENDING, now.minusMinutes(lateCancelMinutes));
+        pending.forEach(reservation -> schedule(reservation.getId(), reservation.getCheckIn()));
+        log.info("Đã đặt hẹn giờ hủy cho {} đặt bàn PENDING", pending.size());
+    }
+
+    private void onTimeout(Integer reservationId) {
+        timeouts.remove(reservationId);
+        cancel(List.of(reservationId), LocalDateTime.now().minusMinutes(lateCancelMinutes));
+    }
+
+    /**
+     * Khóa các đặt bàn còn PENDING và đã trễ hẹn rồi hủy đúng các đặt bàn đó trong cùng một giao dịch
+     *
+     * @return ID các đặt bàn đã hủy
+     */
+    private List<Integer> cancel(List<Integer> reservationIds, LocalDateTime lateBefore) {
+        List<Integer> cancelledIds = transactionTemplate.execute(status -> {
+            List<Integer> lockedIds = reservationRepository.lockLatePendingIds(reservationIds, lateBefore);
+            if (lockedIds.isEmpty()) {
+                return lockedIds;
+            }
+            reservationRepository.cancelByIds(lockedIds, LocalDateTime.now());
+            lockedIds.forEach(tableOccupancyService::refreshReservation);
+            afterCommit(() -> lockedIds.forEach(this::cancelTimeout));
+            return lockedIds;
+        });
+        if (!cancelledIds.isEmpty()) {
+            log.info("Đã hủy {} đặt bàn do trễ hẹn: {}", cancelledIds.size(), cancelledIds);
+        }
+        return cancelledIds;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.laklu.pos.services;
+
+import java.util.Set;
+
+/**
+ * Phát ra khi lịch giữ bàn của ngày hôm nay thay đổi
+ *
+ * @param tableIds Các bàn bị ảnh hưởng, null nghĩa là toàn bộ bàn (ví dụ sau khi dựng lại lịch)
+ */
+public record TableOccupancyChangedEvent(Set<Integer> tableIds) {
+
+    public static TableOccupancyChangedEvent allTables() {
+        return new TableOccupancyChangedEvent(null);
+    }
+
+    public boolean isAllTables() {
+        return tableIds == null;
+    }
+}
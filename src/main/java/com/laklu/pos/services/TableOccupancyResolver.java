@@ -0,0 +1,24 @@
+package com.laklu.pos.services;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Set;
+
+@FunctionalInterface
+public interface TableOccupancyResolver {
+    /**
+     * Danh sách ID bàn đang được giữ bởi đặt bàn chưa hủy/chưa hoàn thành có khung giờ trùng với [from, to)
+     *
+     * @param from Thời điểm bắt đầu cần kiểm tra
+     * @param to Thời điểm kết thúc cần kiểm tra (không tính)
+     * @param excludeReservationId Đặt bàn được bỏ qua khi kiểm tra, null nếu không bỏ qua
+     */
+    Set<Integer> resolveOccupiedTableIds(LocalDateTime from, LocalDateTime to, Integer excludeReservationId);
+
+    /**
+     * Danh sách ID bàn có đặt bàn giữ vào bất kỳ thời điểm nào trong ngày
+     */
+    default Set<Integer> resolveOccupiedTableIds(LocalDate date, Integer excludeReservationId) {
+        return resolveOccupiedTableIds(date.atStartOfDay(), date.plusDays(1).atStartOfDay(), excludeReservationId);
+    }
+}
@@ -0,0 +1,245 @@
+package com.laklu.pos.services;
+
+import com.laklu.pos.repositories.ReservationTableRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lịch giữ bàn trong bộ nhớ theo khung giờ cho một khoảng thời gian trượt (hôm qua đến windowDays ngày tới).
+ * Mỗi đặt bàn giữ bàn trong khoảng [checkIn, checkIn + thời lượng dự kiến), mỗi bàn có một chỉ mục khoảng
+ * sắp theo giờ bắt đầu để kiểm tra trùng giờ mà không phải quét cả ngày.
+ * Được dựng lại từ ReservationTable khi khởi động và mỗi ngày, cập nhật sau khi giao dịch thay đổi đặt bàn commit.
+ * Khoảng thời gian nằm ngoài cửa sổ được tra trực tiếp từ DB.
+ * Khi lịch giữ bàn của hôm nay thay đổi thì phát TableOccupancyChangedEvent để đồng bộ trạng thái bàn.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TableOccupancyService implements TableOccupancyResolver {
+
+    public static final int MAX_DURATION_MINUTES = 720;
+
+    private final ReservationTableRepository reservationTableRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${app.table-occupancy.window-days:30}")
+    private int windowDays;
+
+    @Value("${app.reservation.default-duration-minutes:120}")
+    private int defaultDurationMinutes;
+
+    // ID bàn -> các khung giờ đang giữ bàn
+    private volatile Map<Integer, SlotIndex> slotsByTable = new ConcurrentHashMap<>();
+    // Đặt bàn -> khung giờ và các bàn đang giữ, dùng để gỡ nhanh khi đặt bàn thay đổi
+    private volatile Map<Integer, Booking> bookingsByReservation = new ConcurrentHashMap<>();
+    private volatile LocalDateTime windowStart;
+    private volatile LocalDateTime windowEnd;
+
+    private record Booking(LocalDateTime start, LocalDateTime end, Set<Integer> tableIds) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "0 0 4 * * *")
+    public void rebuildAndReconcile() {
+        rebuild();
+        eventPublisher.publishEvent(TableOccupancyChangedEvent.allTables());
+    }
+
+    public synchronized void rebuild() {
+        LocalDateTime start = LocalDate.now().minusDays(1).atStartOfDay();
+        LocalDateTime end = LocalDate.now().plusDays(windowDays + 1L).atStartOfDay();
+
+        Map<Integer, SlotIndex> slots = new ConcurrentHashMap<>();
+        Map<Integer, Booking> bookings = new ConcurrentHashMap<>();
+        // Nạp cả các đặt bàn bắt đầu trước cửa sổ nhưng có thể kéo dài sang cửa sổ
+        List<Object[]> rows = reservationTableRepository.findActiveTableBookings(start.minusMinutes(MAX_DURATION_MINUTES), end);
+        for (Object[] row : rows) {
+            LocalDateTime checkIn = (LocalDateTime) row[2];
+            addBooking(slots, bookings, (Integer) row[0], (Integer) row[1], checkIn, resolveEnd(checkIn, (Integer) row[3]));
+        }
+
+        this.slotsByTable = slots;
+        this.bookingsByReservation = bookings;
+        this.windowStart = start;
+        this.windowEnd = end;
+        log.info("Đã dựng lịch giữ bàn từ {} đến {} với {} lượt giữ bàn", start, end, rows.size());
+    }
+
+    /**
+     * Cập nhật lịch giữ bàn của một đặt bàn. Nếu đang trong giao dịch thì chỉ cập nhật sau khi commit
+     *
+     * @param reservationId ID đặt bàn vừa thay đổi (tạo mới, đổi bàn, đổi giờ, hủy, hoàn thành...)
+     */
+    public void refreshReservation(Integer reservationId) {
+        if (reservationId == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    reloadAndPublish(reservationId);
+                }
+            });
+        } else {
+            reloadAndPublish(reservationId);
+        }
+    }
+
+    private void reloadAndPublish(Integer reservationId) {
+        Set<Integer> affectedTableIds = reloadReservation(reservationId);
+        if (!affectedTableIds.isEmpty()) {
+            eventPublisher.publishEvent(new TableOccupancyChangedEvent(affectedTableIds));
+        }
+    }
+
+    /**
+     * Thời điểm kết thúc dự kiến của đặt bàn, dùng thời lượng mặc định nếu đặt bàn không khai báo
+     */
+    public LocalDateTime resolveEnd(LocalDateTime checkIn, Integer durationMinutes) {
+        return checkIn.plusMinutes(resolveDurationMinutes(durationMinutes));
+    }
+
+    public int resolveDurationMinutes(Integer durationMinutes) {
+        if (durationMinutes == null || durationMinutes <= 0) {
+            return defaultDurationMinutes;
+        }
+        return Math.min(durationMinutes, MAX_DURATION_MINUTES);
+    }
+
+    @Override
+    public Set<Integer> resolveOccupiedTableIds(LocalDateTime from, LocalDateTime to, Integer excludeReservationId) {
+        if (!isInWindow(from, to)) {
+            return findOccupiedTableIdsFromDb(from, to, excludeReservationId);
+        }
+
+        Set<Integer> occupied = new HashSet<>();
+        slotsByTable.forEach((tableId, slots) -> {
+            if (slots.overlaps(from, to, excludeReservationId)) {
+                occupied.add(tableId);
+            }
+        });
+        return occupied;
+    }
+
+    private Set<Integer> findOccupiedTableIdsFromDb(LocalDateTime from, LocalDateTime to, Integer excludeReservationId) {
+        Set<Integer> occupied = new HashSet<>();
+        for (Object[] row : reservationTableRepository.findActiveTableBookings(from.minusMinutes(MAX_DURATION_MINUTES), to)) {
+            Integer reservationId = (Integer) row[0];
+            LocalDateTime checkIn = (LocalDateTime) row[2];
+            if (!reservationId.equals(excludeReservationId) && resolveEnd(checkIn, (Integer) row[3]).isAfter(from)) {
+                occupied.add((Integer) row[1]);
+            }
+        }
+        return occupied;
+    }
+
+    private boolean isInWindow(LocalDateTime from, LocalDateTime to) {
+        return windowStart != null && !from.isBefore(windowStart) && !to.isAfter(windowEnd);
+    }
+
+    /**
+     * Nạp lại lịch giữ bàn của một đặt bàn
+     *
+     * @return Các bàn có lịch giữ trong hôm nay bị thay đổi (trước hoặc sau khi nạp lại)
+     */
+    private synchronized Set<Integer> reloadReservation(Integer reservationId) {
+        Set<Integer> affectedTableIds = new HashSet<>();
+        Booking previous = removeBooking(reservationId);
+        if (previous != null && overlapsToday(previous.start(), previous.end())) {
+            affectedTableIds.addAll(previous.tableIds());
+        }
+        for (Object[] row : reservationTableRepository.findActiveTableBookingsByReservationId(reservationId)) {
+            Integer tableId = (Integer) row[0];
+            LocalDateTime checkIn = (LocalDateTime) row[1];
+            LocalDateTime end = resolveEnd(checkIn, (Integer) row[2]);
+            if (windowStart != null && end.isAfter(windowStart) && checkIn.isBefore(windowEnd)) {
+                addBooking(slotsByTable, bookingsByReservation, reservationId, tableId, checkIn, end);
+            }
+            if (overlapsToday(checkIn, end)) {
+                affectedTableIds.add(tableId);
+            }
+        }
+        return affectedTableIds;
+    }
+
+    private static boolean overlapsToday(LocalDateTime start, LocalDateTime end) {
+        LocalDate today = LocalDate.now();
+        return start.isBefore(today.plusDays(1).atStartOfDay()) && end.isAfter(today.atStartOfDay());
+    }
+
+    private Booking removeBooking(Integer reservationId) {
+        Booking booking = bookingsByReservation.remove(reservationId);
+        if (booking == null) {
+            return null;
+        }
+        for (Integer tableId : booking.tableIds()) {
+            SlotIndex slots = slotsByTable.get(tableId);
+            if (slots != null) {
+                slots.remove(reservationId, booking.start());
+            }
+        }
+        return booking;
+    }
+
+    private static void addBooking(Map<Integer, SlotIndex> slots,
+                                   Map<Integer, Booking> bookings,
+                                   Integer reservationId, Integer tableId,
+                                   LocalDateTime start, LocalDateTime end) {
+        slots.computeIfAbsent(tableId, key -> new SlotIndex()).add(reservationId, start, end);
+        bookings.computeIfAbsent(reservationId, key -> new Booking(start, end, ConcurrentHashMap.newKeySet()))
+                .tableIds()
+                .add(tableId);
+    }
+
+    /**
+     * Các khung giờ giữ một bàn, sắp theo giờ bắt đầu.
+     * Khung giờ trùng với [from, to) phải bắt đầu trong khoảng (from - thời lượng dài nhất, to),
+     * nên chỉ cần duyệt đoạn con này của cây thay vì toàn bộ các lượt giữ bàn.
+     */
+    private static class SlotIndex {
+        // Giờ bắt đầu -> (ID đặt bàn -> giờ kết thúc)
+        private final NavigableMap<LocalDateTime, Map<Integer, LocalDateTime>> byStart = new TreeMap<>();
+        private long maxLengthMinutes;
+
+        synchronized void add(Integer reservationId, LocalDateTime start, LocalDateTime end) {
+            byStart.computeIfAbsent(start, key -> new HashMap<>()).put(reservationId, end);
+            maxLengthMinutes = Math.max(maxLengthMinutes, Duration.between(start, end).toMinutes());
+        }
+
+        synchronized void remove(Integer reservationId, LocalDateTime start) {
+            Map<Integer, LocalDateTime> slots = byStart.get(start);
+            if (slots != null) {
+                slots.remove(reservationId);
+                if (slots.isEmpty()) {
+                    byStart.remove(start);
+                }
+            }
+        }
+
+        synchronized boolean overlaps(LocalDateTime from, LocalDateTime to, Integer excludeReservationId) {
+            for (Map<Integer, LocalDateTime> slots : byStart.subMap(from.minusMinutes(maxLengthMinutes), false, to, false).values()) {
+                for (Map.Entry<Integer, LocalDateTime> slot : slots.entrySet()) {
+                    if (!slot.getKey().equals(excludeReservationId) && slot.getValue().isAfter(from)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+}
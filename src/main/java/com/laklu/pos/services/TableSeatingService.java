@@ -0,0 +1,170 @@
+package com.laklu.pos.services;
+
+import com.laklu.pos.dataObjects.response.SeatingSuggestionResponse;
+import com.laklu.pos.dataObjects.response.TableInfo;
+import com.laklu.pos.enums.StatusTable;
+import com.laklu.pos.repositories.TableRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Gợi ý cách xếp bàn cho một nhóm khách: tìm tập bàn trống ít bàn nhất đủ chỗ cho nhóm,
+ * ưu tiên các bàn cùng khu vực và ít ghế dư.
+ * Danh sách bàn (sức chứa, khu vực) được giữ trong bộ nhớ và chỉ nạp lại khi bàn được thêm/sửa/xóa,
+ * tình trạng trống lấy từ lịch giữ bàn theo khung giờ.
+ */
+@Service
+@RequiredArgsConstructor
+public class TableSeatingService {
+
+    private static final String DEFAULT_ZONE = "";
+
+    // Ít bàn trước, sau đó ít khu vực, cuối cùng là ít ghế dư
+    private static final Comparator<Candidate> RANKING = Comparator
+            .comparingInt((Candidate candidate) -> candidate.seats().size())
+            .thenComparingInt(Candidate::zoneCount)
+            .thenComparingInt(Candidate::totalCapacity);
+
+    private final TableRepository tableRepository;
+    private final TableOccupancyService tableOccupancyService;
+
+    @Value("${app.seating.max-tables:4}")
+    private int maxTables;
+
+    private volatile List<Seat> seats;
+
+    private record Seat(Integer id, String tableNumber, int capacity, String zone) {
+    }
+
+    private record Candidate(List<Seat> seats, int totalCapacity, int zoneCount) {
+    }
+
+    /**
+     * Xóa danh sách bàn đang giữ trong bộ nhớ, gọi khi bàn được thêm/sửa/xóa
+     */
+    public void invalidate() {
+        this.seats = null;
+    }
+
+    /**
+     * Gợi ý các cách xếp bàn cho nhóm khách trong khung giờ
+     *
+     * @param partySize Số khách
+     * @param from Thời gian check in dự kiến
+     * @param durationMinutes Thời lượng dự kiến, null thì dùng thời lượng mặc định
+     * @param limit Số gợi ý tối đa
+     * @return Các gợi ý đã được xếp hạng, rỗng nếu không có cách xếp nào đủ chỗ
+     */
+    public List<SeatingSuggestionResponse> suggest(int partySize, LocalDateTime from, Integer durationMinutes, int limit) {
+        LocalDateTime to = tableOccupancyService.resolveEnd(from, durationMinutes);
+        Set<Integer> unavailableTableIds = new HashSet<>(tableOccupancyService.resolveOccupiedTableIds(from, to, null));
+        // Bàn đang có khách chỉ ảnh hưởng các khung giờ sắp tới
+        if (from.isBefore(LocalDateTime.now().plusMinutes(tableOccupancyService.resolveDurationMinutes(null)))) {
+            unavailableTableIds.addAll(tableRepository.findIdsByStatus(StatusTable.OCCUPIED));
+        }
+
+        List<Seat> freeSeats = loadSeats().stream()
+                .filter(seat -> !unavailableTableIds.contains(seat.id()))
+                .toList();
+
+        // Khóa theo tập ID bàn để bỏ các gợi ý trùng giữa tìm trong khu vực và tìm trên toàn bộ bàn
+        Map<Set<Integer>, Candidate> candidates = new HashMap<>();
+        freeSeats.stream()
+                .collect(Collectors.groupingBy(Seat::zone, LinkedHashMap::new, Collectors.toList()))
+                .values()
+                .forEach(zoneSeats -> collectCandidates(zoneSeats, partySize, candidates));
+        collectCandidates(freeSeats, partySize, candidates);
+
+        return candidates.values().stream()
+                .sorted(RANKING)
+                .limit(limit)
+                .map(candidate -> toResponse(candidate, partySize))
+                .toList();
+    }
+
+    private List<Seat> loadSeats() {
+        List<Seat> cached = this.seats;
+        if (cached == null) {
+            cached = tableRepository.findAll().stream()
+                    .map(table -> new Seat(table.getId(), table.getTableNumber(), table.getCapacity(),
+                            table.getZone() != null ? table.getZone() : DEFAULT_ZONE))
+                    .sorted(Comparator.comparing(Seat::zone).thenComparing(Seat::tableNumber))
+                    .toList();
+            this.seats = cached;
+        }
+        return cached;
+    }
+
+    /**
+     * Các bàn cùng sức chứa thay thế được cho nhau, nên chỉ cần tìm số bàn lấy theo từng mức sức chứa
+     * thay vì duyệt mọi tổ hợp bàn
+     */
+    private void collectCandidates(List<Seat> seats, int partySize, Map<Set<Integer>, Candidate> candidates) {
+        TreeMap<Integer, List<Seat>> byCapacity = new TreeMap<>(Comparator.reverseOrder());
+        for (Seat seat : seats) {
+            byCapacity.computeIfAbsent(seat.capacity(), key -> new ArrayList<>()).add(seat);
+        }
+        int[] capacities = byCapacity.keySet().stream().mapToInt(Integer::intValue).toArray();
+        List<List<Seat>> buckets = new ArrayList<>(byCapacity.values());
+        search(capacities, buckets, 0, partySize, new int[capacities.length], 0, candidates);
+    }
+
+    private void search(int[] capacities, List<List<Seat>> buckets, int index, int remaining,
+                        int[] picked, int used, Map<Set<Integer>, Candidate> candidates) {
+        if (remaining <= 0) {
+            addCandidate(buckets, picked, candidates);
+            return;
+        }
+        if (index == capacities.length || used == maxTables) {
+            return;
+        }
+        // Cắt nhánh: lấy toàn bàn lớn nhất còn lại cũng không đủ chỗ
+        if ((long) capacities[index] * (maxTables - used) < remaining) {
+            return;
+        }
+
+        int capacity = capacities[index];
+        int needed = (remaining + capacity - 1) / capacity;
+        int max = Math.min(Math.min(buckets.get(index).size(), maxTables - used), needed);
+        for (int take = max; take >= 0; take--) {
+            picked[index] = take;
+            search(capacities, buckets, index + 1, remaining - take * capacity, picked, used + take, candidates);
+        }
+        picked[index] = 0;
+    }
+
+    private void addCandidate(List<List<Seat>> buckets, int[] picked, Map<Set<Integer>, Candidate> candidates) {
+        List<Seat> chosen = new ArrayList<>();
+        for (int i = 0; i < picked.length; i++) {
+            chosen.addAll(buckets.get(i).subList(0, picked[i]));
+        }
+        Set<Integer> key = chosen.stream().map(Seat::id).collect(Collectors.toSet());
+        int totalCapacity = chosen.stream().mapToInt(Seat::capacity).sum();
+        int zoneCount = (int) chosen.stream().map(Seat::zone).distinct().count();
+        candidates.putIfAbsent(key, new Candidate(chosen, totalCapacity, zoneCount));
+    }
+
+    private SeatingSuggestionResponse toResponse(Candidate candidate, int partySize) {
+        return SeatingSuggestionResponse.builder()
+                .tables(candidate.seats().stream()
+                        .map(seat -> TableInfo.builder()
+                                .id(seat.id())
+                                .tableNumber(seat.tableNumber())
+                                .build())
+                        .toList())
+                .totalCapacity(candidate.totalCapacity())
+                .wastedSeats(candidate.totalCapacity() - partySize)
+                .zones(candidate.seats().stream()
+                        .map(Seat::zone)
+                        .filter(zone -> !DEFAULT_ZONE.equals(zone))
+                        .distinct()
+                        .toList())
+                .sameZone(candidate.zoneCount() == 1)
+                .build();
+    }
+}
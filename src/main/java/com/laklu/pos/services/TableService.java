@@ -6,19 +6,23 @@ import com.laklu.pos.entities.Table;
 import com.laklu.pos.enums.StatusTable;
 import com.laklu.pos.exceptions.httpExceptions.NotFoundException;
 import com.laklu.pos.mapper.TableMapper;
-import com.laklu.pos.repositories.ReservationTableRepository;
 import com.laklu.pos.repositories.TableRepository;
 import com.laklu.pos.validator.RuleValidator;
 import com.laklu.pos.validator.TableMustBeDeletable;
+import jakarta.transaction.Transactional;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
@@ -28,12 +32,15 @@ public class TableService {
 
     TableRepository tableRepository;
     TableMapper tableMapper;
-    ReservationTableRepository reservationTableRepository;
+    TableOccupancyService tableOccupancyService;
+    TableSeatingService tableSeatingService;
 
     public Table createTable(NewTable request) {
         Table table = tableMapper.toEntity(request); // Dùng MapStruct để chuyển đổi DTO thành Entity
 
-        return tableRepository.save(table);
+        Table savedTable = tableRepository.save(table);
+        tableSeatingService.invalidate();
+        return savedTable;
     }
 
     public Optional<Table> findByTableName(String tablename) {
@@ -60,7 +67,9 @@ public class TableService {
 
         tableMapper.updateTable(request, table);
 
-        return tableRepository.save(table);
+        Table savedTable = tableRepository.save(table);
+        tableSeatingService.invalidate();
+        return savedTable;
     }
 
 
@@ -70,6 +79,7 @@ public class TableService {
         RuleValidator.validate(new TableMustBeDeletable(table));
 
         tableRepository.deleteById(id);
+        tableSeatingService.invalidate();
     }
 
     public Table updateTableStatus(Integer id, StatusTable status) {
@@ -79,20 +89,56 @@ public class TableService {
         }).orElseThrow(() -> new RuntimeException("Không tìm thấy bàn với ID " + id));
     }
 
+    /**
+     * Đồng bộ trạng thái toàn bộ bàn với lịch giữ bàn hôm nay.
+     * Bàn đang có khách (OCCUPIED) được giữ nguyên.
+     */
+    @Transactional
     public void checkAndUpdateTableStatus() {
-        LocalDate today = LocalDate.now();
-        List<Table> tables = tableRepository.findAll();
-
-        tables.forEach(table -> {
-            long count = reservationTableRepository.countByTableAndDateAndNotCompleted(table.getId(), today);
-            if (count > 0) {
-                table.setStatus(StatusTable.RESERVED);
-            } else {
-                table.setStatus(StatusTable.AVAILABLE);
-            }
-        });
-
-        tableRepository.saveAll(tables);
+        reconcileTableStatus(null);
+    }
+
+    /**
+     * Đồng bộ trạng thái các bàn bị ảnh hưởng sau khi giao dịch thay đổi đặt bàn đã commit
+     */
+    @EventListener
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    public void onTableOccupancyChanged(TableOccupancyChangedEvent event) {
+        reconcileTableStatus(event.tableIds());
+    }
+
+    /**
+     * Cập nhật theo tập hợp: một lần lấy các bàn bận trong ngày và tối đa hai câu UPDATE,
+     * chỉ những bàn thực sự đổi trạng thái mới bị ghi
+     *
+     * @param tableIds Các bàn cần đồng bộ, null nếu đồng bộ toàn bộ
+     */
+    private void reconcileTableStatus(Set<Integer> tableIds) {
+        LocalDateTime now = LocalDateTime.now();
+        Set<Integer> busyTableIds = tableOccupancyService.resolveOccupiedTableIds(LocalDate.now(), null);
+        int reserved;
+        int released;
+
+        if (tableIds == null) {
+            reserved = busyTableIds.isEmpty() ? 0
+                    : tableRepository.updateStatusByIds(busyTableIds, StatusTable.AVAILABLE, StatusTable.RESERVED, now);
+            released = busyTableIds.isEmpty()
+                    ? tableRepository.updateStatusByStatus(StatusTable.RESERVED, StatusTable.AVAILABLE, now)
+                    : tableRepository.updateStatusExceptIds(busyTableIds, StatusTable.RESERVED, StatusTable.AVAILABLE, now);
+        } else {
+            Set<Integer> busy = new HashSet<>(tableIds);
+            busy.retainAll(busyTableIds);
+            Set<Integer> free = new HashSet<>(tableIds);
+            free.removeAll(busyTableIds);
+            reserved = busy.isEmpty() ? 0
+                    : tableRepository.updateStatusByIds(busy, StatusTable.AVAILABLE, StatusTable.RESERVED, now);
+            released = free.isEmpty() ? 0
+                    : tableRepository.updateStatusByIds(free, StatusTable.RESERVED, StatusTable.AVAILABLE, now);
+        }
+
+        if (reserved > 0 || released > 0) {
+            log.info("Đồng bộ trạng thái bàn: {} bàn chuyển sang RESERVED, {} bàn chuyển sang AVAILABLE", reserved, released);
+        }
     }
 
     public Table getTableNumberByReservationId(Integer reservationId) {
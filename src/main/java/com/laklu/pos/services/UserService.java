@@ -17,7 +17,11 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -69,6 +73,23 @@ public class UserService {
         return userRepository.findById(id);
     }
 
+    /**
+     * Lấy tên đăng nhập của nhiều người dùng bằng một câu truy vấn
+     *
+     * @return ID người dùng -> tên đăng nhập
+     */
+    public Map<Integer, String> findUsernamesByIds(Collection<Integer> ids) {
+        Map<Integer, String> usernames = new HashMap<>();
+        List<Integer> userIds = ids.stream().filter(Objects::nonNull).toList();
+        if (userIds.isEmpty()) {
+            return usernames;
+        }
+        for (Object[] row : userRepository.findUsernamesByIds(userIds)) {
+            usernames.put((Integer) row[0], (String) row[1]);
+        }
+        return usernames;
+    }
+
     public User findOrFail(Integer id) {
         return this.findUserById(id).orElseThrow(NotFoundException::new);
     }
@@ -0,0 +1,48 @@
+package com.laklu.pos.uiltis;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Ngày kinh doanh: ca tối kéo dài qua nửa đêm nên mọi thời điểm trước giờ chốt ngày (mặc định 3h sáng)
+ * được tính vào ngày hôm trước. Giá trị được tính khi ghi và lưu thành cột business_day
+ * để truy vấn theo ca chỉ cần so sánh bằng trên một cột có index.
+ * Giờ chốt được đọc từ cấu hình khi khởi động, các entity dùng qua phương thức tĩnh.
+ */
+@Component
+public class BusinessDay {
+
+    private static volatile int cutoffHour = 3;
+    private static volatile int eveningStartHour = 16;
+
+    @Value("${app.business-day.cutoff-hour:3}")
+    public void setCutoffHour(int hour) {
+        BusinessDay.cutoffHour = hour;
+    }
+
+    @Value("${app.business-day.evening-start-hour:16}")
+    public void setEveningStartHour(int hour) {
+        BusinessDay.eveningStartHour = hour;
+    }
+
+    /**
+     * Ngày kinh doanh của một thời điểm, null nếu thời điểm null
+     */
+    public static LocalDate of(LocalDateTime time) {
+        return time == null ? null : time.minusHours(cutoffHour).toLocalDate();
+    }
+
+    public static LocalDate current() {
+        return of(LocalDateTime.now());
+    }
+
+    /**
+     * Thời điểm bắt đầu ca tối của một ngày kinh doanh
+     */
+    public static LocalDateTime eveningStartOf(LocalDate businessDay) {
+        return businessDay.atTime(eveningStartHour, 0);
+    }
+}
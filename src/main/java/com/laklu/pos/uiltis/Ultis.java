@@ -1,6 +1,8 @@
 package com.laklu.pos.uiltis;
 
+import java.text.Normalizer;
 import java.time.LocalTime;
+import java.util.regex.Pattern;
 
 public class Ultis {
     public static void throwIf(boolean condition, Exception e) throws Exception {
@@ -18,4 +20,43 @@ public class Ultis {
     public static LocalTime getCurrentTime() {
         return LocalTime.now();
     }
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern WHITESPACES = Pattern.compile("\\s+");
+
+    /**
+     * Chuẩn hóa chuỗi để tìm kiếm: bỏ dấu tiếng Việt, đổi đ thành d, chữ thường và gộp khoảng trắng
+     * Ví dụ "  Nguyễn Văn Đức " -> "nguyen van duc"
+     */
+    public static String normalizeSearchText(String text) {
+        if (text == null) {
+            return "";
+        }
+        String folded = Normalizer.normalize(text, Normalizer.Form.NFD);
+        folded = COMBINING_MARKS.matcher(folded).replaceAll("")
+                .replace('đ', 'd')
+                .replace('Đ', 'D');
+        return WHITESPACES.matcher(folded.toLowerCase().trim()).replaceAll(" ");
+    }
+
+    /**
+     * Chỉ giữ lại các chữ số của số điện thoại
+     */
+    public static String digitsOnly(String text) {
+        if (text == null) {
+            return "";
+        }
+        return text.replaceAll("\\D", "");
+    }
+
+    /**
+     * Chuẩn hóa số điện thoại Việt Nam về dạng bắt đầu bằng 0, ví dụ "+84 912 345 678" -> "0912345678"
+     */
+    public static String normalizePhone(String phone) {
+        String digits = digitsOnly(phone);
+        if (digits.startsWith("84") && digits.length() >= 11) {
+            return "0" + digits.substring(2);
+        }
+        return digits;
+    }
 }
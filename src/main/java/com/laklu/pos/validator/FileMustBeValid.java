@@ -1,27 +1,48 @@
 package com.laklu.pos.validator;
 
+import com.laklu.pos.enums.AttachmentFileType;
 import lombok.AllArgsConstructor;
-import org.springframework.web.multipart.MultipartFile;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
-import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
 
+/**
+ * Kiểm tra file tải lên từ phần đầu nội dung: loại file khai báo phải được hỗ trợ và khớp với magic bytes,
+ * dung lượng không vượt giới hạn. Được gọi trước khi ghi file và lại khi dung lượng đọc được vượt giới hạn
+ */
 @AllArgsConstructor
 public class FileMustBeValid extends BaseRule {
 
-    private final MultipartFile file;
-
-    // Danh sách MIME Types hợp lệ
-    private static final List<String> ALLOWED_TYPES = Arrays.asList(
-            "image/jpeg", "image/png", "image/gif",
-            "application/pdf",
-            "application/msword", "application/vnd.openxmlformats-officedocument.wordprocessingml.document",
-            "application/vnd.ms-excel", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet",
-            "text/plain"
-    );
+    private final String contentType;
+    // Dung lượng đã biết (khai báo hoặc đã đọc được)
+    private final long size;
+    // Phần đầu nội dung file
+    private final byte[] head;
 
     // Giới hạn dung lượng tối đa (5MB)
-    private static final long MAX_FILE_SIZE = 5 * 1024 * 1024;
+    public static final long MAX_FILE_SIZE = 5 * 1024 * 1024;
+
+    // Số byte đầu cần đọc để kiểm tra nội dung
+    public static final int HEAD_SIZE = 8 * 1024;
+
+    private static final byte[] OLE = {(byte) 0xD0, (byte) 0xCF, 0x11, (byte) 0xE0, (byte) 0xA1, (byte) 0xB1, 0x1A, (byte) 0xE1};
+    private static final byte[] ZIP = {0x50, 0x4B, 0x03, 0x04};
+
+    // Magic bytes của từng loại; doc/xls cùng định dạng OLE, docx/xlsx cùng định dạng ZIP
+    private static final Map<String, Predicate<byte[]>> SIGNATURES = Map.of(
+            "image/jpeg", head -> startsWith(head, new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF}),
+            "image/png", head -> startsWith(head, new byte[]{(byte) 0x89, 0x50, 0x4E, 0x47, 0x0D, 0x0A, 0x1A, 0x0A}),
+            "image/gif", head -> startsWith(head, "GIF87a".getBytes(StandardCharsets.US_ASCII))
+                    || startsWith(head, "GIF89a".getBytes(StandardCharsets.US_ASCII)),
+            "application/pdf", head -> startsWith(head, "%PDF-".getBytes(StandardCharsets.US_ASCII)),
+            "application/msword", head -> startsWith(head, OLE),
+            "application/vnd.ms-excel", head -> startsWith(head, OLE),
+            "application/vnd.openxmlformats-officedocument.wordprocessingml.document", head -> startsWith(head, ZIP),
+            "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet", head -> startsWith(head, ZIP),
+            "text/plain", FileMustBeValid::isText
+    );
 
     @Override
     public String getValidateField() {
@@ -30,29 +51,46 @@ public class FileMustBeValid extends BaseRule {
 
     @Override
     public boolean isValid() {
-        if (file.isEmpty()) {
+        if (size == 0 || head.length == 0) {
             return false;
         }
-        if (!ALLOWED_TYPES.contains(file.getContentType())) {
+        if (AttachmentFileType.fromMimeType(contentType).isEmpty()) {
             return false;
         }
-        if (file.getSize() > MAX_FILE_SIZE) {
+        if (size > MAX_FILE_SIZE) {
             return false;
         }
-        return true;
+        return SIGNATURES.get(contentType).test(head);
     }
 
     @Override
     public String getMessage() {
-        if (file.isEmpty()) {
+        if (size == 0 || head.length == 0) {
             return "File không được để trống.";
         }
-        if (!ALLOWED_TYPES.contains(file.getContentType())) {
-            return "Loại file không được hỗ trợ: " + file.getContentType();
+        if (AttachmentFileType.fromMimeType(contentType).isEmpty()) {
+            return "Loại file không được hỗ trợ: " + contentType;
         }
-        if (file.getSize() > MAX_FILE_SIZE) {
+        if (size > MAX_FILE_SIZE) {
             return "File vượt quá dung lượng tối đa (5MB).";
         }
+        if (!SIGNATURES.get(contentType).test(head)) {
+            return "Nội dung file không khớp với loại file: " + contentType;
+        }
         return "File không hợp lệ.";
     }
-}
\ No newline at end of file
+
+    private static boolean startsWith(byte[] head, byte[] prefix) {
+        return head.length >= prefix.length && Arrays.equals(head, 0, prefix.length, prefix, 0, prefix.length);
+    }
+
+    // File văn bản không chứa ký tự điều khiển ngoài tab và xuống dòng
+    private static boolean isText(byte[] head) {
+        for (byte b : head) {
+            if ((b >= 0 && b < 0x20 && b != '\t' && b != '\n' && b != '\r') || b == 0x7F) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -1,20 +1,20 @@
 package com.laklu.pos.validator;
 
-import com.laklu.pos.entities.ReservationTable;
 import com.laklu.pos.entities.Table;
-import com.laklu.pos.services.ReservationByDateResolver;
+import com.laklu.pos.services.TableOccupancyResolver;
 import lombok.AllArgsConstructor;
 
-import java.time.LocalDate;
-import java.util.List;
+import java.time.LocalDateTime;
 
 @AllArgsConstructor
 public class TableMustBeAvailable extends BaseRule {
     private final Table table;
 
-    private final LocalDate dateCheck;
+    private final LocalDateTime from;
 
-    private ReservationByDateResolver reservationByDateResolver;
+    private final LocalDateTime to;
+
+    private TableOccupancyResolver tableOccupancyResolver;
 
     @Override
     public String getValidateField() {
@@ -23,13 +23,11 @@ public class TableMustBeAvailable extends BaseRule {
 
     @Override
     public boolean isValid() {
-        LocalDate now = dateCheck != null ? dateCheck : LocalDate.now();
-        List<ReservationTable> reservationTables = reservationByDateResolver.resolveReservationsDate(now, List.of(table));
-        return reservationTables.isEmpty();
+        return !tableOccupancyResolver.resolveOccupiedTableIds(from, to, null).contains(table.getId());
     }
 
     @Override
     public String getMessage() {
-        return "Bàn đã được đặt và chưa hoàn thành vào ngày này, vui lòng chọn bàn khác!";
+        return "Bàn đã được đặt trong khung giờ này, vui lòng chọn bàn hoặc giờ khác!";
     }
-}
\ No newline at end of file
+}
@@ -1,27 +1,33 @@
 package com.laklu.pos.validator;
 
 import com.laklu.pos.entities.Table;
-import com.laklu.pos.services.ReservationByDateResolver;
+import com.laklu.pos.services.TableOccupancyResolver;
 
-import java.time.LocalDate;
-import java.util.HashSet;
+import java.time.LocalDateTime;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
 public class TablesMustBeAvailable extends BaseRule {
     private final List<Table> tables;
 
-    private final LocalDate dateCheck;
+    private final LocalDateTime from;
 
-    private final ReservationByDateResolver reservationByDateResolver;
+    private final LocalDateTime to;
+
+    private final Integer excludeReservationId;
+
+    private final TableOccupancyResolver tableOccupancyResolver;
 
     private final Set<String> invalidTableNames;
 
-    public TablesMustBeAvailable(List<Table> tables, LocalDate dateCheck, ReservationByDateResolver reservationByDateResolver) {
+    public TablesMustBeAvailable(List<Table> tables, LocalDateTime from, LocalDateTime to, Integer excludeReservationId, TableOccupancyResolver tableOccupancyResolver) {
         this.tables = tables;
-        this.dateCheck = dateCheck;
-        this.reservationByDateResolver = reservationByDateResolver;
-        this.invalidTableNames = new HashSet<>();
+        this.from = from;
+        this.to = to;
+        this.excludeReservationId = excludeReservationId;
+        this.tableOccupancyResolver = tableOccupancyResolver;
+        this.invalidTableNames = new LinkedHashSet<>();
     }
 
     @Override
@@ -31,18 +37,16 @@ public class TablesMustBeAvailable extends BaseRule {
 
     @Override
     public boolean isValid() {
-        LocalDate date = dateCheck != null ? dateCheck : LocalDate.now();
-        return tables.stream().allMatch((table) -> {
-            if (!new TableMustBeAvailable(table, date, reservationByDateResolver).isValid()) {
-                this.invalidTableNames.add(table.getTableNumber());
-                return false;
-            }
-            return true;
-        });
+        // Lấy các bàn đã có người giữ trùng khung giờ một lần rồi kiểm tra từng bàn trong bộ nhớ
+        Set<Integer> occupiedTableIds = tableOccupancyResolver.resolveOccupiedTableIds(from, to, excludeReservationId);
+        tables.stream()
+                .filter(table -> occupiedTableIds.contains(table.getId()))
+                .forEach(table -> this.invalidTableNames.add(table.getTableNumber()));
+        return invalidTableNames.isEmpty();
     }
 
     @Override
     public String getMessage() {
-        return String.join(",", invalidTableNames) + " đã được đặt và chưa hoàn thành vào ngày này, vui lòng chọn bàn khác!";
+        return String.join(",", invalidTableNames) + " đã được đặt trong khung giờ này, vui lòng chọn bàn hoặc giờ khác!";
     }
-}
\ No newline at end of file
+}
@@ -2,7 +2,27 @@ package com.laklu.pos.validator;
 
 import com.laklu.pos.enums.OrderItemStatus;
 
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
 public class ValidOrderItemStatus extends BaseRule{
+    // Bảng chuyển trạng thái: PENDING -> DOING/CANCELLED, DOING -> COMPLETED, COMPLETED -> DELIVERED
+    private static final Map<OrderItemStatus, Set<OrderItemStatus>> TRANSITIONS = new EnumMap<>(OrderItemStatus.class);
+    // Bảng ngược: trạng thái đích -> các trạng thái nguồn hợp lệ, dùng cho cập nhật hàng loạt
+    private static final Map<OrderItemStatus, Set<OrderItemStatus>> SOURCES = new EnumMap<>(OrderItemStatus.class);
+
+    static {
+        TRANSITIONS.put(OrderItemStatus.PENDING, EnumSet.of(OrderItemStatus.DOING, OrderItemStatus.CANCELLED));
+        TRANSITIONS.put(OrderItemStatus.DOING, EnumSet.of(OrderItemStatus.COMPLETED));
+        TRANSITIONS.put(OrderItemStatus.COMPLETED, EnumSet.of(OrderItemStatus.DELIVERED));
+
+        TRANSITIONS.forEach((source, targets) -> targets.forEach(target ->
+                SOURCES.computeIfAbsent(target, key -> EnumSet.noneOf(OrderItemStatus.class)).add(source)));
+    }
+
     private final OrderItemStatus currentStatus;
     private final OrderItemStatus newStatus;
     private final String field;
@@ -13,6 +33,15 @@ public class ValidOrderItemStatus extends BaseRule{
         this.field = field;
     }
 
+    /**
+     * Các trạng thái được phép chuyển sang newStatus
+     * @param newStatus Trạng thái đích
+     * @return Tập trạng thái nguồn, rỗng nếu không có chuyển đổi nào hợp lệ
+     */
+    public static Set<OrderItemStatus> allowedSourcesFor(OrderItemStatus newStatus) {
+        return Collections.unmodifiableSet(SOURCES.getOrDefault(newStatus, EnumSet.noneOf(OrderItemStatus.class)));
+    }
+
     @Override
     public String getValidateField() {
         return this.field;
@@ -20,10 +49,7 @@ public class ValidOrderItemStatus extends BaseRule{
 
     @Override
     public boolean isValid() {
-        // Chỉ cho phép cập nhật từ PENDING -> DOING, DOING -> COMPLETED -> DELIVERED, hoặc PENDING -> CANCELLED
-        return (currentStatus == OrderItemStatus.PENDING && (newStatus == OrderItemStatus.DOING || newStatus == OrderItemStatus.CANCELLED))
-            || (currentStatus == OrderItemStatus.DOING && newStatus == OrderItemStatus.COMPLETED)
-            || (currentStatus == OrderItemStatus.COMPLETED && newStatus == OrderItemStatus.DELIVERED);
+        return TRANSITIONS.getOrDefault(currentStatus, Set.of()).contains(newStatus);
     }
 
     @Override
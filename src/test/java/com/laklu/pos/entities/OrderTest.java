@@ -0,0 +1,99 @@
+package com.laklu.pos.entities;
+
+import com.laklu.pos.enums.OrderItemStatus;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OrderTest {
+
+    @Test
+    void recalculateSubtotal_sumsNonCancelledLineTotals() {
+        Order order = Order.builder()
+                .orderItems(new ArrayList<>(List.of(
+                        item("45000", 2, OrderItemStatus.DELIVERED),
+                        item("10000", 3, OrderItemStatus.PENDING),
+                        item("99000", 1, OrderItemStatus.CANCELLED))))
+                .build();
+
+        assertThat(order.recalculateSubtotal()).isEqualByComparingTo("120000");
+        assertThat(order.getSubtotal()).isEqualByComparingTo("120000");
+    }
+
+    @Test
+    void recalculateSubtotal_isZeroWithoutItems() {
+        Order order = Order.builder().build();
+
+        assertThat(order.recalculateSubtotal()).isEqualByComparingTo("0");
+    }
+
+    @Test
+    void addToSubtotal_appliesDelta() {
+        Order order = Order.builder().subtotal(new BigDecimal("50000")).build();
+
+        order.addToSubtotal(new BigDecimal("20000"));
+        order.addToSubtotal(new BigDecimal("-45000"));
+
+        assertThat(order.getSubtotal()).isEqualByComparingTo("25000");
+    }
+
+    @Test
+    void addToSubtotal_leavesLegacyOrderUncomputed() {
+        Order order = Order.builder().build();
+
+        order.addToSubtotal(new BigDecimal("20000"));
+
+        assertThat(order.getSubtotal()).isNull();
+    }
+
+    @Test
+    void onCreate_computesMissingSubtotal_butKeepsRunningOne() {
+        Order fresh = Order.builder()
+                .orderItems(new ArrayList<>(List.of(item("45000", 2, OrderItemStatus.DELIVERED))))
+                .build();
+        fresh.onCreate();
+        assertThat(fresh.getSubtotal()).isEqualByComparingTo("90000");
+
+        Order running = Order.builder()
+                .subtotal(new BigDecimal("10000"))
+                .orderItems(new ArrayList<>(List.of(item("45000", 2, OrderItemStatus.DELIVERED))))
+                .build();
+        running.onCreate();
+        assertThat(running.getSubtotal()).isEqualByComparingTo("10000");
+    }
+
+    @Test
+    void lineTotal_usesSnapshotPrice_andFallsBackToMenuPriceForLegacyItems() {
+        MenuItem menuItem = new MenuItem();
+        menuItem.setPrice(new BigDecimal("60000"));
+        OrderItem snapshot = OrderItem.builder()
+                .menuItem(menuItem)
+                .unitPrice(new BigDecimal("45000"))
+                .quantity(2)
+                .status(OrderItemStatus.DELIVERED)
+                .build();
+        OrderItem legacy = OrderItem.builder()
+                .menuItem(menuItem)
+                .quantity(2)
+                .status(OrderItemStatus.DELIVERED)
+                .build();
+
+        assertThat(snapshot.calculateLineTotal()).isEqualByComparingTo("90000");
+        assertThat(legacy.calculateLineTotal()).isEqualByComparingTo("120000");
+
+        legacy.setStatus(OrderItemStatus.CANCELLED);
+        assertThat(legacy.calculateLineTotal()).isEqualByComparingTo("0");
+    }
+
+    private static OrderItem item(String unitPrice, int quantity, OrderItemStatus status) {
+        return OrderItem.builder()
+                .unitPrice(new BigDecimal(unitPrice))
+                .quantity(quantity)
+                .status(status)
+                .build();
+    }
+}
@@ -0,0 +1,196 @@
+package com.laklu.pos.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AttachmentFileServerTest {
+
+    private static final String CONTENT = "0123456789";
+
+    @TempDir
+    Path directory;
+
+    private final AttachmentFileServer fileServer = new AttachmentFileServer();
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        file = Files.writeString(directory.resolve("abc.png"), CONTENT, StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    void withoutRange_servesWholeFileWithCachingHeaders() throws IOException {
+        MockHttpServletResponse response = serve(get(), false);
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentAsString()).isEqualTo(CONTENT);
+        assertThat(response.getContentLengthLong()).isEqualTo(10);
+        assertThat(response.getHeader(HttpHeaders.ACCEPT_RANGES)).isEqualTo("bytes");
+        assertThat(response.getHeader(HttpHeaders.CACHE_CONTROL)).contains("immutable");
+        assertThat(response.getHeader(HttpHeaders.ETAG)).isEqualTo("\"abc.png-10\"");
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "abc.png, image/png",
+            "abc.png.thumb.jpg, image/jpeg",
+            "legacy.JPEG, image/jpeg"
+    })
+    void image_isServedInlineWithWhitelistedType(String name, String contentType) throws IOException {
+        Path image = Files.writeString(directory.resolve(name), CONTENT, StandardCharsets.US_ASCII);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        fileServer.serve(image, true, false, get(), response);
+
+        assertThat(response.getContentType()).isEqualTo(contentType);
+        assertThat(response.getHeader(HttpHeaders.CONTENT_DISPOSITION)).isNull();
+        assertThat(response.getHeader("X-Content-Type-Options")).isEqualTo("nosniff");
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "abc.txt, text/plain",
+            "abc.pdf, application/pdf",
+            "uuid_x.html, application/octet-stream",
+            "uuid_x.svg, application/octet-stream",
+            "noextension, application/octet-stream"
+    })
+    void nonImage_isServedAsDownloadWithWhitelistedType(String name, String contentType) throws IOException {
+        Path document = Files.writeString(directory.resolve(name), CONTENT, StandardCharsets.US_ASCII);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        fileServer.serve(document, true, false, get(), response);
+
+        assertThat(response.getContentType()).isEqualTo(contentType);
+        assertThat(response.getHeader(HttpHeaders.CONTENT_DISPOSITION)).isEqualTo("attachment");
+        assertThat(response.getHeader("X-Content-Type-Options")).isEqualTo("nosniff");
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "bytes=2-5, 2, 5",
+            "bytes=7-, 7, 9",
+            "bytes=-3, 7, 9",
+            "bytes=-20, 0, 9",
+            "bytes=5-100, 5, 9",
+            "bytes=9-9, 9, 9",
+            "'bytes=0-1,4-5', 0, 1",
+            "bytes= 3 - 4 , 3, 4"
+    })
+    void satisfiableRange_servesPartialContent(String range, int start, int end) throws IOException {
+        for (boolean keepHot : new boolean[]{false, true}) {
+            MockHttpServletRequest request = get();
+            request.addHeader(HttpHeaders.RANGE, range);
+
+            MockHttpServletResponse response = serve(request, keepHot);
+
+            assertThat(response.getStatus()).isEqualTo(206);
+            assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes " + start + "-" + end + "/10");
+            assertThat(response.getContentLengthLong()).isEqualTo(end - start + 1);
+            assertThat(response.getContentAsString()).isEqualTo(CONTENT.substring(start, end + 1));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"bytes=10-", "bytes=5-2", "bytes=-0", "bytes=a-b", "bytes=5"})
+    void unsatisfiableOrMalformedRange_isRejected(String range) throws IOException {
+        MockHttpServletRequest request = get();
+        request.addHeader(HttpHeaders.RANGE, range);
+
+        MockHttpServletResponse response = serve(request, false);
+
+        assertThat(response.getStatus()).isEqualTo(416);
+        assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes */10");
+    }
+
+    @Test
+    void rangeInUnknownUnit_isIgnored() throws IOException {
+        MockHttpServletRequest request = get();
+        request.addHeader(HttpHeaders.RANGE, "items=0-1");
+
+        MockHttpServletResponse response = serve(request, false);
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentAsString()).isEqualTo(CONTENT);
+    }
+
+    @Test
+    void rangeWithStaleIfRange_servesWholeFile() throws IOException {
+        MockHttpServletRequest request = get();
+        request.addHeader(HttpHeaders.RANGE, "bytes=2-5");
+        request.addHeader(HttpHeaders.IF_RANGE, "\"abc.png-9\"");
+
+        MockHttpServletResponse response = serve(request, false);
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentAsString()).isEqualTo(CONTENT);
+    }
+
+    @Test
+    void rangeWithMatchingIfRange_servesPartialContent() throws IOException {
+        MockHttpServletRequest request = get();
+        request.addHeader(HttpHeaders.RANGE, "bytes=2-5");
+        request.addHeader(HttpHeaders.IF_RANGE, "\"abc.png-10\"");
+
+        MockHttpServletResponse response = serve(request, false);
+
+        assertThat(response.getStatus()).isEqualTo(206);
+        assertThat(response.getContentAsString()).isEqualTo("2345");
+    }
+
+    @Test
+    void headRequest_sendsLengthWithoutBody() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("HEAD", "/attachments/abc.png");
+        request.addHeader(HttpHeaders.RANGE, "bytes=2-5");
+
+        MockHttpServletResponse response = serve(request, false);
+
+        assertThat(response.getStatus()).isEqualTo(206);
+        assertThat(response.getContentLengthLong()).isEqualTo(4);
+        assertThat(response.getContentAsByteArray()).isEmpty();
+    }
+
+    @Test
+    void matchingEtag_returnsNotModified() throws IOException {
+        MockHttpServletRequest request = get();
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"abc.png-10\"");
+
+        MockHttpServletResponse response = serve(request, false);
+
+        assertThat(response.getStatus()).isEqualTo(304);
+        assertThat(response.getContentAsByteArray()).isEmpty();
+    }
+
+    @Test
+    void missingFile_returnsNotFound() throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        fileServer.serve(directory.resolve("missing.png"), true, false, get(), response);
+
+        assertThat(response.getStatus()).isEqualTo(404);
+    }
+
+    private MockHttpServletResponse serve(MockHttpServletRequest request, boolean keepHot) throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        fileServer.serve(file, true, keepHot, request, response);
+        return response;
+    }
+
+    private static MockHttpServletRequest get() {
+        return new MockHttpServletRequest("GET", "/attachments/abc.png");
+    }
+}
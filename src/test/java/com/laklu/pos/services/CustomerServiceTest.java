@@ -0,0 +1,75 @@
+package com.laklu.pos.services;
+
+import com.laklu.pos.entities.Customer;
+import com.laklu.pos.entities.Reservation;
+import com.laklu.pos.repositories.CustomerRepository;
+import com.laklu.pos.repositories.PaymentRepository;
+import com.laklu.pos.repositories.ReservationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerServiceTest {
+
+    @Mock
+    private CustomerRepository customerRepository;
+    @Mock
+    private ReservationRepository reservationRepository;
+    @Mock
+    private PaymentRepository paymentRepository;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private CustomerService customerService;
+
+    @BeforeEach
+    void setUp() {
+        customerService = new CustomerService(customerRepository, reservationRepository, paymentRepository, transactionManager);
+    }
+
+    @Test
+    void linkExistingReservations_skipsWalkInReservations() {
+        LocalDateTime checkIn = LocalDateTime.of(2026, 10, 18, 19, 0);
+        when(reservationRepository.findUnlinkedCustomerFields()).thenReturn(List.of(
+                new Object[]{1, "Khách lẻ", "000-000-0000", Reservation.Status.COMPLETED, checkIn, null},
+                new Object[]{2, "An", "0912 345 678", Reservation.Status.COMPLETED, checkIn, checkIn.plusHours(2)},
+                new Object[]{3, "An Nguyễn", "+84912345678", Reservation.Status.PENDING, checkIn.plusDays(1), null}));
+        when(paymentRepository.sumPaidAmountByReservationIds(List.of(2)))
+                .thenReturn(List.<Object[]>of(new Object[]{2, new BigDecimal("150000")}));
+        when(customerRepository.findByPhone("0912345678"))
+                .thenReturn(Optional.of(Customer.builder().id(5).phone("0912345678").name("An Nguyễn").build()));
+        when(reservationRepository.linkCustomer(List.of(2, 3), 5)).thenReturn(2);
+
+        customerService.linkExistingReservations();
+
+        // Đặt bàn vãng lai không được tính tiền và không được gắn
+        verify(paymentRepository).sumPaidAmountByReservationIds(List.of(2));
+        verify(customerRepository).addVisits(5, 1, new BigDecimal("150000"), checkIn.plusHours(2));
+        verify(reservationRepository).linkCustomer(List.of(2, 3), 5);
+        verifyNoMoreInteractions(reservationRepository);
+    }
+
+    @Test
+    void linkExistingReservations_onlyWalkIns_doesNotQueryPayments() {
+        when(reservationRepository.findUnlinkedCustomerFields()).thenReturn(List.<Object[]>of(
+                new Object[]{1, "Khách lẻ", "000 000 0000", Reservation.Status.COMPLETED, LocalDateTime.now(), null}));
+
+        customerService.linkExistingReservations();
+
+        verifyNoInteractions(paymentRepository, customerRepository);
+        verify(reservationRepository, never()).linkCustomer(anyCollection(), any());
+    }
+}
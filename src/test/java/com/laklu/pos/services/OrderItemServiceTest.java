@@ -0,0 +1,203 @@
+package com.laklu.pos.services;
+
+import com.laklu.pos.dataObjects.MenuItemSnapshot;
+import com.laklu.pos.dataObjects.request.NewOrderItemRequest;
+import com.laklu.pos.dataObjects.request.UpdateOrderItemQuantity;
+import com.laklu.pos.dataObjects.request.UpdateStatusOrderItemRequest;
+import com.laklu.pos.entities.MenuItem;
+import com.laklu.pos.entities.Order;
+import com.laklu.pos.entities.OrderItem;
+import com.laklu.pos.enums.OrderItemStatus;
+import com.laklu.pos.exceptions.RuleNotValidException;
+import com.laklu.pos.repositories.OrderItemRepository;
+import com.laklu.pos.repositories.OrderRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OrderItemServiceTest {
+
+    @Mock
+    private OrderItemRepository orderItemRepository;
+    @Mock
+    private MenuItemService menuItemService;
+    @Mock
+    private MenuItemSnapshotCache menuItemSnapshotCache;
+    @Mock
+    private ActivityLogService activityLogService;
+    @Mock
+    private ProfileService profileService;
+    @Mock
+    private OrderRepository orderRepository;
+
+    @InjectMocks
+    private OrderItemService orderItemService;
+
+    @Test
+    void createNewItem_snapshotsPrice_andAddsLineTotalToSubtotal() {
+        Order order = order("20000");
+        MenuItem menuItem = new MenuItem();
+        when(menuItemSnapshotCache.findOrFail(1)).thenReturn(snapshot(1, "45000"));
+        when(menuItemService.getReference(1)).thenReturn(menuItem);
+        when(orderItemRepository.findByOrderAndMenuItem(order, menuItem)).thenReturn(Optional.empty());
+        when(orderItemRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        OrderItem created = orderItemService.createNewItemByOrderId(order, new NewOrderItemRequest(1, 2));
+
+        assertThat(created.getUnitPrice()).isEqualByComparingTo("45000");
+        assertThat(order.getSubtotal()).isEqualByComparingTo("110000");
+        verify(orderRepository).save(order);
+    }
+
+    @Test
+    void createNewItem_forExistingLine_addsOnlyTheExtraQuantity() {
+        Order order = order("90000");
+        MenuItem menuItem = new MenuItem();
+        OrderItem existing = item(order, "45000", 2, OrderItemStatus.DELIVERED);
+        when(menuItemSnapshotCache.findOrFail(1)).thenReturn(snapshot(1, "50000"));
+        when(menuItemService.getReference(1)).thenReturn(menuItem);
+        when(orderItemRepository.findByOrderAndMenuItem(order, menuItem)).thenReturn(Optional.of(existing));
+        when(orderItemRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        orderItemService.createNewItemByOrderId(order, new NewOrderItemRequest(1, 1));
+
+        // Dòng đã có giữ giá đã chụp, không theo giá mới trong menu
+        assertThat(existing.getQuantity()).isEqualTo(3);
+        assertThat(order.getSubtotal()).isEqualByComparingTo("135000");
+    }
+
+    @Test
+    void updateQuantity_appliesLineTotalDelta() {
+        Order order = order("100000");
+        OrderItem orderItem = item(order, "10000", 5, OrderItemStatus.PENDING);
+        when(orderItemRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        orderItemService.updateOrderItemQuantity(orderItem, new UpdateOrderItemQuantity(2));
+
+        assertThat(order.getSubtotal()).isEqualByComparingTo("70000");
+        verify(orderRepository).save(order);
+    }
+
+    @Test
+    void updateStatus_toCancelled_removesLineFromSubtotal() {
+        Order order = order("100000");
+        OrderItem orderItem = item(order, "10000", 3, OrderItemStatus.PENDING);
+        when(orderItemRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        orderItemService.updateOrderItemStatus(orderItem, new UpdateStatusOrderItemRequest("CANCELLED"));
+
+        assertThat(order.getSubtotal()).isEqualByComparingTo("70000");
+    }
+
+    @Test
+    void updateStatus_betweenBillableStatuses_leavesSubtotalUnsaved() {
+        Order order = order("100000");
+        OrderItem orderItem = item(order, "10000", 3, OrderItemStatus.PENDING);
+        when(orderItemRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        orderItemService.updateOrderItemStatus(orderItem, new UpdateStatusOrderItemRequest("DOING"));
+
+        assertThat(order.getSubtotal()).isEqualByComparingTo("100000");
+        verifyNoInteractions(orderRepository);
+    }
+
+    @Test
+    void cancelIgnoreStatus_onLegacyOrder_leavesSubtotalForLaterRecalculation() {
+        Order order = order(null);
+        OrderItem orderItem = item(order, "10000", 3, OrderItemStatus.DELIVERED);
+        when(orderItemRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        orderItemService.cancelIgnoreStatus(orderItem);
+
+        assertThat(order.getSubtotal()).isNull();
+        verifyNoInteractions(orderRepository);
+    }
+
+    @Test
+    void transitionToCancelled_subtractsAndCancelsOnlyTheLockedItems() {
+        List<Integer> ids = List.of(1, 2, 3);
+        // Món 2 vừa bị yêu cầu khác hủy nên không còn được khóa ở trạng thái nguồn
+        when(orderItemRepository.lockIdsByStatusIn(ids, List.of("PENDING"))).thenReturn(List.of(1, 3));
+        when(orderItemRepository.transitionStatus(eq(List.of(1, 3)), eq(Set.of(OrderItemStatus.PENDING)),
+                eq(OrderItemStatus.CANCELLED), any())).thenReturn(2);
+
+        int updated = orderItemService.transitionOrderItemsStatus(ids, OrderItemStatus.CANCELLED);
+
+        assertThat(updated).isEqualTo(2);
+        InOrder inOrder = inOrder(orderRepository, orderItemRepository);
+        inOrder.verify(orderRepository).subtractLineTotalsOf(List.of(1, 3));
+        inOrder.verify(orderItemRepository).transitionStatus(eq(List.of(1, 3)), any(), eq(OrderItemStatus.CANCELLED), any());
+    }
+
+    @Test
+    void transitionToCancelled_withNothingLocked_touchesNoSubtotal() {
+        List<Integer> ids = List.of(1, 2);
+        when(orderItemRepository.lockIdsByStatusIn(ids, List.of("PENDING"))).thenReturn(List.of());
+
+        int updated = orderItemService.transitionOrderItemsStatus(ids, OrderItemStatus.CANCELLED);
+
+        assertThat(updated).isZero();
+        verifyNoInteractions(orderRepository);
+        verify(orderItemRepository, never()).transitionStatus(any(), any(), any(), any());
+    }
+
+    @Test
+    void transitionToBillableStatus_onlyUpdatesItemsInAllowedSourceStatuses() {
+        List<Integer> ids = List.of(1, 2);
+        when(orderItemRepository.transitionStatus(eq(ids), eq(Set.of(OrderItemStatus.DOING)),
+                eq(OrderItemStatus.COMPLETED), any())).thenReturn(1);
+
+        int updated = orderItemService.transitionOrderItemsStatus(ids, OrderItemStatus.COMPLETED);
+
+        assertThat(updated).isEqualTo(1);
+        verify(orderItemRepository, never()).lockIdsByStatusIn(any(), any());
+        verifyNoInteractions(orderRepository);
+    }
+
+    @Test
+    void transitionToStatusWithoutSources_isRejected() {
+        assertThatThrownBy(() -> orderItemService.transitionOrderItemsStatus(List.of(1), OrderItemStatus.PENDING))
+                .isInstanceOf(RuleNotValidException.class);
+        verifyNoInteractions(orderItemRepository, orderRepository);
+    }
+
+    private static Order order(String subtotal) {
+        return Order.builder()
+                .id(10)
+                .subtotal(subtotal == null ? null : new BigDecimal(subtotal))
+                .orderItems(new ArrayList<>())
+                .build();
+    }
+
+    private static OrderItem item(Order order, String unitPrice, int quantity, OrderItemStatus status) {
+        OrderItem orderItem = OrderItem.builder()
+                .order(order)
+                .unitPrice(new BigDecimal(unitPrice))
+                .quantity(quantity)
+                .status(status)
+                .build();
+        order.getOrderItems().add(orderItem);
+        return orderItem;
+    }
+
+    private static MenuItemSnapshot snapshot(int id, String price) {
+        return new MenuItemSnapshot(id, new BigDecimal(price), true, 1, 1L, id, "Món " + id, null, null,
+                false, null, null);
+    }
+}
@@ -0,0 +1,221 @@
+package com.laklu.pos.services;
+
+import com.laklu.pos.dataObjects.request.MergeOrderRequest;
+import com.laklu.pos.dataObjects.request.OrderItemSplitRequest;
+import com.laklu.pos.dataObjects.request.OrderSplitRequest;
+import com.laklu.pos.dataObjects.response.OrderResponse;
+import com.laklu.pos.entities.*;
+import com.laklu.pos.enums.OrderItemStatus;
+import com.laklu.pos.enums.OrderStatus;
+import com.laklu.pos.mapper.OrderMapper;
+import com.laklu.pos.repositories.OrderRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OrderServiceTest {
+
+    @Mock
+    private OrderRepository orderRepository;
+    @Mock
+    private ReservationService reservationService;
+    @Mock
+    private MenuItemService menuItemService;
+    @Mock
+    private MenuItemSnapshotCache menuItemSnapshotCache;
+    @Mock
+    private OrderItemService orderItemService;
+    @Mock
+    private OrderMapper orderMapper;
+    @Mock
+    private TableService tableService;
+
+    @InjectMocks
+    private OrderService orderService;
+
+    private final Reservation reservation = Reservation.builder().id(7).build();
+    private final Table table = Table.builder().id(3).tableNumber("A3").build();
+
+    @Test
+    void mergeOrders_combinesSameMenuItemAndPrice_andSkipsCancelledItems() {
+        MenuItem pho = menuItem(1, "45000");
+        MenuItem tra = menuItem(2, "10000");
+        Order first = order(10, item(100, pho, "45000", 2, OrderItemStatus.DELIVERED),
+                item(101, tra, "10000", 1, OrderItemStatus.CANCELLED));
+        Order second = order(11, item(110, pho, "45000.00", 3, OrderItemStatus.PENDING),
+                item(111, tra, "10000", 4, OrderItemStatus.DELIVERED));
+        when(orderRepository.findAllById(List.of(10, 11))).thenReturn(List.of(first, second));
+        stubResponses();
+
+        orderService.mergeOrders(new MergeOrderRequest(List.of(10, 11), reservation.getId()), new User());
+
+        Order merged = captureSavedOrders().get(0);
+        assertThat(merged.getStatus()).isEqualTo(OrderStatus.PENDING);
+        assertThat(merged.getOrderItems()).hasSize(2);
+        assertThat(merged.getOrderItems().get(0).getMenuItem()).isSameAs(pho);
+        assertThat(merged.getOrderItems().get(0).getQuantity()).isEqualTo(5);
+        // Món đã hủy trong đơn đầu không được chuyển sang
+        assertThat(merged.getOrderItems().get(1).getMenuItem()).isSameAs(tra);
+        assertThat(merged.getOrderItems().get(1).getQuantity()).isEqualTo(4);
+        assertThat(merged.getOrderItems()).allSatisfy(item -> {
+            assertThat(item.getOrder()).isSameAs(merged);
+            assertThat(item.getStatus()).isEqualTo(OrderItemStatus.DELIVERED);
+        });
+
+        verify(orderItemService).cancelAllByOrderIds(List.of(10, 11));
+        verify(orderRepository).cancelByIds(eq(List.of(10, 11)), any());
+    }
+
+    @Test
+    void mergeOrders_keepsDifferentSnapshotPricesOnSeparateLines() {
+        MenuItem pho = menuItem(1, "50000");
+        Order first = order(10, item(100, pho, "45000", 1, OrderItemStatus.DELIVERED));
+        Order second = order(11, item(110, pho, "50000", 2, OrderItemStatus.DELIVERED));
+        when(orderRepository.findAllById(List.of(10, 11))).thenReturn(List.of(first, second));
+        stubResponses();
+
+        orderService.mergeOrders(new MergeOrderRequest(List.of(10, 11), reservation.getId()), new User());
+
+        Order merged = captureSavedOrders().get(0);
+        assertThat(merged.getOrderItems())
+                .extracting(OrderItem::getUnitPrice, OrderItem::getQuantity)
+                .containsExactly(
+                        tuple(new BigDecimal("45000"), 1),
+                        tuple(new BigDecimal("50000"), 2));
+    }
+
+    @Test
+    void mergeOrders_rejectsOrdersFromAnotherReservation() {
+        Order first = order(10, item(100, menuItem(1, "45000"), "45000", 1, OrderItemStatus.DELIVERED));
+        Order other = order(11, item(110, menuItem(1, "45000"), "45000", 1, OrderItemStatus.DELIVERED));
+        other.setReservation(Reservation.builder().id(99).build());
+        when(orderRepository.findAllById(List.of(10, 11))).thenReturn(List.of(first, other));
+
+        assertThatThrownBy(() -> orderService.mergeOrders(new MergeOrderRequest(List.of(10, 11), reservation.getId()), new User()))
+                .isInstanceOf(IllegalArgumentException.class);
+        verifyNoInteractions(orderItemService);
+        verify(orderRepository, never()).cancelByIds(any(), any());
+    }
+
+    @Test
+    void splitOrder_movesPartialQuantity_removesFullySplitItems_andRecalculatesSubtotal() {
+        MenuItem pho = menuItem(1, "45000");
+        MenuItem tra = menuItem(2, "10000");
+        OrderItem phoItem = item(100, pho, "45000", 3, OrderItemStatus.DELIVERED);
+        OrderItem traItem = item(101, tra, "10000", 2, OrderItemStatus.DELIVERED);
+        Order original = order(10, phoItem, traItem);
+        original.setSubtotal(new BigDecimal("155000"));
+        when(orderRepository.findById(10)).thenReturn(Optional.of(original));
+        stubResponses();
+
+        // Hai yêu cầu cho cùng một món được cộng dồn
+        orderService.splitOrder(new OrderSplitRequest(10, List.of(
+                new OrderItemSplitRequest(100, 1),
+                new OrderItemSplitRequest(101, 2),
+                new OrderItemSplitRequest(100, 1))), new User());
+
+        assertThat(original.getOrderItems()).containsExactly(phoItem);
+        assertThat(phoItem.getQuantity()).isEqualTo(1);
+        assertThat(original.getSubtotal()).isEqualByComparingTo("45000");
+
+        Order newOrder = captureSavedOrders().get(1);
+        assertThat(newOrder.getOrderItems())
+                .extracting(OrderItem::getMenuItem, OrderItem::getQuantity)
+                .containsExactly(
+                        tuple(pho, 2),
+                        tuple(tra, 2));
+        assertThat(newOrder.getOrderItems()).allSatisfy(item -> assertThat(item.getOrder()).isSameAs(newOrder));
+    }
+
+    @Test
+    void splitOrder_rejectsAccumulatedQuantityAboveOriginal_withoutTouchingTheOrder() {
+        OrderItem phoItem = item(100, menuItem(1, "45000"), "45000", 3, OrderItemStatus.DELIVERED);
+        Order original = order(10, phoItem);
+        when(orderRepository.findById(10)).thenReturn(Optional.of(original));
+
+        assertThatThrownBy(() -> orderService.splitOrder(new OrderSplitRequest(10, List.of(
+                new OrderItemSplitRequest(100, 2),
+                new OrderItemSplitRequest(100, 2))), new User()))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(original.getOrderItems()).containsExactly(phoItem);
+        assertThat(phoItem.getQuantity()).isEqualTo(3);
+        verify(orderRepository, never()).save(any());
+    }
+
+    @Test
+    void backfillBusinessDay_groupsOrdersByBusinessDayWithCutoff() {
+        when(orderRepository.findCreatedAtWithoutBusinessDay()).thenReturn(List.of(
+                new Object[]{1, LocalDateTime.of(2026, 10, 18, 20, 0)},
+                new Object[]{2, LocalDateTime.of(2026, 10, 19, 2, 30)},
+                new Object[]{3, LocalDateTime.of(2026, 10, 19, 12, 0)}));
+
+        orderService.backfillBusinessDay();
+
+        verify(orderRepository).updateBusinessDay(List.of(1, 2), LocalDate.of(2026, 10, 18));
+        verify(orderRepository).updateBusinessDay(List.of(3), LocalDate.of(2026, 10, 19));
+        verifyNoMoreInteractions(orderRepository);
+    }
+
+    private void stubResponses() {
+        when(orderMapper.toOrderResponse(any())).thenAnswer(invocation -> new OrderResponse());
+        when(tableService.getTableNumberByReservationId(reservation.getId())).thenReturn(table);
+    }
+
+    private List<Order> captureSavedOrders() {
+        ArgumentCaptor<Order> captor = ArgumentCaptor.forClass(Order.class);
+        verify(orderRepository, atLeastOnce()).save(captor.capture());
+        return captor.getAllValues();
+    }
+
+    private Order order(int id, OrderItem... items) {
+        Order order = Order.builder()
+                .id(id)
+                .reservation(reservation)
+                .status(OrderStatus.PENDING)
+                .orderItems(new ArrayList<>(List.of(items)))
+                .build();
+        for (OrderItem item : items) {
+            item.setOrder(order);
+        }
+        return order;
+    }
+
+    private static OrderItem item(int id, MenuItem menuItem, String unitPrice, int quantity, OrderItemStatus status) {
+        return OrderItem.builder()
+                .id(id)
+                .menuItem(menuItem)
+                .unitPrice(new BigDecimal(unitPrice))
+                .quantity(quantity)
+                .status(status)
+                .build();
+    }
+
+    private static MenuItem menuItem(int id, String price) {
+        Dish dish = new Dish();
+        dish.setName("Món " + id);
+        MenuItem menuItem = new MenuItem();
+        menuItem.setId(id);
+        menuItem.setPrice(new BigDecimal(price));
+        menuItem.setDish(dish);
+        return menuItem;
+    }
+}
@@ -0,0 +1,63 @@
+package com.laklu.pos.services;
+
+import com.laklu.pos.repositories.ReservationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ReservationSearchIndexTest {
+
+    @Mock
+    private ReservationRepository reservationRepository;
+
+    @InjectMocks
+    private ReservationSearchIndex reservationSearchIndex;
+
+    @BeforeEach
+    void setUp() {
+        when(reservationRepository.findSearchableFields()).thenReturn(List.of(
+                new Object[]{1, "Nguyễn Văn An", "0912345678", LocalDateTime.of(2026, 10, 18, 19, 0)},
+                new Object[]{2, "Trần Thị Bình", "0981112223", LocalDateTime.of(2026, 10, 19, 19, 0)},
+                new Object[]{3, "Nguyễn 1", "0000000000", LocalDateTime.of(2026, 10, 17, 19, 0)}));
+        reservationSearchIndex.rebuild();
+    }
+
+    @Test
+    void search_mixedNameAndDigitKeyword_matchesNameOnly() {
+        // Cả hai số điện thoại đều chứa chữ số 1 nhưng không được khớp
+        assertThat(reservationSearchIndex.search("Nguyen 1")).containsExactly(3);
+    }
+
+    @Test
+    void search_nameKeyword_ignoresDiacriticsAndCase() {
+        assertThat(reservationSearchIndex.search("nguyen")).containsExactly(1, 3);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"0912345678", "0912 345 678", "+0912-345.678", "345"})
+    void search_phoneLikeKeyword_matchesPhone(String keyword) {
+        assertThat(reservationSearchIndex.search(keyword)).containsExactly(1);
+    }
+
+    @Test
+    void search_phoneLikeKeywordWithTooFewDigits_doesNotMatchPhone() {
+        assertThat(reservationSearchIndex.search("11")).isEmpty();
+    }
+
+    @Test
+    void search_results_areSortedByCheckInDescending() {
+        assertThat(reservationSearchIndex.search("n")).containsExactly(2, 1, 3);
+    }
+}
@@ -0,0 +1,162 @@
+package com.laklu.pos.services;
+
+import com.laklu.pos.repositories.ReservationTableRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TableOccupancyServiceTest {
+
+    @Mock
+    private ReservationTableRepository reservationTableRepository;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private TableOccupancyService tableOccupancyService;
+
+    private final LocalDate tomorrow = LocalDate.now().plusDays(1);
+    private final List<Object[]> bookings = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        tableOccupancyService = new TableOccupancyService(reservationTableRepository, eventPublisher);
+        ReflectionTestUtils.setField(tableOccupancyService, "windowDays", 30);
+        ReflectionTestUtils.setField(tableOccupancyService, "defaultDurationMinutes", 120);
+    }
+
+    @Test
+    void slotIsHeldFromCheckInUntilEndExclusive() {
+        book(1, 10, at(12, 0), 90);
+        rebuild();
+
+        assertThat(occupied(at(13, 0), at(14, 0))).containsExactly(10);
+        assertThat(occupied(at(11, 0), at(12, 1))).containsExactly(10);
+        // Khung giờ chỉ chạm đầu hoặc cuối không bị coi là trùng
+        assertThat(occupied(at(13, 30), at(15, 0))).isEmpty();
+        assertThat(occupied(at(10, 30), at(12, 0))).isEmpty();
+    }
+
+    @Test
+    void sameTableCanBeBookedForLunchAndDinner() {
+        book(1, 10, at(11, 30), 90);
+        book(2, 10, at(19, 0), 120);
+        rebuild();
+
+        assertThat(occupied(at(14, 0), at(18, 0))).isEmpty();
+        assertThat(occupied(at(18, 0), at(19, 30))).containsExactly(10);
+    }
+
+    @Test
+    void missingDurationUsesDefault_andLongDurationsAreCapped() {
+        book(1, 10, at(18, 0), null);
+        book(2, 11, tomorrow.minusDays(1).atTime(9, 0), 24 * 60);
+        rebuild();
+
+        assertThat(occupied(at(19, 59), at(20, 30))).containsExactly(10);
+        assertThat(occupied(at(20, 0), at(21, 0))).isEmpty();
+        // 24 giờ bị giới hạn còn 12 giờ nên bàn 11 được trả lúc 21:00 hôm nay
+        assertThat(tableOccupancyService.resolveOccupiedTableIds(
+                tomorrow.minusDays(1).atTime(20, 0), tomorrow.minusDays(1).atTime(22, 0), null)).containsExactly(11);
+        assertThat(occupied(at(0, 0), at(1, 0))).isEmpty();
+    }
+
+    @Test
+    void longSlotStartingWellBeforeQueryIsFound() {
+        book(1, 10, at(8, 0), 600);
+        book(2, 11, at(16, 0), 30);
+        rebuild();
+
+        assertThat(occupied(at(17, 0), at(17, 30))).containsExactly(10);
+    }
+
+    @Test
+    void excludedReservationDoesNotConflictWithItself() {
+        book(1, 10, at(12, 0), 90);
+        book(2, 11, at(12, 0), 90);
+        rebuild();
+
+        assertThat(tableOccupancyService.resolveOccupiedTableIds(at(12, 30), at(13, 0), 1)).containsExactly(11);
+    }
+
+    @Test
+    void wholeDayLookupCoversEverySlotOfTheDay() {
+        book(1, 10, at(23, 0), 120);
+        book(2, 11, tomorrow.plusDays(1).atTime(10, 0), 60);
+        rebuild();
+
+        assertThat(tableOccupancyService.resolveOccupiedTableIds(tomorrow, null)).containsExactly(10);
+        assertThat(tableOccupancyService.resolveOccupiedTableIds(tomorrow.plusDays(1), null)).containsExactlyInAnyOrder(10, 11);
+    }
+
+    @Test
+    void rangeOutsideWindowIsResolvedFromDatabase() {
+        rebuild();
+        LocalDateTime checkIn = LocalDate.now().plusDays(60).atTime(12, 0);
+        when(reservationTableRepository.findActiveTableBookings(any(), any())).thenReturn(List.of(
+                new Object[]{1, 10, checkIn, 90},
+                new Object[]{2, 11, checkIn.minusHours(3), 60},
+                new Object[]{3, 12, checkIn, 90}));
+
+        assertThat(tableOccupancyService.resolveOccupiedTableIds(checkIn.plusMinutes(30), checkIn.plusHours(2), 3))
+                .containsExactly(10);
+    }
+
+    @Test
+    void refreshedReservationReleasesItsPreviousSlot() {
+        book(1, 10, at(12, 0), 90);
+        rebuild();
+        when(reservationTableRepository.findActiveTableBookingsByReservationId(1))
+                .thenReturn(List.<Object[]>of(new Object[]{10, at(18, 0), 90}));
+
+        tableOccupancyService.refreshReservation(1);
+
+        assertThat(occupied(at(12, 0), at(13, 0))).isEmpty();
+        assertThat(occupied(at(18, 30), at(19, 0))).containsExactly(10);
+    }
+
+    @Test
+    void refreshOfTodaysReservationPublishesAffectedTables() {
+        LocalDateTime now = LocalDate.now().atTime(12, 0);
+        book(1, 10, now, 90);
+        rebuild();
+        when(reservationTableRepository.findActiveTableBookingsByReservationId(1))
+                .thenReturn(List.<Object[]>of(new Object[]{11, now, 90}));
+
+        tableOccupancyService.refreshReservation(1);
+
+        verify(eventPublisher).publishEvent(new TableOccupancyChangedEvent(Set.of(10, 11)));
+    }
+
+    private void book(int reservationId, int tableId, LocalDateTime checkIn, Integer durationMinutes) {
+        bookings.add(new Object[]{reservationId, tableId, checkIn, durationMinutes});
+    }
+
+    private void rebuild() {
+        when(reservationTableRepository.findActiveTableBookings(any(), any())).thenReturn(bookings);
+        tableOccupancyService.rebuild();
+    }
+
+    private Set<Integer> occupied(LocalDateTime from, LocalDateTime to) {
+        return tableOccupancyService.resolveOccupiedTableIds(from, to, null);
+    }
+
+    private LocalDateTime at(int hour, int minute) {
+        return tomorrow.atTime(hour, minute);
+    }
+}
@@ -0,0 +1,59 @@
+package com.laklu.pos.uiltis;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BusinessDayTest {
+
+    private final BusinessDay businessDay = new BusinessDay();
+
+    @AfterEach
+    void resetDefaults() {
+        businessDay.setCutoffHour(3);
+        businessDay.setEveningStartHour(16);
+    }
+
+    @Test
+    void timesBeforeCutoffBelongToPreviousDay() {
+        assertThat(BusinessDay.of(LocalDateTime.of(2026, 10, 19, 0, 0))).isEqualTo(LocalDate.of(2026, 10, 18));
+        assertThat(BusinessDay.of(LocalDateTime.of(2026, 10, 19, 2, 59, 59))).isEqualTo(LocalDate.of(2026, 10, 18));
+    }
+
+    @Test
+    void cutoffStartsTheNewDay() {
+        assertThat(BusinessDay.of(LocalDateTime.of(2026, 10, 19, 3, 0))).isEqualTo(LocalDate.of(2026, 10, 19));
+        assertThat(BusinessDay.of(LocalDateTime.of(2026, 10, 19, 23, 59))).isEqualTo(LocalDate.of(2026, 10, 19));
+    }
+
+    @Test
+    void cutoffCrossesMonthAndYearBoundaries() {
+        assertThat(BusinessDay.of(LocalDateTime.of(2027, 1, 1, 2, 30))).isEqualTo(LocalDate.of(2026, 12, 31));
+        assertThat(BusinessDay.of(LocalDateTime.of(2028, 3, 1, 1, 0))).isEqualTo(LocalDate.of(2028, 2, 29));
+    }
+
+    @Test
+    void nullTimeHasNoBusinessDay() {
+        assertThat(BusinessDay.of(null)).isNull();
+    }
+
+    @Test
+    void configuredCutoffIsApplied() {
+        businessDay.setCutoffHour(6);
+
+        assertThat(BusinessDay.of(LocalDateTime.of(2026, 10, 19, 5, 0))).isEqualTo(LocalDate.of(2026, 10, 18));
+        assertThat(BusinessDay.of(LocalDateTime.of(2026, 10, 19, 6, 0))).isEqualTo(LocalDate.of(2026, 10, 19));
+    }
+
+    @Test
+    void eveningStartUsesConfiguredHour() {
+        assertThat(BusinessDay.eveningStartOf(LocalDate.of(2026, 10, 19))).isEqualTo(LocalDateTime.of(2026, 10, 19, 16, 0));
+
+        businessDay.setEveningStartHour(17);
+        assertThat(BusinessDay.eveningStartOf(LocalDate.of(2026, 10, 19))).isEqualTo(LocalDateTime.of(2026, 10, 19, 17, 0));
+    }
+}